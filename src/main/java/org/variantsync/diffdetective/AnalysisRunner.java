@@ -4,6 +4,8 @@ import org.apache.commons.io.FileUtils;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.tinylog.Logger;
 import org.variantsync.diffdetective.analysis.Analysis;
+import org.variantsync.diffdetective.analysis.ExecutionOptions;
+import org.variantsync.diffdetective.analysis.Shard;
 import org.variantsync.diffdetective.datasets.*;
 import org.variantsync.diffdetective.diff.git.DiffFilter;
 import org.variantsync.diffdetective.util.Assert;
@@ -12,9 +14,12 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -43,6 +48,9 @@ public class AnalysisRunner {
      * @param pullRepositoriesBeforeAnalysis Decides whether git pull should be run on each repository before analysis.
      *                                       Takes effect only if {@link #preloadReposBeforeAnalysis} is true.
      *                                       Does nothing otherwise.
+     * @param executionOptions Determines how the commits of each repository are distributed onto threads.
+     *                         Pass it to {@link Analysis#forEachCommit(java.util.function.Supplier, ExecutionOptions)}
+     *                         to apply it to an analysis.
      */
     public record Options(
             Path repositoriesDirectory,
@@ -55,12 +63,13 @@ public class AnalysisRunner {
              * (i.e., <code>git pull</code>) before the analysis.
              * This should be false and is false by default to make results comparable.
              */
-            boolean pullRepositoriesBeforeAnalysis
+            boolean pullRepositoriesBeforeAnalysis,
+            ExecutionOptions executionOptions
     ) {
         /**
          * Creates options with the given parameters and uses default
          * values for all other parameters.
-         * @see Options#Options(Path, Path, Path, Function, Function, boolean, boolean)
+         * @see Options#Options(Path, Path, Path, Function, Function, boolean, boolean, ExecutionOptions)
          * @see Options#DEFAULT(String[]) 
          */
         public Options(Path repositoriesDirectory,
@@ -73,15 +82,87 @@ public class AnalysisRunner {
                     true,
                     false);
         }
+
+        /**
+         * Creates options with the given parameters and uses the
+         * {@link ExecutionOptions#Default default execution options}.
+         * @see Options#Options(Path, Path, Path, Function, Function, boolean, boolean, ExecutionOptions)
+         */
+        public Options(Path repositoriesDirectory,
+                       Path outputDirectory,
+                       Path datasetsFile,
+                       Function<Repository, PatchDiffParseOptions> getParseOptionsForRepo,
+                       Function<Repository, DiffFilter> getFilterForRepo,
+                       boolean preloadReposBeforeAnalysis,
+                       boolean pullRepositoriesBeforeAnalysis) {
+            this(
+                    repositoriesDirectory, outputDirectory, datasetsFile,
+                    getParseOptionsForRepo,
+                    getFilterForRepo,
+                    preloadReposBeforeAnalysis,
+                    pullRepositoriesBeforeAnalysis,
+                    ExecutionOptions.Default);
+        }
         
+        /**
+         * Creates the default options for the given command line arguments.
+         * The following arguments are accepted:
+         * <ul>
+         * <li>An optional path to a datasets markdown file.
+         * <li>{@code --shard i/n} to analyze only the {@link Shard shard} {@code i} of {@code n}
+         * shards of each repository.
+         * <li>{@code --merge-shards n} to merge the results of all {@code n} shards of each
+         * repository instead of analyzing any commits.
+         * <li>{@code --heap-high-water-mark f} to start no further commit batches while more than
+         * the fraction {@code f} of the maximal heap is used (see
+         * {@link ExecutionOptions#heapHighWaterMark}).
+         * <li>{@code --metrics-file path} to write {@link ExecutionOptions#metricsFile live metrics}
+         * to {@code path}.
+         * <li>{@code --metrics-port port} to serve {@link ExecutionOptions#metricsPort live metrics}
+         * on the given local port.
+         * <li>{@code --variation-diff-cache n} to reuse up to {@code n}
+         * {@link ExecutionOptions#variationDiffCacheSize parsed variation diffs} per repository.
+         * <li>{@code --variation-diff-cache-dir path} to additionally store parsed diffs in
+         * {@link ExecutionOptions#variationDiffCacheDirectory path}.
+         * <li>{@code --lazy-patch-parsing} to {@link ExecutionOptions#lazyPatchParsing parse patches}
+         * only when they are analyzed.
+         * <li>{@code --variability-prescan} to {@link ExecutionOptions#variabilityPrescan scan patches}
+         * for edits to variability before parsing them.
+         * <li>{@code --record-timings} to {@link ExecutionOptions#recordTimings record} where the
+         * time of the analysis is spent.
+         * </ul>
+         */
         public static Options DEFAULT(final String[] args) {
+            final ExecutionOptions.Builder executionOptions = new ExecutionOptions.Builder();
+            final List<String> positionalArgs = new ArrayList<>();
+            for (int i = 0; i < args.length; ++i) {
+                switch (args[i]) {
+                    case "--shard" -> executionOptions.setShard(Shard.parse(requireValue(args, ++i)));
+                    case "--merge-shards" -> executionOptions
+                            .setShard(new Shard(0, Integer.parseInt(requireValue(args, ++i))))
+                            .setMergeShards(true);
+                    case "--heap-high-water-mark" -> executionOptions
+                            .setHeapHighWaterMark(Double.parseDouble(requireValue(args, ++i)));
+                    case "--metrics-file" -> executionOptions.setMetricsFile(Path.of(requireValue(args, ++i)));
+                    case "--metrics-port" -> executionOptions.setMetricsPort(Integer.parseInt(requireValue(args, ++i)));
+                    case "--variation-diff-cache" -> executionOptions
+                            .setVariationDiffCacheSize(Integer.parseInt(requireValue(args, ++i)));
+                    case "--variation-diff-cache-dir" -> executionOptions
+                            .setVariationDiffCacheDirectory(Path.of(requireValue(args, ++i)));
+                    case "--lazy-patch-parsing" -> executionOptions.setLazyPatchParsing(true);
+                    case "--variability-prescan" -> executionOptions.setVariabilityPrescan(true);
+                    case "--record-timings" -> executionOptions.setRecordTimings(true);
+                    default -> positionalArgs.add(args[i]);
+                }
+            }
+
             final Path datasetsFile;
-            if (args.length < 1) {
+            if (positionalArgs.size() < 1) {
                 datasetsFile = DefaultDatasets.DEFAULT_DATASETS_FILE;
-            } else if (args.length > 1) {
-                throw new IllegalArgumentException("Error: Expected exactly one argument but got " + args.length + "! Expected a path to a datasets markdown file.");
+            } else if (positionalArgs.size() > 1) {
+                throw new IllegalArgumentException("Error: Expected exactly one argument but got " + positionalArgs.size() + "! Expected a path to a datasets markdown file.");
             } else {
-                datasetsFile = Path.of(args[0]);
+                datasetsFile = Path.of(positionalArgs.get(0));
             }
 
             return new Options(
@@ -91,9 +172,17 @@ public class AnalysisRunner {
                     Repository::getParseOptions,
                     Repository::getDiffFilter,
                     true,
-                    false
+                    false,
+                    executionOptions.build()
             );
         }
+
+        private static String requireValue(final String[] args, final int i) {
+            if (i >= args.length) {
+                throw new IllegalArgumentException("Error: Missing value for argument " + args[i - 1]);
+            }
+            return args[i];
+        }
     }
 
     private AnalysisRunner() {
@@ -101,10 +190,94 @@ public class AnalysisRunner {
 
     /**
      * Main method to start the analysis on a set of git repositories.
+     * The {@link Options#executionOptions} of {@code options} only take effect if
+     * {@code validation} passes them on to {@link Analysis#forEachCommit(Supplier, ExecutionOptions)}.
+     * Prefer {@link #runForEachCommit} if {@code validation} just analyzes all commits.
      * @param options Options that configure the datasets IO process.
      * @throws IOException When copying the log file to the output directory fails.
      */
     public static void run(Options options, BiConsumer<Repository, Path> validation) throws IOException {
+        final List<Repository> repos = loadRepositories(options);
+
+        final ExecutionOptions executionOptions = options.executionOptions();
+        Analysis.forEachRepository(
+                repos,
+                options.outputDirectory(),
+                (repo, repoOutputDir) -> validation.accept(repo, getOutputDirectory(executionOptions, repoOutputDir)),
+                !executionOptions.incremental());
+        Logger.info("Done");
+
+        copyLogFile(options.outputDirectory());
+    }
+
+    /**
+     * Analyzes all commits of each repository, one repository after another.
+     * In contrast to {@link #run}, the commits are always processed with the
+     * {@link Options#executionOptions} of {@code options}, so command-line options such as
+     * {@code --shard} can't be dropped accidentally.
+     * @param options Options that configure the datasets IO process.
+     * @param analysisFactory Creates the analysis of a repository given its output directory.
+     *                        It is invoked multiple times per repository (once for each thread).
+     * @throws IOException When copying the log file to the output directory fails.
+     */
+    public static void runForEachCommit(Options options, BiFunction<Repository, Path, Analysis> analysisFactory) throws IOException {
+        run(options, (repo, repoOutputDir) ->
+                Analysis.forEachCommit(() -> analysisFactory.apply(repo, repoOutputDir), options.executionOptions())
+        );
+    }
+
+    /**
+     * Starts the analysis on a set of git repositories which share one thread pool.
+     * In contrast to {@link #run}, the commit batches of multiple repositories are interleaved
+     * using {@link Analysis#forEachCommit(List, ExecutionOptions)} with the
+     * {@link Options#executionOptions} of {@code options}. Hence, no threads idle while the last
+     * batches of a large repository are processed. The results of each repository are still
+     * written to its own output directory.
+     * @param options Options that configure the datasets IO process.
+     * @param analysisFactory Creates the analysis of a repository given its output directory.
+     *                        It is invoked multiple times per repository (once for each thread).
+     * @throws IOException When copying the log file to the output directory fails.
+     */
+    public static void runInterleaved(Options options, BiFunction<Repository, Path, Analysis> analysisFactory) throws IOException {
+        final List<Repository> repos = loadRepositories(options);
+
+        final List<Supplier<Analysis>> analyses = new ArrayList<>(repos.size());
+        for (final Repository repo : repos) {
+            final Path repoOutputDir = getOutputDirectory(
+                    options.executionOptions(),
+                    options.outputDirectory().resolve(repo.getRepositoryName()));
+            // Don't repeat work we already did:
+            if (!options.executionOptions().incremental() && Files.exists(repoOutputDir.resolve(Analysis.TOTAL_RESULTS_FILE_NAME))) {
+                Logger.info("  Skipping repository {} because it has already been processed.",
+                        repo.getRepositoryName());
+            } else {
+                analyses.add(() -> analysisFactory.apply(repo, repoOutputDir));
+            }
+        }
+
+        Analysis.forEachCommit(analyses, options.executionOptions());
+        Logger.info("Done");
+
+        copyLogFile(options.outputDirectory());
+    }
+
+    /**
+     * Returns the directory to which the analysis of a repository writes its results.
+     * Each {@link ExecutionOptions#shard shard} writes to its own directory. Merged shards are
+     * written to {@code repoOutputDir}.
+     */
+    private static Path getOutputDirectory(ExecutionOptions executionOptions, Path repoOutputDir) {
+        if (executionOptions.mergeShards()) {
+            return repoOutputDir;
+        }
+        return executionOptions.shard().getOutputDirectory(repoOutputDir);
+    }
+
+    /**
+     * Loads all repositories of the datasets file given in {@code options} and prepares them as
+     * configured by {@code options}.
+     */
+    private static List<Repository> loadRepositories(Options options) {
         if (!Files.exists(options.datasetsFile())) {
             Logger.error("The given datasets file \"" + options.datasetsFile() + "\" does not exist.");
         }
@@ -147,9 +320,10 @@ public class AnalysisRunner {
             }
         }
 
-        Analysis.forEachRepository(repos, outputDir, validation);
-        Logger.info("Done");
+        return repos;
+    }
 
+    private static void copyLogFile(Path outputDir) throws IOException {
         final String logFile = "log.txt";
         FileUtils.copyFile(Path.of(logFile).toFile(), outputDir.resolve(logFile).toFile());
     }
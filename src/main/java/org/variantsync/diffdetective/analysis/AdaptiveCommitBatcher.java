@@ -0,0 +1,317 @@
+package org.variantsync.diffdetective.analysis;
+
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.tinylog.Logger;
+import org.variantsync.diffdetective.parallel.MemoryGovernor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Groups a sequence of commits into batches of roughly equal expected processing time.
+ *
+ * <p>The processing time of a commit is predicted by a linear cost model
+ * {@code costPerCommit + costPerChangedPath * changedPaths} where {@code changedPaths} is the
+ * number of paths changed by a commit relative to its first parent. The two coefficients are fitted
+ * (least squares) to the runtimes of completed batches which are reported by {@link #reportRuntime}.
+ * Until enough batches completed, each commit is assumed to cost one unit plus one unit per changed
+ * path. The first batch is sized by the number of commits only.
+ *
+ * <p>The size of a batch is chosen by guided self-scheduling: Each batch receives a fraction of the
+ * expected remaining work such that all threads can still share the rest of the history.
+ * Hence, batches shrink towards the end of the history, which avoids idle threads waiting for a
+ * single thread processing a large batch. In addition, the expected work of a batch never exceeds
+ * the expected work of an average batch of {@code maxCommitsPerBatch} commits, so large commits end
+ * up in smaller batches. Optionally, the maximum number of commits per batch is halved for each
+ * batch created while the heap usage is {@link #shrinkBatchesUnderMemoryPressure too high} and
+ * doubled again (up to {@code maxCommitsPerBatch}) once the heap usage dropped.
+ *
+ * <p>{@link #next} is not thread safe but {@link #reportRuntime} may be called from any thread.
+ */
+public class AdaptiveCommitBatcher implements Iterator<List<RevCommit>>, AutoCloseable {
+    /**
+     * Smallest number of commits per batch (except for the last batch) to amortize the overhead of
+     * scheduling a batch.
+     */
+    public static final int MIN_COMMITS_PER_BATCH = 10;
+    /**
+     * Number of batches that each thread should receive of the remaining work. Higher values reduce
+     * the time at the end of the analysis in which some threads idle but increase the number of
+     * batches.
+     */
+    private static final int BATCHES_PER_THREAD = 2;
+
+    private final Iterator<RevCommit> commits;
+    private final ObjectReader reader;
+    private final int nThreads;
+    private final int maxCommitsPerBatch;
+    /** The maximum number of commits per batch with respect to the {@link #memoryGovernor}. */
+    private int memoryLimitedCommitsPerBatch;
+    private MemoryGovernor memoryGovernor;
+    private int remainingCommits;
+    /** A commit which was already retrieved from {@link commits} but doesn't fit into the last batch. */
+    private RevCommit pendingCommit;
+    private int pendingCommitChangedPaths;
+
+    /** The number of changed paths of each batch until its runtime is reported. */
+    private final Map<List<RevCommit>, Integer> changedPathsOfScheduledBatches =
+            Collections.synchronizedMap(new IdentityHashMap<>());
+    private long observedCommits = 0;
+    private long observedChangedPaths = 0;
+
+    // Sums for the normal equations of the least squares fit of the cost model.
+    private double sumCommitsSquared = 0;
+    private double sumCommitsTimesPaths = 0;
+    private double sumPathsSquared = 0;
+    private double sumCommitsTimesRuntime = 0;
+    private double sumPathsTimesRuntime = 0;
+    private double costPerCommit = 1;
+    private double costPerChangedPath = 1;
+
+    /**
+     * Creates batches of the given commits.
+     *
+     * @param repository the repository the commits belong to
+     * @param commits the commits to group into batches
+     * @param expectedNumberOfCommits the number of commits in {@code commits} (an estimate is
+     * sufficient)
+     * @param nThreads the number of threads that process the batches in parallel
+     * @param maxCommitsPerBatch the maximum number of commits in a single batch
+     */
+    public AdaptiveCommitBatcher(
+            final Repository repository,
+            final Iterator<RevCommit> commits,
+            final int expectedNumberOfCommits,
+            final int nThreads,
+            final int maxCommitsPerBatch
+    ) {
+        this.commits = commits;
+        this.reader = repository.newObjectReader();
+        this.remainingCommits = expectedNumberOfCommits;
+        this.nThreads = nThreads;
+        this.maxCommitsPerBatch = maxCommitsPerBatch;
+        this.memoryLimitedCommitsPerBatch = maxCommitsPerBatch;
+    }
+
+    /**
+     * Creates smaller batches while {@code memoryGovernor} reports a heap usage above its
+     * high-water mark. Smaller batches hold fewer commit diffs and results in memory and allow the
+     * governor to throttle the analysis at a finer granularity.
+     */
+    public void shrinkBatchesUnderMemoryPressure(final MemoryGovernor memoryGovernor) {
+        this.memoryGovernor = memoryGovernor;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return pendingCommit != null || commits.hasNext();
+    }
+
+    @Override
+    public List<RevCommit> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        final int commitsPerBatchLimit = limitCommitsPerBatchByMemory();
+        final double maxBatchCost;
+        final double targetBatchCost;
+        final int minCommitsPerBatch = Math.min(MIN_COMMITS_PER_BATCH, commitsPerBatchLimit);
+        final int batchesToShareRemainingWork = BATCHES_PER_THREAD * nThreads;
+        // Snapshot of the cost model because it may be changed concurrently by reportRuntime.
+        final double costPerCommit;
+        final double costPerChangedPath;
+        synchronized (this) {
+            if (observedCommits == 0) {
+                // Without any knowledge about the history, the batch size is determined by the
+                // number of commits only.
+                costPerCommit = 1;
+                costPerChangedPath = 0;
+                maxBatchCost = Double.POSITIVE_INFINITY;
+            } else {
+                costPerCommit = this.costPerCommit;
+                costPerChangedPath = this.costPerChangedPath;
+                maxBatchCost = commitsPerBatchLimit * (costPerCommit + costPerChangedPath * averageChangedPaths());
+            }
+            final double expectedRemainingCost = remainingCommits * (costPerCommit + costPerChangedPath * averageChangedPaths());
+            targetBatchCost = expectedRemainingCost / batchesToShareRemainingWork;
+        }
+
+        final List<RevCommit> batch = new ArrayList<>();
+        int batchChangedPaths = 0;
+        double batchCost = 0;
+        while (batch.size() < commitsPerBatchLimit && (pendingCommit != null || commits.hasNext())) {
+            final RevCommit commit;
+            final int changedPaths;
+            if (pendingCommit == null) {
+                commit = commits.next();
+                changedPaths = countChangedPaths(commit);
+            } else {
+                commit = pendingCommit;
+                changedPaths = pendingCommitChangedPaths;
+                pendingCommit = null;
+            }
+
+            final double commitCost = costPerCommit + costPerChangedPath * changedPaths;
+
+            // Large commits are moved into the next batch unless the batch would be too small.
+            if (batch.size() >= minCommitsPerBatch && batchCost + commitCost > maxBatchCost) {
+                pendingCommit = commit;
+                pendingCommitChangedPaths = changedPaths;
+                break;
+            }
+
+            batch.add(commit);
+            batchChangedPaths += changedPaths;
+            batchCost += commitCost;
+
+            if (batch.size() >= minCommitsPerBatch && batchCost >= targetBatchCost) {
+                break;
+            }
+        }
+
+        synchronized (this) {
+            remainingCommits = Math.max(remainingCommits - batch.size(), 0);
+            observedCommits += batch.size();
+            observedChangedPaths += batchChangedPaths;
+        }
+        changedPathsOfScheduledBatches.put(batch, batchChangedPaths);
+
+        return batch;
+    }
+
+    /**
+     * Reports the time it took to process {@code batch} and updates the cost model accordingly.
+     * This method is thread safe.
+     *
+     * @param batch a batch returned by {@link #next}
+     * @param runtimeInSeconds the time it took to process all commits in {@code batch}
+     */
+    public void reportRuntime(final List<RevCommit> batch, final double runtimeInSeconds) {
+        final Integer changedPaths = changedPathsOfScheduledBatches.remove(batch);
+        if (changedPaths == null) {
+            Logger.warn("The runtime of an unknown batch was reported");
+            return;
+        }
+
+        final double commits = batch.size();
+        final double paths = changedPaths;
+        final double runtime = 1000 * runtimeInSeconds;
+
+        synchronized (this) {
+            sumCommitsSquared += commits * commits;
+            sumCommitsTimesPaths += commits * paths;
+            sumPathsSquared += paths * paths;
+            sumCommitsTimesRuntime += commits * runtime;
+            sumPathsTimesRuntime += paths * runtime;
+            fitCostModel();
+        }
+    }
+
+    /**
+     * Solves the normal equations of the least squares problem
+     * {@code runtime = costPerCommit * commits + costPerChangedPath * changedPaths}
+     * over all reported batches. Keeps the previous model if the system is underdetermined.
+     */
+    private void fitCostModel() {
+        final double determinant = sumCommitsSquared * sumPathsSquared - sumCommitsTimesPaths * sumCommitsTimesPaths;
+
+        double newCostPerCommit;
+        double newCostPerChangedPath;
+        if (Math.abs(determinant) > 1e-9 * sumCommitsSquared * sumPathsSquared) {
+            newCostPerCommit = (sumPathsSquared * sumCommitsTimesRuntime - sumCommitsTimesPaths * sumPathsTimesRuntime) / determinant;
+            newCostPerChangedPath = (sumCommitsSquared * sumPathsTimesRuntime - sumCommitsTimesPaths * sumCommitsTimesRuntime) / determinant;
+        } else {
+            // Batches are linearly dependent (e.g., only one batch was reported so far).
+            return;
+        }
+
+        // Negative costs are an artifact of noisy measurements. Fit a single coefficient instead.
+        if (newCostPerChangedPath < 0) {
+            newCostPerChangedPath = 0;
+            newCostPerCommit = sumCommitsTimesRuntime / sumCommitsSquared;
+        } else if (newCostPerCommit < 0) {
+            newCostPerCommit = 0;
+            newCostPerChangedPath = sumPathsTimesRuntime / sumPathsSquared;
+        }
+
+        // A model without any cost can't distinguish batches.
+        if (newCostPerCommit + newCostPerChangedPath > 0) {
+            costPerCommit = newCostPerCommit;
+            costPerChangedPath = newCostPerChangedPath;
+        }
+    }
+
+    /**
+     * Halves the maximum number of commits of the next batch if the heap usage is too high and
+     * grows it back to {@link #maxCommitsPerBatch} otherwise.
+     */
+    private int limitCommitsPerBatchByMemory() {
+        if (memoryGovernor != null) {
+            if (memoryGovernor.isAboveHighWaterMark()) {
+                memoryLimitedCommitsPerBatch = Math.max(memoryLimitedCommitsPerBatch / 2, 1);
+            } else {
+                memoryLimitedCommitsPerBatch = Math.min(2 * memoryLimitedCommitsPerBatch, maxCommitsPerBatch);
+            }
+        }
+        return memoryLimitedCommitsPerBatch;
+    }
+
+    private double averageChangedPaths() {
+        if (observedCommits == 0) {
+            return 0;
+        }
+        return (double) observedChangedPaths / observedCommits;
+    }
+
+    /**
+     * Counts the number of paths that differ between {@code commit} and its first parent.
+     * This is a cheap approximation of the work required to analyze {@code commit} as no file
+     * content needs to be loaded.
+     */
+    private int countChangedPaths(final RevCommit commit) {
+        try (TreeWalk treeWalk = new TreeWalk(reader)) {
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(TreeFilter.ANY_DIFF);
+
+            if (commit.getParentCount() > 0) {
+                RevCommit parent = commit.getParent(0);
+                if (parent.getTree() == null) {
+                    try (RevWalk revWalk = new RevWalk(reader)) {
+                        parent = revWalk.parseCommit(parent);
+                    }
+                }
+                treeWalk.addTree(parent.getTree());
+            } else {
+                treeWalk.addTree(new EmptyTreeIterator());
+            }
+            treeWalk.addTree(commit.getTree());
+
+            int changedPaths = 0;
+            while (treeWalk.next()) {
+                ++changedPaths;
+            }
+            return changedPaths;
+        } catch (IOException e) {
+            Logger.debug(e, "Could not count the changed paths of commit {}", commit.getName());
+            return 0;
+        }
+    }
+
+    @Override
+    public void close() {
+        reader.close();
+    }
+}
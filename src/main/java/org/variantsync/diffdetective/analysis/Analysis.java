@@ -1,26 +1,44 @@
 package org.variantsync.diffdetective.analysis;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.NoSuchElementException;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import org.apache.commons.lang3.function.FailableBiConsumer;
 import org.apache.commons.lang3.function.FailableBiFunction;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.tinylog.Logger;
 import org.variantsync.diffdetective.analysis.AnalysisResult.ResultKey;
+import org.variantsync.diffdetective.analysis.monitoring.CommitAnalyzedEvent;
+import org.variantsync.diffdetective.analysis.monitoring.HookExecutedEvent;
+import org.variantsync.diffdetective.analysis.monitoring.LiveMetrics;
 import org.variantsync.diffdetective.analysis.monitoring.TaskCompletionMonitor;
 import org.variantsync.diffdetective.datasets.Repository;
 import org.variantsync.diffdetective.diff.git.CommitDiff;
 import org.variantsync.diffdetective.diff.git.GitDiffer;
 import org.variantsync.diffdetective.diff.git.PatchDiff;
+import org.variantsync.diffdetective.diff.git.VariabilityPrescan;
+import org.variantsync.diffdetective.diff.git.VariationDiffCache;
 import org.variantsync.diffdetective.diff.result.CommitDiffResult;
+import org.variantsync.diffdetective.diff.result.DiffError;
+import org.variantsync.diffdetective.error.DeadlineExceededException;
 import org.variantsync.diffdetective.metadata.Metadata;
+import org.variantsync.diffdetective.parallel.MemoryGovernor;
 import org.variantsync.diffdetective.parallel.ScheduledTasksIterator;
 import org.variantsync.diffdetective.util.*;
 import org.variantsync.diffdetective.variation.DiffLinesLabel;
@@ -28,11 +46,13 @@ import org.variantsync.diffdetective.variation.diff.Time;
 import org.variantsync.diffdetective.variation.diff.VariationDiff;
 import org.variantsync.functjonal.iteration.ClusteredIterator;
 import org.variantsync.functjonal.iteration.MappedIterator;
+import org.variantsync.functjonal.iteration.Yield;
 
 /**
  * Encapsulates the state and control flow during an analysis of the commit history of multiple
  * repositories using {@link VariationDiff}s. Each repository is processed sequentially but the commits
- * of each repository can be processed in parallel.
+ * of each repository can be processed in parallel. Alternatively, the commits of multiple
+ * repositories can be {@link #forEachCommit(List, ExecutionOptions) interleaved} on one thread pool.
  *
  * <p>For thread safety, each thread receives its own instance of {@code Analysis}. The getters
  * provides access to the current state of the analysis in one thread. Depending on the current
@@ -51,9 +71,25 @@ public class Analysis {
      * File name that is used to store the analysis results for each repository.
      */
     public static final String TOTAL_RESULTS_FILE_NAME = "totalresult" + EXTENSION;
+    /**
+     * File name that is used to store the id of the newest analyzed commit for each repository.
+     * @see ExecutionOptions#incremental
+     */
+    public static final String ANALYZED_HEAD_FILE_NAME = "analyzedhead.txt";
+    /**
+     * File name that is used to store the commits which exceeded their time budget for each
+     * repository. Each line contains the id of a commit, optionally followed by a space and the
+     * name of a file whose patch exceeded its time budget. The same commit may be listed
+     * multiple times.
+     * @see ExecutionOptions#commitTimeout
+     * @see ExecutionOptions#patchTimeout
+     */
+    public static final String SLOW_COMMITS_FILE_NAME = "slowcommits.txt";
+    /** Serializes the writes of all threads to {@link #SLOW_COMMITS_FILE_NAME}. */
+    private static final Object SLOW_COMMITS_LOCK = new Object();
     /**
      * Default value for <code>commitsToProcessPerThread</code>
-     * @see #forEachCommit(Supplier, int, int)
+     * @see ExecutionOptions#commitsToProcessPerThread
      */
     public static final int COMMITS_TO_PROCESS_PER_THREAD_DEFAULT = 1000;
 
@@ -61,6 +97,12 @@ public class Analysis {
     protected final Repository repository;
 
     protected GitDiffer differ;
+    /** Creates commit diffs ahead of their analysis or {@code null} to create them on demand. */
+    protected CommitDiffPipeline pipeline;
+    /** @see ExecutionOptions#commitTimeout */
+    protected Duration commitTimeout = ExecutionOptions.NO_TIMEOUT;
+    /** @see ExecutionOptions#patchTimeout */
+    protected Duration patchTimeout = ExecutionOptions.NO_TIMEOUT;
     protected RevCommit currentCommit;
     protected CommitDiff currentCommitDiff;
     protected PatchDiff currentPatch;
@@ -69,6 +111,13 @@ public class Analysis {
     protected final Path outputDir;
     protected Path outputFile;
     protected final AnalysisResult result;
+    /**
+     * The time in nanoseconds spent in each hook of the current batch indexed by the position of
+     * the hook in {@link #hooks} and the {@link Phase#ordinal} of the hook's phase.
+     */
+    private long[][] hookNanoseconds;
+    /** The pending diff of the {@link #getCurrentCommit current commit} analyzed by {@link #processCommit()}. */
+    private Supplier<CommitDiffResult> currentCommitDiffResult;
 
     /**
      * The total number of commits in the observed history of the given repository.
@@ -184,6 +233,45 @@ public class Analysis {
         result.append(resultKey, value);
     }
 
+    /**
+     * The nested phases of an analysis in which {@link Hooks} are called.
+     * The time spent in the hooks of each phase is recorded in the {@link TimingResult}.
+     */
+    public enum Phase {
+        /** {@link Hooks#beginBatch} and {@link Hooks#endBatch}. */
+        BATCH,
+        /** All hooks called while a commit is processed except those of the {@link #PATCH} phase. */
+        COMMIT,
+        /** {@link Hooks#beginPatch}, {@link Hooks#analyzeVariationDiff} and {@link Hooks#endPatch}. */
+        PATCH;
+
+        @Override
+        public String toString() {
+            return name().toLowerCase() + " phase";
+        }
+    }
+
+    /**
+     * Name of the {@link TimingResult time} spent on loading the git objects of commits.
+     * Not measured if commits are loaded by a {@link CommitDiffPipeline}.
+     */
+    public static final String LOADING_TIME = "loading commits";
+    /**
+     * Name of the {@link TimingResult time} spent on parsing commits into {@link VariationDiff}s.
+     * Not measured if commits are parsed by a {@link CommitDiffPipeline}.
+     */
+    public static final String PARSING_TIME = "parsing commits";
+    /**
+     * Name of the {@link TimingResult time} spent on waiting for commits loaded and parsed by a
+     * {@link CommitDiffPipeline}.
+     */
+    public static final String PIPELINE_WAITING_TIME = "waiting for the pipeline";
+    /**
+     * Name of the {@link TimingResult time} spent on retrieving and checking the
+     * {@link VariationDiff} of each patch in {@link #processPatch}.
+     */
+    public static final String VARIATION_DIFF_TIME = "preparing variation diffs";
+
     /**
      * Hooks for analyzing commits using {@link VariationDiff}s.
      *
@@ -277,11 +365,30 @@ public class Analysis {
         List<Repository> repositoriesToAnalyze,
         Path outputDir,
         BiConsumer<Repository, Path> analyzeRepository
+    ) {
+        forEachRepository(repositoriesToAnalyze, outputDir, analyzeRepository, true);
+    }
+
+    /**
+     * Same as {@link #forEachRepository(List, Path, BiConsumer)} but allows to run
+     * {@code analyzeRepository} on repositories which were already analyzed. This is required to
+     * update the results of {@link ExecutionOptions#incremental incremental} analyses.
+     *
+     * @param repositoriesToAnalyze the repositories for which {@code analyzeRepository} is run
+     * @param outputDir the directory where all repositories will save their results
+     * @param analyzeRepository the callback which is invoked for each repository
+     * @param skipAnalyzedRepositories whether to skip repositories with existing results
+     */
+    public static void forEachRepository(
+        List<Repository> repositoriesToAnalyze,
+        Path outputDir,
+        BiConsumer<Repository, Path> analyzeRepository,
+        boolean skipAnalyzedRepositories
     ) {
         for (final Repository repo : repositoriesToAnalyze) {
             final Path repoOutputDir = outputDir.resolve(repo.getRepositoryName());
             // Don't repeat work we already did:
-            if (Files.exists(repoOutputDir.resolve(TOTAL_RESULTS_FILE_NAME))) {
+            if (skipAnalyzedRepositories && Files.exists(repoOutputDir.resolve(TOTAL_RESULTS_FILE_NAME))) {
                 Logger.info("  Skipping repository {} because it has already been processed.",
                     repo.getRepositoryName());
             } else {
@@ -307,7 +414,16 @@ public class Analysis {
      * @param analysis the analysis to run
      */
     public static AnalysisResult forSingleCommit(final String commitHash, final Analysis analysis) {
+        return forSingleCommit(commitHash, analysis, false);
+    }
+
+    /**
+     * Same as {@link #forSingleCommit(String, Analysis)} but optionally
+     * {@link GitDiffer#setLazyPatchParsing parses patches lazily}.
+     */
+    private static AnalysisResult forSingleCommit(final String commitHash, final Analysis analysis, final boolean lazyPatchParsing) {
         analysis.differ = new GitDiffer(analysis.getRepository());
+        analysis.differ.setLazyPatchParsing(lazyPatchParsing);
 
         final Clock clock = new Clock();
         // prepare tasks
@@ -322,6 +438,8 @@ public class Analysis {
         } catch (Exception e) {
             Logger.error("Failed to analyze {}. Exiting.", commitHash);
             System.exit(1);
+        } finally {
+            analysis.differ.close();
         }
 
         final double runtime = clock.getPassedSeconds();
@@ -340,6 +458,8 @@ public class Analysis {
      * The Hooks will be manipulated in that a new hook for patch filtering will be inserted as the first hook
      * for as long as the analysis runs. This hook will be removed afterwards. It is assumed that this hook
      * remains at the same place and is not manipulated by the user.
+     * Patches are {@link GitDiffer#setLazyPatchParsing parsed lazily}, so only the requested patch
+     * is parsed.
      *
      * @param commitHash the commit to analyze relative to its first parent
      * @param fileName the name of the file that was edited in the given commit
@@ -358,7 +478,7 @@ public class Analysis {
 
         // Add a hook that skips all patches unequal to the requested one.
         analysis.hooks.add(0, filterPatchHook);
-        forSingleCommit(commitHash, analysis);
+        forSingleCommit(commitHash, analysis, true);
 
         // Assert that our hook is still in place after the analysis ...
         Assert.assertTrue(analysis.hooks.isEmpty() || analysis.hooks.get(0) == filterPatchHook);
@@ -367,89 +487,598 @@ public class Analysis {
     }
 
     /**
-     * Same as {@link #forEachCommit(Supplier, int, int)}.
-     * Defaults to {@link #COMMITS_TO_PROCESS_PER_THREAD_DEFAULT} and a machine dependent number of
-     * {@link Diagnostics#getNumberOfAvailableProcessors}.
+     * Same as {@link #forEachCommit(Supplier, ExecutionOptions)}.
+     * Defaults to {@link ExecutionOptions#Default}.
      */
     public static AnalysisResult forEachCommit(Supplier<Analysis> analysis) {
+        return forEachCommit(analysis, ExecutionOptions.Default);
+    }
+
+    /**
+     * Same as {@link #forEachCommit(Supplier, ExecutionOptions)}.
+     * Uses the {@link ExecutionOptions#Default default values} for all options except
+     * {@code commitsToProcessPerThread} and {@code nThreads}.
+     */
+    public static AnalysisResult forEachCommit(
+        Supplier<Analysis> analysisFactory,
+        final int commitsToProcessPerThread,
+        final int nThreads
+    ) {
         return forEachCommit(
-            analysis,
-            COMMITS_TO_PROCESS_PER_THREAD_DEFAULT,
-            Diagnostics.INSTANCE.run().getNumberOfAvailableProcessors()
+            analysisFactory,
+            new ExecutionOptions.Builder()
+                .setCommitsToProcessPerThread(commitsToProcessPerThread)
+                .setNThreads(nThreads)
+                .build()
         );
     }
 
     /**
      * Runs the analysis for the repository given in {@link Analysis#Analysis}. The repository
-     * history is processed in batches of {@code commitsToProcessPerThread} on {@code nThreads} in
-     * parallel. {@link Hooks} passed to {@link Analysis#Analysis} are the main customization point
-     * for executing different analyses. By default only the total number of commits and the total
-     * runtime with multithreading of the {@link VariationDiff} parsing is recorded.
+     * history is processed in batches of {@link ExecutionOptions#commitsToProcessPerThread} on
+     * {@link ExecutionOptions#nThreads} in parallel. {@link Hooks} passed to {@link
+     * Analysis#Analysis} are the main customization point for executing different analyses. By
+     * default only the total number of commits and the total runtime with multithreading of the
+     * {@link VariationDiff} parsing is recorded.
      *
      * @param analysisFactory creates independent (at least thread safe) instances the analysis
      * state
-     * @param commitsToProcessPerThread the commit batch size
-     * @param nThreads the number of parallel processed commit batches
+     * @param executionOptions determines how the commit history is distributed onto threads
      */
     public static AnalysisResult forEachCommit(
         Supplier<Analysis> analysisFactory,
-        final int commitsToProcessPerThread,
-        final int nThreads
+        final ExecutionOptions executionOptions
     ) {
-        var analysis = analysisFactory.get();
-        analysis.differ = new GitDiffer(analysis.getRepository());
-        analysis.result.append(RuntimeWithMultithreadingResult.KEY, new RuntimeWithMultithreadingResult());
+        return forEachCommit(List.of(analysisFactory), executionOptions).get(0);
+    }
 
-        final Clock clock = new Clock();
+    /**
+     * Runs the analyses of multiple repositories on one shared thread pool. Same as calling
+     * {@link #forEachCommit(Supplier, ExecutionOptions)} for each analysis but the commit batches
+     * of up to {@link ExecutionOptions#nThreads} repositories are interleaved in a round-robin
+     * fashion. Hence, the long tail of a large repository is processed in parallel to the next
+     * repositories and the thread pools are created only once.
+     *
+     * <p>The results of each batch are routed to the analysis of its repository. As soon as all
+     * batches of a repository are processed, its total results are exported to the
+     * {@link #getOutputDir output directory} of its analysis.
+     *
+     * @param analysisFactories for each repository, creates independent (at least thread safe)
+     * instances of the analysis state
+     * @param executionOptions determines how the commit histories are distributed onto threads
+     * @return the total results of each analysis in the order of {@code analysisFactories}
+     */
+    public static List<AnalysisResult> forEachCommit(
+        List<Supplier<Analysis>> analysisFactories,
+        final ExecutionOptions executionOptions
+    ) {
+        if (executionOptions.resume() && executionOptions.batchSizing() != ExecutionOptions.BatchSizing.FIXED) {
+            throw new IllegalArgumentException("Resuming an analysis requires fixed batch sizes but got " + executionOptions.batchSizing());
+        }
 
-        // prepare tasks
-        Logger.info(">>> Scheduling asynchronous analysis on {} threads.", nThreads);
-        clock.start();
-        final InvocationCounter<RevCommit, RevCommit> numberOfTotalCommits = InvocationCounter.justCount();
-        final Iterator<Callable<AnalysisResult>> tasks = new MappedIterator<>(
-                /// 1.) Retrieve COMMITS_TO_PROCESS_PER_THREAD commits from the differ and cluster them into one list.
-                new ClusteredIterator<>(
-                        analysis.differ.yieldRevCommitsAfter(numberOfTotalCommits),
-                        commitsToProcessPerThread
-                ),
-                /// 2.) Create a MiningTask for the list of commits. This task will then be processed by one
-                ///     particular thread.
-                commitList -> () -> {
-                    Analysis thisThreadsAnalysis = analysisFactory.get();
-                    thisThreadsAnalysis.differ = analysis.differ;
-                    thisThreadsAnalysis.processCommitBatch(commitList);
-                    return thisThreadsAnalysis.getResult();
+        if (executionOptions.mergeShards()) {
+            final List<AnalysisResult> results = new ArrayList<>(analysisFactories.size());
+            for (final Supplier<Analysis> analysisFactory : analysisFactories) {
+                try {
+                    results.add(mergeShards(analysisFactory, executionOptions.shard().count()));
+                } catch (IOException e) {
+                    Logger.error(e, "Failed to merge the shards of {}", analysisFactory.get().getRepository().getRepositoryName());
+                    System.exit(1);
                 }
-        );
-        Logger.info("<<< done in {}", clock.printPassedSeconds());
+            }
+            return results;
+        }
 
-        final TaskCompletionMonitor commitSpeedMonitor = new TaskCompletionMonitor(0, TaskCompletionMonitor.LogProgress("commits"));
-        Logger.info(">>> Run Analysis");
-        clock.start();
-        commitSpeedMonitor.start();
-        try (final ScheduledTasksIterator<AnalysisResult> threads = new ScheduledTasksIterator<>(tasks, nThreads)) {
+        final ExecutorService patchParsingPool = executionOptions.isParallelPatchParsingEnabled()
+                ? Executors.newFixedThreadPool(executionOptions.nThreads())
+                : null;
+        final CommitDiffPipeline pipeline = executionOptions.isPipelined()
+                ? new CommitDiffPipeline(executionOptions)
+                : null;
+        final MemoryGovernor memoryGovernor = executionOptions.isHeapThrottlingEnabled()
+                ? new MemoryGovernor(executionOptions.heapHighWaterMark())
+                : null;
+        final LiveMetrics liveMetrics = openLiveMetrics(executionOptions);
+
+        final List<CommitHistoryRun> runs = new ArrayList<>(analysisFactories.size());
+        final Iterator<CommitHistoryRun> pendingRuns = new MappedIterator<>(
+                analysisFactories.iterator(),
+                analysisFactory -> {
+                    final var run = new CommitHistoryRun(analysisFactory, executionOptions, pipeline, patchParsingPool, memoryGovernor, liveMetrics);
+                    runs.add(run);
+                    return run;
+                }
+        );
+        final Iterator<Callable<BatchResult>> interleavedTasks = new InterleavedTasks(pendingRuns, executionOptions.nThreads());
+        final Iterator<Callable<BatchResult>> tasks = memoryGovernor == null
+                ? interleavedTasks
+                : new MappedIterator<>(interleavedTasks, memoryGovernor::govern);
+
+        Logger.info(">>> Run Analysis on {} threads.", executionOptions.nThreads());
+        try (
+                pipeline;
+                memoryGovernor;
+                liveMetrics;
+                final ScheduledTasksIterator<BatchResult> threads = new ScheduledTasksIterator<>(
+                        tasks,
+                        executionOptions.nThreads(),
+                        executionOptions.maxScheduledTasks(),
+                        executionOptions.resultOrder()
+                )
+        ) {
             while (threads.hasNext()) {
-                final AnalysisResult threadsResult = threads.next();
-                analysis.getResult().append(threadsResult);
+                final BatchResult batchResult = threads.next();
+                batchResult.run().append(batchResult);
+                batchResult.run().finishIfDone();
+            }
 
-                var statistics = threadsResult.get(StatisticsAnalysis.RESULT);
-                if (statistics != null) {
-                    commitSpeedMonitor.addFinishedTasks(statistics.processedCommits);
-                }
+            // Finish runs without any batches.
+            for (final CommitHistoryRun run : runs) {
+                run.finishIfDone();
             }
         } catch (Exception e) {
             Logger.error(e, "Failed to run all mining task");
             System.exit(1);
+        } finally {
+            if (patchParsingPool != null) {
+                patchParsingPool.shutdown();
+            }
         }
 
-        final double runtime = clock.getPassedSeconds();
-        Logger.info("<<< done in {}", Clock.printPassedSeconds(runtime));
+        return runs.stream().map(run -> run.analysis.getResult()).toList();
+    }
 
-        analysis.getResult().get(RuntimeWithMultithreadingResult.KEY).value = runtime;
-//        analysis.getResult().get(TotalNumberOfCommitsResult.KEY).value = numberOfTotalCommits.invocationCount().get();
+    /**
+     * Starts publishing {@link LiveMetrics} if requested by {@code executionOptions}.
+     * Metrics are optional, so a failure is logged but doesn't abort the analysis.
+     *
+     * @return the publisher or {@code null} if no metrics should or can be published
+     */
+    private static LiveMetrics openLiveMetrics(final ExecutionOptions executionOptions) {
+        if (!executionOptions.isLiveMetricsEnabled()) {
+            return null;
+        }
 
-        exportMetadata(analysis.getOutputDir(), analysis.getResult());
-        return analysis.getResult();
+        try {
+            return new LiveMetrics(executionOptions.metricsFile(), executionOptions.metricsPort());
+        } catch (IOException e) {
+            Logger.error(e, "Could not serve live metrics on port {}. Continuing without live metrics.", executionOptions.metricsPort());
+            return null;
+        }
+    }
+
+    /**
+     * Merges the total results of all {@code shardCount} {@link Shard shards} of a repository.
+     * The results of each shard are expected in the {@link Shard#getOutputDirectory output
+     * directory of the shard} relative to the {@link #getOutputDir output directory} of the
+     * analysis created by {@code analysisFactory}. The shard results are combined using
+     * {@link AnalysisResult#IMONOID} and exported as the {@link #TOTAL_RESULTS_FILE_NAME total
+     * results} of the repository. Note that the merged runtime is the sum of the runtimes of all
+     * shards.
+     *
+     * @param analysisFactory creates the analysis whose results were computed for each shard
+     * @param shardCount the number of shards into which the commit history was partitioned
+     * @return the total results of the whole commit history
+     * @throws IOException if the results of a shard are missing or can't be read
+     */
+    public static AnalysisResult mergeShards(
+        final Supplier<Analysis> analysisFactory,
+        final int shardCount
+    ) throws IOException {
+        final Analysis analysis = analysisFactory.get();
+        final AnalysisResult total = analysis.getResult();
+        total.append(RuntimeWithMultithreadingResult.KEY, new RuntimeWithMultithreadingResult());
+
+        for (int i = 0; i < shardCount; ++i) {
+            final Shard shard = new Shard(i, shardCount);
+            final Path shardResultsFile = shard.getOutputDirectory(analysis.getOutputDir()).resolve(TOTAL_RESULTS_FILE_NAME);
+            if (!Files.exists(shardResultsFile)) {
+                throw new IOException("The results of shard " + shard + " are missing: " + shardResultsFile);
+            }
+
+            final AnalysisResult shardResult = analysisFactory.get().getResult();
+            shardResult.append(RuntimeWithMultithreadingResult.KEY, new RuntimeWithMultithreadingResult());
+            shardResult.setFrom(shardResultsFile);
+            AnalysisResult.IMONOID.appendToFirst(total, shardResult);
+        }
+
+        Logger.info("Merged {} shards of {}", shardCount, analysis.getRepository().getRepositoryName());
+        exportMetadata(analysis.getOutputDir(), total);
+        return total;
+    }
+
+    /**
+     * The result of one commit batch of a {@link CommitHistoryRun}.
+     */
+    private record BatchResult(CommitHistoryRun run, AnalysisResult result, int commits) {}
+
+    /**
+     * The state of {@link #forEachCommit(List, ExecutionOptions)} for one repository.
+     * All methods are called by the thread which collects the results. Only the tasks returned by
+     * {@link #nextTask} are run by other threads.
+     */
+    private static final class CommitHistoryRun {
+        private final Analysis analysis;
+        private final ObjectId head;
+        private final AnalysisResult previousResult;
+        private final AdaptiveCommitBatcher adaptiveBatcher;
+        private final Iterator<Callable<BatchResult>> tasks;
+        private final TaskCompletionMonitor commitSpeedMonitor;
+        private final Clock clock;
+        private final LiveMetrics liveMetrics;
+        /** The number of commits to analyze or a negative number if they weren't counted. */
+        private final int expectedCommits;
+        /** The number of scheduled batches which are not {@link #append appended} yet. Read by the metrics thread. */
+        private final AtomicInteger runningTasks = new AtomicInteger();
+        private boolean exhausted;
+        private boolean finished;
+
+        /**
+         * Prepares the batches of the repository given in {@link Analysis#Analysis}.
+         * See {@link #forEachCommit(Supplier, ExecutionOptions)} for a description of the
+         * parameters.
+         *
+         * @param pipeline the pipeline shared by all repositories or {@code null}
+         * @param patchParsingPool the pool for parsing patches shared by all repositories or {@code null}
+         * @param memoryGovernor the governor throttling the batches of all repositories or {@code null}
+         * @param liveMetrics the publisher of the metrics of all repositories or {@code null}
+         */
+        CommitHistoryRun(
+                final Supplier<Analysis> analysisFactory,
+                final ExecutionOptions executionOptions,
+                final CommitDiffPipeline pipeline,
+                final ExecutorService patchParsingPool,
+                final MemoryGovernor memoryGovernor,
+                final LiveMetrics liveMetrics
+        ) {
+            final int commitsToProcessPerThread = executionOptions.commitsToProcessPerThread();
+
+            analysis = analysisFactory.get();
+            analysis.differ = new GitDiffer(analysis.getRepository());
+            if (executionOptions.recordTimings()) {
+                analysis.result.append(TimingResult.KEY, new TimingResult());
+            }
+            analysis.result.append(RuntimeWithMultithreadingResult.KEY, new RuntimeWithMultithreadingResult());
+            analysis.differ.setParallelPatchParsing(patchParsingPool, executionOptions.minPatchesForParallelParsing());
+            analysis.differ.setTimeouts(executionOptions.commitTimeout(), executionOptions.patchTimeout());
+            analysis.differ.setLazyPatchParsing(executionOptions.lazyPatchParsing());
+            if (executionOptions.variabilityPrescan()) {
+                analysis.differ.setVariabilityPrescan(new VariabilityPrescan());
+            }
+            if (executionOptions.variationDiffCacheSize() != ExecutionOptions.VARIATION_DIFF_CACHE_DISABLED) {
+                final Path cacheDirectory = executionOptions.variationDiffCacheDirectory();
+                analysis.differ.setVariationDiffCache(new VariationDiffCache(
+                        executionOptions.variationDiffCacheSize(),
+                        cacheDirectory == null ? null : cacheDirectory.resolve(analysis.getRepository().getRepositoryName())
+                ));
+            }
+
+            head = analysis.resolveHead();
+            previousResult = executionOptions.incremental()
+                    ? analysis.restrictToNewCommits(head, analysisFactory)
+                    : null;
+
+            clock = new Clock();
+
+            // prepare tasks
+            Logger.info(">>> Scheduling asynchronous analysis of {}.", analysis.getRepository().getRepositoryName());
+            clock.start();
+            final InvocationCounter<RevCommit, RevCommit> numberOfTotalCommits = InvocationCounter.justCount();
+            final Iterator<RevCommit> commits = executionOptions.shard().filter(
+                    analysis.differ.yieldRevCommitsAfter(numberOfTotalCommits)
+            );
+            this.liveMetrics = liveMetrics;
+            // Counting requires an additional pass over the history, so only count if necessary.
+            expectedCommits = liveMetrics != null || executionOptions.batchSizing() == ExecutionOptions.BatchSizing.ADAPTIVE
+                    ? countCommits(analysis.differ, executionOptions.shard())
+                    : -1;
+            adaptiveBatcher = switch (executionOptions.batchSizing()) {
+                case FIXED -> null;
+                case ADAPTIVE -> new AdaptiveCommitBatcher(
+                        analysis.differ.getJGitRepo().getRepository(),
+                        commits,
+                        expectedCommits,
+                        executionOptions.nThreads(),
+                        commitsToProcessPerThread
+                );
+            };
+            if (adaptiveBatcher != null && memoryGovernor != null && executionOptions.shrinkBatchesUnderMemoryPressure()) {
+                adaptiveBatcher.shrinkBatchesUnderMemoryPressure(memoryGovernor);
+            }
+
+            /// 1.) Retrieve COMMITS_TO_PROCESS_PER_THREAD commits from the differ and cluster them into one list.
+            Iterator<List<RevCommit>> commitBatches = adaptiveBatcher == null
+                    ? new ClusteredIterator<>(commits, commitsToProcessPerThread)
+                    : adaptiveBatcher;
+            final BatchManifest manifest;
+            if (executionOptions.resume()) {
+                manifest = new BatchManifest(analysis.getOutputDir(), commitsToProcessPerThread);
+                commitBatches = skipFinishedBatches(commitBatches, manifest, analysisFactory, analysis.getResult());
+            } else {
+                manifest = null;
+            }
+
+            tasks = new MappedIterator<>(
+                    commitBatches,
+                    /// 2.) Create a MiningTask for the list of commits. This task will then be processed by one
+                    ///     particular thread.
+                    commitList -> () -> {
+                        Analysis thisThreadsAnalysis = analysisFactory.get();
+                        thisThreadsAnalysis.differ = analysis.differ;
+                        if (executionOptions.recordTimings()) {
+                            thisThreadsAnalysis.result.append(TimingResult.KEY, new TimingResult());
+                        }
+                        thisThreadsAnalysis.pipeline = pipeline;
+                        thisThreadsAnalysis.commitTimeout = executionOptions.commitTimeout();
+                        thisThreadsAnalysis.patchTimeout = executionOptions.patchTimeout();
+                        final Clock batchClock = new Clock();
+                        thisThreadsAnalysis.processCommitBatch(commitList);
+                        if (adaptiveBatcher != null) {
+                            adaptiveBatcher.reportRuntime(commitList, thisThreadsAnalysis.getBatchRuntime(batchClock));
+                        }
+                        if (manifest != null) {
+                            manifest.recordFinished(commitList);
+                        }
+                        return new BatchResult(this, thisThreadsAnalysis.getResult(), commitList.size());
+                    }
+            );
+            Logger.info("<<< done in {}", clock.printPassedSeconds());
+
+            Consumer<TaskCompletionMonitor.TimeInfo> progressReporter = TaskCompletionMonitor.LogProgress("commits");
+            if (executionOptions.recordTimings()) {
+                progressReporter = progressReporter.andThen(time -> Logger.info(
+                        "Time spent in {}: {}",
+                        analysis.getRepository().getRepositoryName(),
+                        analysis.getResult().get(TimingResult.KEY)
+                ));
+            }
+            if (liveMetrics != null) {
+                progressReporter = progressReporter.andThen(TaskCompletionMonitor.PublishMetrics(
+                        liveMetrics,
+                        analysis.getRepository().getRepositoryName(),
+                        analysis::getResult,
+                        runningTasks::get,
+                        expectedCommits
+                ));
+            }
+            commitSpeedMonitor = new TaskCompletionMonitor(0, progressReporter);
+            clock.start();
+            commitSpeedMonitor.start();
+        }
+
+        /**
+         * Returns whether another batch of this repository can be scheduled.
+         * Once this method returns {@code false}, all batches are scheduled.
+         */
+        boolean hasNextTask() {
+            if (!tasks.hasNext()) {
+                exhausted = true;
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Returns the task processing the next batch of this repository.
+         */
+        Callable<BatchResult> nextTask() {
+            runningTasks.incrementAndGet();
+            return tasks.next();
+        }
+
+        /**
+         * Merges the result of a finished batch into the total results of this repository and
+         * reports its commits as finished, regardless of whether they were analyzed or filtered.
+         */
+        void append(final BatchResult batchResult) {
+            runningTasks.decrementAndGet();
+            analysis.getResult().append(batchResult.result());
+            commitSpeedMonitor.addFinishedTasks(batchResult.commits());
+        }
+
+        /**
+         * Exports the total results of this repository if all of its batches are processed.
+         */
+        void finishIfDone() {
+            if (finished || !exhausted || runningTasks.get() > 0) {
+                return;
+            }
+            finished = true;
+
+            if (adaptiveBatcher != null) {
+                adaptiveBatcher.close();
+            }
+            analysis.differ.close();
+
+            final double runtime = clock.getPassedSeconds();
+            Logger.info("<<< done with {} in {}", analysis.getRepository().getRepositoryName(), Clock.printPassedSeconds(runtime));
+
+            analysis.getResult().get(RuntimeWithMultithreadingResult.KEY).value = runtime;
+            if (liveMetrics != null) {
+                liveMetrics.update(LiveMetrics.Snapshot.of(analysis.getRepository().getRepositoryName(), analysis.getResult(), runtime, 0, expectedCommits));
+            }
+//            analysis.getResult().get(TotalNumberOfCommitsResult.KEY).value = numberOfTotalCommits.invocationCount().get();
+
+            if (previousResult != null) {
+                analysis.getResult().append(previousResult);
+            }
+
+            exportMetadata(analysis.getOutputDir(), analysis.getResult());
+            if (head != null) {
+                IO.tryWrite(analysis.getOutputDir().resolve(ANALYZED_HEAD_FILE_NAME), head.getName());
+            }
+        }
+    }
+
+    /**
+     * Interleaves the batches of multiple {@link CommitHistoryRun}s in a round-robin fashion.
+     * At most {@code maxActiveRuns} repositories are opened at the same time. The next repository
+     * is opened as soon as all batches of an active repository are scheduled.
+     */
+    private static final class InterleavedTasks implements Iterator<Callable<BatchResult>> {
+        private final Iterator<CommitHistoryRun> pendingRuns;
+        private final LinkedList<CommitHistoryRun> activeRuns = new LinkedList<>();
+        private final int maxActiveRuns;
+
+        InterleavedTasks(final Iterator<CommitHistoryRun> pendingRuns, final int maxActiveRuns) {
+            this.pendingRuns = pendingRuns;
+            this.maxActiveRuns = maxActiveRuns;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (true) {
+                while (activeRuns.size() < maxActiveRuns && pendingRuns.hasNext()) {
+                    activeRuns.addLast(pendingRuns.next());
+                }
+
+                if (activeRuns.isEmpty()) {
+                    return false;
+                }
+                if (activeRuns.getFirst().hasNextTask()) {
+                    return true;
+                }
+                activeRuns.removeFirst();
+            }
+        }
+
+        @Override
+        public Callable<BatchResult> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            final CommitHistoryRun run = activeRuns.removeFirst();
+            activeRuns.addLast(run);
+            return run.nextTask();
+        }
+    }
+
+    /**
+     * Returns the current {@code HEAD} of the analyzed repository and restricts the history of
+     * {@link #differ} to it. This ensures that the analyzed history matches the stored
+     * {@link #ANALYZED_HEAD_FILE_NAME analyzed head} even if the repository is updated during
+     * the analysis.
+     *
+     * @return the analyzed head or {@code null} if it can't be determined
+     */
+    private ObjectId resolveHead() {
+        try {
+            final ObjectId head = differ.resolveHead();
+            differ.restrictHistory(head, null);
+            return head;
+        } catch (IOException e) {
+            Logger.warn(e, "Could not resolve the HEAD of {}", repository.getRepositoryName());
+            return null;
+        }
+    }
+
+    /**
+     * Restricts the history of {@link #differ} to the commits that were added since the last
+     * analysis in {@link #getOutputDir} and loads the results of that analysis.
+     * If there is no previous analysis or its results can't be loaded, the whole history is
+     * analyzed.
+     *
+     * @param head the newest commit to analyze
+     * @param analysisFactory creates the analysis whose results are loaded
+     * @return the results of the previous analysis or {@code null} if the whole history is analyzed
+     */
+    private AnalysisResult restrictToNewCommits(final ObjectId head, final Supplier<Analysis> analysisFactory) {
+        final Path headFile = outputDir.resolve(ANALYZED_HEAD_FILE_NAME);
+        final Path totalResultsFile = outputDir.resolve(TOTAL_RESULTS_FILE_NAME);
+        if (head == null || !Files.exists(headFile) || !Files.exists(totalResultsFile)) {
+            Logger.info("No previous analysis of {} found. Analyzing the whole history.", repository.getRepositoryName());
+            return null;
+        }
+
+        try {
+            final ObjectId previousHead = ObjectId.fromString(Files.readString(headFile).trim());
+
+            final AnalysisResult previousResult = analysisFactory.get().getResult();
+            previousResult.append(RuntimeWithMultithreadingResult.KEY, new RuntimeWithMultithreadingResult());
+            previousResult.setFrom(totalResultsFile);
+
+            differ.restrictHistory(head, previousHead);
+            Logger.info("Analyzing the commits of {} since {}", repository.getRepositoryName(), previousHead.getName());
+            return previousResult;
+        } catch (IOException | RuntimeException e) {
+            Logger.warn(e, "Could not continue the previous analysis of {}. Analyzing the whole history.", repository.getRepositoryName());
+            return null;
+        }
+    }
+
+    /**
+     * Skips all batches which are {@link BatchManifest#isFinished finished} according to
+     * {@code manifest} and appends their results to {@code result}. Finished batches whose results
+     * can't be imported are not skipped.
+     *
+     * @param batches the batches to filter
+     * @param manifest the batches which were processed by a previous run
+     * @param analysisFactory creates the analysis whose results are imported
+     * @param result the result to which the results of skipped batches are appended
+     * @return all batches of {@code batches} that still need to be processed
+     */
+    private static Iterator<List<RevCommit>> skipFinishedBatches(
+            final Iterator<List<RevCommit>> batches,
+            final BatchManifest manifest,
+            final Supplier<Analysis> analysisFactory,
+            final AnalysisResult result
+    ) {
+        return new Yield<>(
+                () -> {
+                    while (batches.hasNext()) {
+                        final List<RevCommit> batch = batches.next();
+                        if (!manifest.isFinished(batch)) {
+                            return batch;
+                        }
+
+                        final Path resultFile = manifest.getResultFile(batch);
+                        final AnalysisResult batchResult = analysisFactory.get().getResult();
+                        try {
+                            batchResult.setFrom(resultFile);
+                        } catch (IOException | RuntimeException e) {
+                            Logger.warn(e, "Could not import the results of the finished commit batch {}. Processing it again.", resultFile);
+                            return batch;
+                        }
+
+                        Logger.debug("Skipping the finished commit batch {}", resultFile);
+                        result.append(batchResult);
+                    }
+
+                    return null;
+                }
+        );
+    }
+
+    /**
+     * Counts the commits of the differ's repository that pass its {@link
+     * org.variantsync.diffdetective.diff.git.DiffFilter} and belong to the given shard.
+     */
+    private static int countCommits(final GitDiffer differ, final Shard shard) {
+        final Clock clock = new Clock();
+        int numberOfCommits = 0;
+        for (final RevCommit commit : differ.yieldRevCommits()) {
+            if (shard.contains(commit)) {
+                ++numberOfCommits;
+            }
+        }
+        Logger.info("Counted {} commits in {}", numberOfCommits, clock.printPassedSeconds());
+        return numberOfCommits;
+    }
+
+    /**
+     * Returns the time in seconds it took to process the last commit batch. Prefers the runtime
+     * measured by {@link StatisticsAnalysis} if it is part of this analysis and falls back to the
+     * given clock otherwise.
+     *
+     * @param batchClock a clock started right before the last commit batch was processed
+     */
+    private double getBatchRuntime(final Clock batchClock) {
+        final StatisticsAnalysis.Result statistics = getResult().get(StatisticsAnalysis.RESULT);
+        if (statistics != null) {
+            return statistics.runtimeInSeconds;
+        }
+        return batchClock.getPassedSeconds();
     }
 
     /**
@@ -480,6 +1109,8 @@ public class Analysis {
 
     /**
      * Sequential analysis of all {@code commits} as one batch.
+     * If a {@link CommitDiffPipeline} is used, the commit diffs are created concurrently ahead of
+     * their analysis.
      *
      * @param commits the commit batch to be processed
      * @see #forEachCommit
@@ -487,57 +1118,105 @@ public class Analysis {
     protected void processCommitBatch(List<RevCommit> commits) throws Exception {
         outputFile = outputDir.resolve(commits.get(0).getId().getName());
 
+        final Iterator<Supplier<CommitDiffResult>> commitDiffs = pipeline == null
+                ? new MappedIterator<>(commits.iterator(), commit -> () -> createCommitDiff(commit))
+                : new MappedIterator<>(pipeline.schedule(differ, commits), commitDiff -> () -> {
+                    final long start = System.nanoTime();
+                    try {
+                        return commitDiff.get();
+                    } finally {
+                        addTime(PIPELINE_WAITING_TIME, start);
+                    }
+                });
+
+        if (get(TimingResult.KEY) != null) {
+            hookNanoseconds = new long[hooks.size()][Phase.values().length];
+        }
         ListIterator<Hooks> batchHook = hooks.listIterator();
         try {
-            runHook(batchHook, Hooks::beginBatch);
+            runHook(Phase.BATCH, batchHook, Hooks::beginBatch);
 
             // For each commit
             for (final RevCommit finalCommit : commits) {
                 currentCommit = finalCommit;
+                currentCommitDiff = null;
+                currentCommitDiffResult = commitDiffs.next();
 
+                final CommitAnalyzedEvent event = new CommitAnalyzedEvent();
+                event.begin();
                 ListIterator<Hooks> commitHook = hooks.listIterator();
-                try {
-                    if (!runFilterHook(commitHook, Hooks::beginCommit)) {
+                try (Deadline commitDeadline = Deadline.start(commitTimeout)) {
+                    if (!runFilterHook(Phase.COMMIT, commitHook, Hooks::beginCommit)) {
                         continue;
                     }
 
                     processCommit();
+                } catch (DeadlineExceededException e) {
+                    Logger.warn("Analyzing commit {} in {} exceeded its time budget of {}", currentCommit.getId().getName(), repository.getRepositoryName(), commitTimeout);
+                    getResult().reportDiffErrors(List.of(DiffError.TIMEOUT));
+                    recordSlowCommit(null);
                 } catch (Exception e) {
                     Logger.error(e, "An unexpected error occurred at {} in {}", currentCommit.getId().getName(), repository.getRepositoryName());
                     throw e;
                 } finally {
-                    runReverseHook(commitHook, Hooks::endCommit);
+                    runReverseHook(Phase.COMMIT, commitHook, Hooks::endCommit);
+
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.patchCount = currentCommitDiff == null ? 0 : currentCommitDiff.getPatchAmount();
+                        event.repository = repository.getRepositoryName();
+                        event.commitHash = currentCommit.getId().getName();
+                        event.commit();
+                    }
                 }
             }
         } finally {
-            runReverseHook(batchHook, Hooks::endBatch);
+            runReverseHook(Phase.BATCH, batchHook, Hooks::endBatch);
+            recordHookTimes();
 
             // export the thread's result
             getResult().exportTo(FileUtils.addExtension(outputFile, Analysis.EXTENSION));
         }
     }
 
+    /**
+     * Analyzes the {@link #getCurrentCommit current commit} after waiting for its diff, which
+     * might be created ahead of time by a {@link CommitDiffPipeline}.
+     */
     protected void processCommit() throws Exception {
-        // parse the commit
-        final CommitDiffResult commitDiffResult = differ.createCommitDiff(currentCommit);
+        final CommitDiffResult commitDiffResult = currentCommitDiffResult == null
+                ? createCommitDiff(currentCommit)
+                : currentCommitDiffResult.get();
+        currentCommitDiffResult = null;
+        processCommit(commitDiffResult);
+    }
 
+    /**
+     * Analyzes the {@link #getCurrentCommit current commit}.
+     *
+     * @param commitDiffResult the parsed diff of the current commit
+     */
+    protected void processCommit(final CommitDiffResult commitDiffResult) throws Exception {
         // report any errors that occurred and exit in case no VariationDiff could be parsed.
         getResult().reportDiffErrors(commitDiffResult.errors());
+        if (commitDiffResult.errors().contains(DiffError.TIMEOUT)) {
+            recordSlowCommit(null);
+        }
         if (!commitDiffResult.errors().isEmpty()) {
             StringBuilder sb = new StringBuilder();
             commitDiffResult.errors().forEach(e -> sb.append(e).append("\n"));
             Logger.debug("found commit for which at least one patch could not be parsed because:\n{}", sb);
-            runHook(hooks.listIterator(), Hooks::onFailedParse);
+            runHook(Phase.COMMIT, hooks.listIterator(), Hooks::onFailedParse);
         }
         if (commitDiffResult.diff().isEmpty()) {
             Logger.debug("found commit that failed entirely because:\n{}", commitDiffResult.errors());
-            runHook(hooks.listIterator(), Hooks::onFailedCommit);
+            runHook(Phase.COMMIT, hooks.listIterator(), Hooks::onFailedCommit);
             return;
         }
 
         // extract the produced commit diff and inform the strategy
         currentCommitDiff = commitDiffResult.diff().get();
-        if (!runFilterHook(hooks.listIterator(), Hooks::onParsedCommit)) {
+        if (!runFilterHook(Phase.COMMIT, hooks.listIterator(), Hooks::onParsedCommit)) {
             return;
         }
 
@@ -546,42 +1225,215 @@ public class Analysis {
             currentPatch = finalPatch;
 
             ListIterator<Hooks> patchHook = hooks.listIterator();
-            try {
-                if (!runFilterHook(patchHook, Hooks::beginPatch)) {
+            try (Deadline patchDeadline = Deadline.start(patchTimeout)) {
+                Deadline.check();
+                if (!runFilterHook(Phase.PATCH, patchHook, Hooks::beginPatch)) {
                     continue;
                 }
 
                 processPatch();
+            } catch (DeadlineExceededException e) {
+                // Abort the whole commit if its deadline passed and not just the patch's deadline.
+                if (Deadline.current().isExceeded()) {
+                    throw e;
+                }
+
+                Logger.warn("Analyzing {} in commit {} exceeded its time budget of {}", currentPatch.getFileName(Time.AFTER), currentPatch.getCommitHash(), patchTimeout);
+                getResult().reportDiffErrors(List.of(DiffError.TIMEOUT));
+                recordSlowCommit(currentPatch.getFileName(Time.AFTER));
             } catch (Throwable t) {
                 Logger.error("error during {} {}", currentPatch.getFileName(Time.AFTER), currentPatch.getCommitHash());
                 throw t;
             } finally {
-                runReverseHook(patchHook, Hooks::endPatch);
+                runReverseHook(Phase.PATCH, patchHook, Hooks::endPatch);
             }
         }
         
         getResult().get(TotalNumberOfCommitsResult.KEY).value++;
     }
 
+    /**
+     * Analyzes the {@link #getCurrentPatch current patch}. If the patch was
+     * {@link GitDiffer#setLazyPatchParsing parsed lazily}, it is parsed here and its parse error
+     * is reported if it is invalid.
+     */
     protected void processPatch() throws Exception {
+        if (!currentPatch.isParsed()) {
+            final long start = System.nanoTime();
+            currentPatch.isValid();
+            addTime(PARSING_TIME, start);
+        }
+        currentPatch.getParseError().ifPresent(error -> getResult().reportDiffErrors(List.of(error)));
+
         if (currentPatch.isValid()) {
             // generate TreeDiff
+            final long start = System.nanoTime();
             currentVariationDiff = currentPatch.getVariationDiff();
             currentVariationDiff.assertConsistency();
+            addTime(VARIATION_DIFF_TIME, start);
+
+            Deadline.check();
+            runFilterHook(Phase.PATCH, hooks.listIterator(), Hooks::analyzeVariationDiff);
+        }
+    }
+
+    /**
+     * Loads and parses {@code commit} on the current thread while recording the time of both steps.
+     */
+    private CommitDiffResult createCommitDiff(final RevCommit commit) {
+        final long loadingStart = System.nanoTime();
+        final var loadedCommitDiff = differ.loadCommitDiff(commit);
+        final long parsingStart = addTime(LOADING_TIME, loadingStart);
+        final CommitDiffResult commitDiff = differ.parseCommitDiff(loadedCommitDiff);
+        addTime(PARSING_TIME, parsingStart);
+        return commitDiff;
+    }
+
+    /**
+     * Adds the time passed since {@code start} to the {@link TimingResult} named {@code name}.
+     *
+     * @param start a time stamp obtained by {@link System#nanoTime}
+     * @return the current time stamp
+     */
+    private long addTime(final String name, final long start) {
+        final long now = System.nanoTime();
+        final TimingResult timings = get(TimingResult.KEY);
+        if (timings != null) {
+            timings.add(name, now - start);
+        }
+        return now;
+    }
+
+    /**
+     * Adds the time passed since {@code start} to the time of the hook at position {@code index}
+     * in {@link #hooks}.
+     */
+    private void addHookTime(final Phase phase, final int index, final long start) {
+        if (phase != null && hookNanoseconds != null && index < hookNanoseconds.length) {
+            hookNanoseconds[index][phase.ordinal()] += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Ends {@code event} and emits it for the call of {@code hook} if it is enabled.
+     */
+    private static void commitHookEvent(final HookExecutedEvent event, final Object hook, final Phase phase) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.hook = hook.getClass();
+            event.phase = phase == null ? null : phase.toString();
+            event.commit();
+        }
+    }
+
+    /**
+     * Moves the times accumulated for each hook during the current batch into the
+     * {@link TimingResult}. Accumulating them in an array first avoids a map lookup per hook call.
+     */
+    private void recordHookTimes() {
+        final TimingResult timings = get(TimingResult.KEY);
+        if (timings != null && hookNanoseconds != null) {
+            for (int i = 0; i < hookNanoseconds.length; ++i) {
+                final Class<?> hookClass = hooks.get(i).getClass();
+                final String hookName = hookClass.getSimpleName().isEmpty() ? hookClass.getName() : hookClass.getSimpleName();
+                for (final Phase phase : Phase.values()) {
+                    final long nanoseconds = hookNanoseconds[i][phase.ordinal()];
+                    if (nanoseconds > 0) {
+                        timings.add(hookName + " in " + phase, nanoseconds);
+                    }
+                }
+            }
+        }
+        hookNanoseconds = null;
+    }
+
+    /**
+     * Appends the {@link #getCurrentCommit current commit} to {@link #SLOW_COMMITS_FILE_NAME}.
+     *
+     * @param fileName the file whose patch exceeded its time budget or {@code null} if the whole
+     * commit exceeded its time budget
+     */
+    protected void recordSlowCommit(final String fileName) {
+        final String line = fileName == null
+                ? currentCommit.getId().getName()
+                : currentCommit.getId().getName() + " " + fileName;
 
-            runFilterHook(hooks.listIterator(), Hooks::analyzeVariationDiff);
+        synchronized (SLOW_COMMITS_LOCK) {
+            try {
+                IO.append(outputDir.resolve(SLOW_COMMITS_FILE_NAME), line + StringUtils.LINEBREAK);
+            } catch (IOException e) {
+                Logger.error(e, "Could not record the slow commit {}", line);
+            }
         }
     }
 
+    /**
+     * Calls {@code callHook} on all remaining hooks of {@code hook} without recording their time.
+     */
     protected <Hook> void runHook(ListIterator<Hook> hook, FailableBiConsumer<Hook, Analysis, Exception> callHook) throws Exception {
+        runHook(null, hook, callHook);
+    }
+
+    /**
+     * Same as {@link #runHook(ListIterator, FailableBiConsumer)} but stops at the first hook
+     * returning {@code false}.
+     *
+     * @return whether all hooks returned {@code true}
+     */
+    protected <Hook> boolean runFilterHook(ListIterator<Hook> hook, FailableBiFunction<Hook, Analysis, Boolean, Exception> callHook) throws Exception {
+        return runFilterHook(null, hook, callHook);
+    }
+
+    /**
+     * Calls {@code callHook} on all hooks before the current position of {@code hook} in reverse
+     * order without recording their time. All hooks are called even if some of them throw an
+     * exception.
+     */
+    protected <Hook> void runReverseHook(ListIterator<Hook> hook, FailableBiConsumer<Hook, Analysis, Exception> callHook) throws Exception {
+        runReverseHook(null, hook, callHook);
+    }
+
+    /**
+     * Calls {@code callHook} on all remaining hooks of {@code hook}. The time spent in each hook is
+     * recorded for {@code phase} if {@link ExecutionOptions#recordTimings timings are recorded}.
+     *
+     * @param phase the phase of the hook calls or {@code null} to record no time
+     */
+    private <Hook> void runHook(Phase phase, ListIterator<Hook> hook, FailableBiConsumer<Hook, Analysis, Exception> callHook) throws Exception {
         while (hook.hasNext()) {
-            callHook.accept(hook.next(), this);
+            final Hook nextHook = hook.next();
+            final HookExecutedEvent event = new HookExecutedEvent();
+            event.begin();
+            final long start = hookNanoseconds == null ? 0 : System.nanoTime();
+            try {
+                callHook.accept(nextHook, this);
+            } finally {
+                addHookTime(phase, hook.previousIndex(), start);
+                commitHookEvent(event, nextHook, phase);
+            }
         }
     }
 
-    protected <Hook> boolean runFilterHook(ListIterator<Hook> hook, FailableBiFunction<Hook, Analysis, Boolean, Exception> callHook) throws Exception {
+    /**
+     * Same as {@link #runHook} but stops at the first hook returning {@code false}.
+     *
+     * @return whether all hooks returned {@code true}
+     */
+    private <Hook> boolean runFilterHook(Phase phase, ListIterator<Hook> hook, FailableBiFunction<Hook, Analysis, Boolean, Exception> callHook) throws Exception {
         while (hook.hasNext()) {
-            if (!callHook.apply(hook.next(), this)) {
+            final Hook nextHook = hook.next();
+            final HookExecutedEvent event = new HookExecutedEvent();
+            event.begin();
+            final long start = hookNanoseconds == null ? 0 : System.nanoTime();
+            final boolean proceed;
+            try {
+                proceed = callHook.apply(nextHook, this);
+            } finally {
+                addHookTime(phase, hook.previousIndex(), start);
+                commitHookEvent(event, nextHook, phase);
+            }
+
+            if (!proceed) {
                 return false;
             }
         }
@@ -589,11 +1441,20 @@ public class Analysis {
         return true;
     }
 
-    protected <Hook> void runReverseHook(ListIterator<Hook> hook, FailableBiConsumer<Hook, Analysis, Exception> callHook) throws Exception {
+    /**
+     * Calls {@code callHook} on all hooks before the current position of {@code hook} in reverse
+     * order. All hooks are called even if some of them throw an exception. The time spent in each
+     * hook is recorded like in {@link #runHook}.
+     */
+    private <Hook> void runReverseHook(Phase phase, ListIterator<Hook> hook, FailableBiConsumer<Hook, Analysis, Exception> callHook) throws Exception {
         Exception catchedException = null;
         while (hook.hasPrevious()) {
+            final Hook previousHook = hook.previous();
+            final HookExecutedEvent event = new HookExecutedEvent();
+            event.begin();
+            final long start = hookNanoseconds == null ? 0 : System.nanoTime();
             try {
-                callHook.accept(hook.previous(), this);
+                callHook.accept(previousHook, this);
             } catch (Exception e) {
                 Logger.error(e, "An exception thrown in an end hooks of Analysis will be rethrown later");
                 if (catchedException == null) {
@@ -601,6 +1462,9 @@ public class Analysis {
                 } else {
                     catchedException.addSuppressed(e);
                 }
+            } finally {
+                addHookTime(phase, hook.nextIndex(), start);
+                commitHookEvent(event, previousHook, phase);
             }
         }
 
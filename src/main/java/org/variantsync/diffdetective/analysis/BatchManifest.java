@@ -0,0 +1,112 @@
+package org.variantsync.diffdetective.analysis;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.tinylog.Logger;
+import org.variantsync.diffdetective.util.FileUtils;
+import org.variantsync.diffdetective.util.IO;
+import org.variantsync.diffdetective.util.StringUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records which commit batches of an analysis are finished such that an interrupted analysis can be
+ * resumed.
+ *
+ * <p>A batch is identified by its first commit and its number of commits. The results of a
+ * finished batch are stored by {@link Analysis#processCommitBatch} in a file named after the first
+ * commit of the batch. Hence, a batch can only be skipped if the commit history is partitioned
+ * into exactly the same batches, which is the case for {@link ExecutionOptions.BatchSizing#FIXED
+ * fixed batch sizes} if the commit history and {@link ExecutionOptions#commitsToProcessPerThread}
+ * didn't change. The latter is stored in the manifest and the manifest is discarded if it doesn't
+ * match.
+ *
+ * <p>This class is thread safe.
+ *
+ * @see ExecutionOptions#resume
+ */
+public class BatchManifest {
+    /**
+     * Name of the manifest file in the output directory of an analysis.
+     */
+    public static final String FILE_NAME = "batches.manifest.txt";
+    private static final String HEADER_PREFIX = "commits per batch: ";
+
+    private final Path manifestFile;
+    private final Path outputDir;
+    /** Maps the first commit of each finished batch to the number of commits in that batch. */
+    private final Map<String, Integer> finishedBatches = new HashMap<>();
+
+    /**
+     * Loads the manifest in {@code outputDir} or creates a new one if there is no manifest or if
+     * it was created for a different number of commits per batch.
+     *
+     * @param outputDir the output directory of the analysis
+     * @param commitsPerBatch the number of commits in each batch (except the last one)
+     * @throws UncheckedIOException if the manifest can't be read or created
+     */
+    public BatchManifest(final Path outputDir, final int commitsPerBatch) {
+        this.outputDir = outputDir;
+        this.manifestFile = outputDir.resolve(FILE_NAME);
+        final String header = HEADER_PREFIX + commitsPerBatch;
+
+        try {
+            if (Files.exists(manifestFile)) {
+                final List<String> lines = Files.readAllLines(manifestFile);
+                if (!lines.isEmpty() && header.equals(lines.get(0))) {
+                    for (final String line : lines.subList(1, lines.size())) {
+                        final String[] commitAndSize = line.split(" ");
+                        if (commitAndSize.length == 2) {
+                            finishedBatches.put(commitAndSize[0], Integer.parseInt(commitAndSize[1]));
+                        }
+                    }
+                    Logger.info("Found {} finished commit batches in {}", finishedBatches.size(), manifestFile);
+                    return;
+                }
+
+                Logger.warn("Discarding {} because it was created with a different number of commits per batch", manifestFile);
+            }
+
+            IO.write(manifestFile, header + StringUtils.LINEBREAK);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns whether {@code batch} was already processed by a previous run.
+     */
+    public synchronized boolean isFinished(final List<RevCommit> batch) {
+        final Integer size = finishedBatches.get(batch.get(0).getId().getName());
+        return size != null && size == batch.size();
+    }
+
+    /**
+     * Returns the file containing the results of {@code batch}.
+     * @see Analysis#getOutputFile
+     */
+    public Path getResultFile(final List<RevCommit> batch) {
+        return FileUtils.addExtension(outputDir.resolve(batch.get(0).getId().getName()), Analysis.EXTENSION);
+    }
+
+    /**
+     * Records that {@code batch} is finished and that its results are stored in
+     * {@link #getResultFile}. The record is persisted immediately.
+     *
+     * @throws UncheckedIOException if the manifest can't be written
+     */
+    public synchronized void recordFinished(final List<RevCommit> batch) {
+        final String firstCommit = batch.get(0).getId().getName();
+        try {
+            IO.append(manifestFile, firstCommit + " " + batch.size() + StringUtils.LINEBREAK);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        finishedBatches.put(firstCommit, batch.size());
+    }
+}
@@ -0,0 +1,168 @@
+package org.variantsync.diffdetective.analysis;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.tinylog.Logger;
+import org.variantsync.diffdetective.diff.git.GitDiffer;
+import org.variantsync.diffdetective.diff.result.CommitDiffResult;
+import org.variantsync.diffdetective.parallel.VirtualThreads;
+import org.variantsync.diffdetective.util.Diagnostics;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Creates the {@link CommitDiffResult}s of commit batches in dedicated thread pools ahead of their
+ * analysis.
+ *
+ * <p>The creation of a {@link CommitDiffResult} is split into two stages: The
+ * {@link GitDiffer#loadCommitDiff loading} of all required git objects, which is IO bound, and the
+ * {@link GitDiffer#parseCommitDiff parsing} into {@link org.variantsync.diffdetective.variation.diff.VariationDiff}s,
+ * which is CPU bound. Each stage runs on its own thread pool. The third stage, the execution of
+ * {@link Analysis.Hooks}, is performed by the thread which processes a commit batch. Hence, IO
+ * stalls overlap with CPU heavy hooks.
+ *
+ * <p>For each batch, at most {@code commitsInFlightPerBatch} commits are loaded or parsed but not
+ * yet consumed by the analysis, which bounds the memory used by prefetched commit diffs.
+ * The batches may belong to different repositories, so one pipeline can be shared by the analyses
+ * of multiple repositories.
+ *
+ * @see ExecutionOptions#loadingThreads
+ * @see ExecutionOptions#parsingThreads
+ * @see ExecutionOptions#loadingExecutor
+ */
+public class CommitDiffPipeline implements AutoCloseable {
+    /** Pool for the loading stage or {@code null} if loading is performed by the parsing stage. */
+    private final ExecutorService loadingPool;
+    private final ExecutorService parsingPool;
+    private final int commitsInFlightPerBatch;
+
+    /**
+     * Creates thread pools for the pipeline stages as configured by
+     * {@link ExecutionOptions#loadingThreads}, {@link ExecutionOptions#parsingThreads},
+     * {@link ExecutionOptions#loadingExecutor} and {@link ExecutionOptions#commitsInFlightPerBatch}.
+     * If one of the thread counts is zero, that stage is performed by the threads of the other
+     * stage.
+     *
+     * @param options the options which must {@link ExecutionOptions#isPipelined request a pipeline}
+     */
+    public CommitDiffPipeline(final ExecutionOptions options) {
+        int loadingThreads = options.loadingThreads();
+        int parsingThreads = options.parsingThreads();
+        if (loadingThreads < 0 || parsingThreads < 0 || !options.isPipelined()) {
+            throw new IllegalArgumentException("Invalid number of pipeline threads: " + loadingThreads + " loading and " + parsingThreads + " parsing threads");
+        }
+        if (options.commitsInFlightPerBatch() < 1) {
+            throw new IllegalArgumentException("At least one commit per batch has to be in flight but got " + options.commitsInFlightPerBatch());
+        }
+
+        ExecutorService virtualLoadingPool = null;
+        if (options.loadingExecutor() == ExecutionOptions.LoadingExecutor.VIRTUAL_THREADS) {
+            virtualLoadingPool = VirtualThreads.newVirtualThreadPerTaskExecutor().orElse(null);
+
+            // Parsing is CPU bound, so more threads than cores don't help.
+            final int cores = Diagnostics.INSTANCE.run().getNumberOfAvailableProcessors();
+            parsingThreads = parsingThreads == 0 ? cores : Math.min(parsingThreads, cores);
+
+            if (virtualLoadingPool == null) {
+                Logger.warn("Virtual threads require Java {} but Java {} is running. Falling back to a fixed thread pool.",
+                        VirtualThreads.MINIMUM_JAVA_VERSION, Runtime.version().feature());
+                loadingThreads = Math.max(loadingThreads, parsingThreads);
+            }
+        }
+
+        if (virtualLoadingPool != null) {
+            this.loadingPool = virtualLoadingPool;
+            this.parsingPool = Executors.newFixedThreadPool(parsingThreads);
+        } else if (loadingThreads == 0) {
+            this.loadingPool = null;
+            this.parsingPool = Executors.newFixedThreadPool(parsingThreads);
+        } else if (parsingThreads == 0) {
+            this.loadingPool = Executors.newFixedThreadPool(loadingThreads);
+            this.parsingPool = loadingPool;
+        } else {
+            this.loadingPool = Executors.newFixedThreadPool(loadingThreads);
+            this.parsingPool = Executors.newFixedThreadPool(parsingThreads);
+        }
+        this.commitsInFlightPerBatch = options.commitsInFlightPerBatch();
+    }
+
+    /**
+     * Schedules the creation of the {@link CommitDiffResult}s of {@code commits}.
+     * The returned iterator yields one supplier per commit in the order of {@code commits}. Each
+     * supplier blocks until the result of its commit is available. Requesting the next supplier
+     * schedules the next commit, so the results should be consumed in order.
+     *
+     * @param differ the differ of the repository containing {@code commits}
+     * @param commits the commit batch whose diffs are created
+     * @return an iterator with exactly one result for each commit of {@code commits}
+     */
+    public Iterator<Supplier<CommitDiffResult>> schedule(final GitDiffer differ, final List<RevCommit> commits) {
+        final Iterator<RevCommit> remainingCommits = commits.iterator();
+        final LinkedList<CompletableFuture<CommitDiffResult>> scheduledCommits = new LinkedList<>();
+
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !scheduledCommits.isEmpty() || remainingCommits.hasNext();
+            }
+
+            @Override
+            public Supplier<CommitDiffResult> next() {
+                while (scheduledCommits.size() < commitsInFlightPerBatch && remainingCommits.hasNext()) {
+                    scheduledCommits.add(schedule(differ, remainingCommits.next()));
+                }
+
+                if (scheduledCommits.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+
+                final CompletableFuture<CommitDiffResult> result = scheduledCommits.removeFirst();
+                return () -> join(result);
+            }
+        };
+    }
+
+    private CompletableFuture<CommitDiffResult> schedule(final GitDiffer differ, final RevCommit commit) {
+        if (loadingPool == null) {
+            return CompletableFuture.supplyAsync(() -> differ.parseCommitDiff(differ.loadCommitDiff(commit)), parsingPool);
+        }
+
+        return CompletableFuture
+                .supplyAsync(() -> differ.loadCommitDiff(commit), loadingPool)
+                .thenApplyAsync(differ::parseCommitDiff, parsingPool);
+    }
+
+    /**
+     * Waits for {@code result} and rethrows unchecked exceptions of the pipeline stages as if
+     * they were thrown in the current thread.
+     */
+    private static CommitDiffResult join(final CompletableFuture<CommitDiffResult> result) {
+        try {
+            return result.join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /** Stops all stages and releases the used thread resources. */
+    @Override
+    public void close() {
+        if (loadingPool != null) {
+            loadingPool.shutdown();
+        }
+        parsingPool.shutdown();
+    }
+}
@@ -0,0 +1,621 @@
+package org.variantsync.diffdetective.analysis;
+
+import org.variantsync.diffdetective.analysis.monitoring.LiveMetrics;
+import org.variantsync.diffdetective.diff.git.GitDiffer;
+import org.variantsync.diffdetective.diff.git.VariabilityPrescan;
+import org.variantsync.diffdetective.diff.git.VariationDiffCache;
+import org.variantsync.diffdetective.diff.result.DiffError;
+import org.variantsync.diffdetective.parallel.MemoryGovernor;
+import org.variantsync.diffdetective.parallel.ScheduledTasksIterator;
+import org.variantsync.diffdetective.parallel.ScheduledTasksIterator.ResultOrder;
+import org.variantsync.diffdetective.parallel.VirtualThreads;
+import org.variantsync.diffdetective.util.Deadline;
+import org.variantsync.diffdetective.util.Diagnostics;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Options that control how {@link Analysis#forEachCommit(java.util.function.Supplier, ExecutionOptions)}
+ * distributes the commit history of a repository onto threads.
+ * None of these options influence the results of an analysis, except that a {@link #shard}
+ * contains only a part of the results until all shards are {@link #mergeShards merged} and that
+ * {@link #lazyPatchParsing} changes how parse errors are reported.
+ *
+ * @param commitsToProcessPerThread The number of commits that are processed as one batch by a
+ *                                  single thread. If {@link BatchSizing#ADAPTIVE adaptive batch
+ *                                  sizing} is used, this is the maximum number of commits per batch.
+ * @param nThreads The number of commit batches that are processed in parallel.
+ * @param tasksInFlightPerThread The number of commit batches per thread that are retrieved from
+ *                               the commit history and scheduled at the same time. Bounds the
+ *                               memory used for pending commit batches independently of the
+ *                               history's length. Use {@link ScheduledTasksIterator#UNBOUNDED}
+ *                               to schedule the whole history at once.
+ * @param resultOrder The order in which the results of commit batches are merged. Results can be
+ *                    merged in {@link ResultOrder#COMPLETION completion order} because
+ *                    {@link AnalysisResult#ISEMIGROUP} is commutative for all built-in
+ *                    {@link org.variantsync.diffdetective.metadata.Metadata}. Custom metadata
+ *                    must be commutative as well when choosing this order.
+ * @param batchSizing Determines how many commits are grouped into one batch.
+ * @param loadingThreads The number of threads which load the git objects of commits ahead of their
+ *                       analysis. If both, {@code loadingThreads} and {@code parsingThreads}, are
+ *                       zero and no virtual threads are requested by {@code loadingExecutor}, each
+ *                       commit is loaded, parsed and analyzed sequentially by the thread processing
+ *                       its batch. Otherwise, a {@link CommitDiffPipeline} is used in which hooks
+ *                       are executed by the {@link #nThreads} batch threads.
+ * @param parsingThreads The number of threads which parse loaded commits ahead of their analysis.
+ *                       If zero, commits are parsed by the loading threads and vice versa.
+ * @param commitsInFlightPerBatch The number of commits of each batch which are loaded and parsed
+ *                                ahead of their analysis if a {@link #isPipelined pipeline} is used.
+ * @param loadingExecutor The kind of threads used for {@link #loadingThreads loading} git objects.
+ * @param minPatchesForParallelParsing The minimal number of patches of a commit such that its
+ *                                     patches are parsed in parallel on {@link #nThreads} additional
+ *                                     threads. This avoids that very large commits (e.g., tree wide
+ *                                     refactorings) dominate the runtime of an analysis. Hooks still
+ *                                     observe the patches in a deterministic order. Use
+ *                                     {@link #PARALLEL_PATCH_PARSING_DISABLED} to parse all patches of
+ *                                     a commit sequentially.
+ * @param resume Whether to resume an interrupted analysis. Finished commit batches are recorded in a
+ *               {@link BatchManifest} in the output directory. If such a manifest exists, the
+ *               results of all finished batches are imported from their result files and only the
+ *               remaining commits are processed. This requires {@link BatchSizing#FIXED fixed batch
+ *               sizes} to partition the commit history deterministically.
+ * @param incremental Whether to analyze only the commits added since the last analysis of the same
+ *                    repository. The newest analyzed commit is stored in
+ *                    {@link Analysis#ANALYZED_HEAD_FILE_NAME} in the output directory. If it and the
+ *                    {@link Analysis#TOTAL_RESULTS_FILE_NAME total results} of the last analysis
+ *                    exist, only commits reachable from the current {@code HEAD} but not from the
+ *                    stored one are analyzed and the previous results are merged into the new
+ *                    total results. Otherwise, the whole history is analyzed.
+ * @param shard The part of the commit history to analyze. Use {@link Shard#ALL} to analyze the
+ *              whole history. The results of other shards should be written to the
+ *              {@link Shard#getOutputDirectory output directory of the shard}. This allows to
+ *              distribute the analysis of a single repository onto multiple processes.
+ * @param mergeShards Whether to merge the results of all {@link Shard#count} shards given by
+ *                    {@link #shard} instead of analyzing any commits. See
+ *                    {@link Analysis#mergeShards}.
+ * @param commitTimeout The time budget for parsing and analyzing a single commit or
+ *                      {@link #NO_TIMEOUT}. The budget is checked cooperatively by the parser, SAT
+ *                      queries and between hooks (see {@link Deadline}). A commit exceeding its
+ *                      budget is aborted, reported as {@link DiffError#TIMEOUT} and recorded in
+ *                      {@link Analysis#SLOW_COMMITS_FILE_NAME} for a separate re-analysis. Hooks
+ *                      may have observed parts of an aborted commit. If commits are parsed ahead
+ *                      of their analysis by a {@link #isPipelined pipeline}, parsing and analysis
+ *                      each have their own budget.
+ * @param patchTimeout The time budget for parsing and analyzing a single patch or
+ *                     {@link #NO_TIMEOUT}. A patch exceeding its budget is skipped and handled like
+ *                     a commit exceeding {@link #commitTimeout}, but the remaining patches of its
+ *                     commit are still analyzed.
+ * @param heapHighWaterMark The fraction of the maximal heap size above which no further commit
+ *                          batches are started while other batches are still running (see
+ *                          {@link MemoryGovernor}). This allows to use as many {@link #nThreads}
+ *                          as there are cores without risking an {@link OutOfMemoryError} on
+ *                          repositories with huge commits. Use {@link #HEAP_THROTTLING_DISABLED}
+ *                          to start batches regardless of the heap usage.
+ * @param shrinkBatchesUnderMemoryPressure Whether the size of {@link BatchSizing#ADAPTIVE adaptive}
+ *                                         batches is halved while the heap usage is above
+ *                                         {@link #heapHighWaterMark}. Fixed batch sizes are never
+ *                                         changed as {@link #resume} and {@link #shard}s rely on a
+ *                                         deterministic partitioning of the history.
+ * @param metricsFile The file to which the {@link LiveMetrics} of the analysis are written after
+ *                    each commit batch or {@code null} to write no metrics. The metrics are written
+ *                    as JSON if the file name ends with {@code .json} and in the Prometheus text
+ *                    format otherwise.
+ * @param metricsPort The port on the loopback interface on which the {@link LiveMetrics} are served
+ *                    via HTTP or {@link #METRICS_ENDPOINT_DISABLED} to start no HTTP server.
+ * @param variationDiffCacheSize The number of parsed variation diffs of each repository which are
+ *                               kept in a {@link VariationDiffCache} to be reused for patches
+ *                               changing the same file contents, for example, cherry-picks and
+ *                               reverts. Use {@link #VARIATION_DIFF_CACHE_DISABLED} to parse every
+ *                               patch.
+ * @param variationDiffCacheDirectory The directory in which the full diffs of parsed patches are
+ *                                    stored in addition to the in memory
+ *                                    {@link #variationDiffCacheSize cache} or {@code null} to keep
+ *                                    the cache in memory only. Each repository uses a subdirectory
+ *                                    named after the repository. The stored diffs are reused by
+ *                                    later runs.
+ * @param lazyPatchParsing Whether patches are parsed only when {@link Analysis#processPatch} first
+ *                         accesses their variation diff. Patches skipped by
+ *                         {@link Analysis.Hooks#beginPatch} are never parsed. Parse errors are
+ *                         reported when the failing patch is processed and don't invoke
+ *                         {@link Analysis.Hooks#onFailedParse}. Errors of skipped patches are not
+ *                         reported at all. Lazy parsing replaces parallel patch parsing (see
+ *                         {@link GitDiffer#setLazyPatchParsing}).
+ * @param variabilityPrescan Whether the changed lines of each patch are scanned for edits to
+ *                           variability before the patch is parsed (see
+ *                           {@link VariabilityPrescan}). Hooks like
+ *                           {@link VariabilityPrescanAnalysis} can skip patches without edits to
+ *                           variability. This only affects patches which are loaded without
+ *                           remembering their git diff.
+ * @param recordTimings Whether the time spent on loading and parsing commits and in each hook is
+ *                      measured, recorded in a {@link TimingResult} and logged with the progress of
+ *                      the analysis. Measuring adds a small overhead to each hook call.
+ * @see Builder
+ */
+public record ExecutionOptions(
+        int commitsToProcessPerThread,
+        int nThreads,
+        int tasksInFlightPerThread,
+        ResultOrder resultOrder,
+        BatchSizing batchSizing,
+        int loadingThreads,
+        int parsingThreads,
+        int commitsInFlightPerBatch,
+        LoadingExecutor loadingExecutor,
+        int minPatchesForParallelParsing,
+        boolean resume,
+        boolean incremental,
+        Shard shard,
+        boolean mergeShards,
+        Duration commitTimeout,
+        Duration patchTimeout,
+        double heapHighWaterMark,
+        boolean shrinkBatchesUnderMemoryPressure,
+        Path metricsFile,
+        int metricsPort,
+        int variationDiffCacheSize,
+        Path variationDiffCacheDirectory,
+        boolean lazyPatchParsing,
+        boolean variabilityPrescan,
+        boolean recordTimings
+) {
+    /**
+     * Strategies to group commits into batches.
+     */
+    public enum BatchSizing {
+        /**
+         * Each batch contains {@link #commitsToProcessPerThread} commits.
+         */
+        FIXED,
+        /**
+         * Each batch is expected to require the same processing time. The processing time of
+         * commits is predicted based on the number of changed paths and calibrated with the
+         * runtime of already processed batches. Batches shrink towards the end of the history such
+         * that all threads finish at roughly the same time. This requires counting all commits
+         * before the analysis starts.
+         *
+         * @see AdaptiveCommitBatcher
+         */
+        ADAPTIVE
+    }
+
+    /**
+     * Kinds of threads that load git objects in a {@link CommitDiffPipeline}.
+     */
+    public enum LoadingExecutor {
+        /**
+         * Git objects are loaded by a fixed number of {@link #loadingThreads} platform threads.
+         */
+        FIXED_POOL,
+        /**
+         * Each commit is loaded in its own virtual thread, so blocking pack file reads don't
+         * occupy platform threads. The number of {@link #parsingThreads} is capped at the number of
+         * available processors and defaults to it. Virtual threads require Java
+         * {@value VirtualThreads#MINIMUM_JAVA_VERSION}. On older Java versions
+         * {@link #FIXED_POOL} is used instead.
+         *
+         * @see VirtualThreads
+         */
+        VIRTUAL_THREADS
+    }
+
+    /**
+     * Default value for {@link #tasksInFlightPerThread}.
+     */
+    public static final int TASKS_IN_FLIGHT_PER_THREAD_DEFAULT = 4;
+
+    /**
+     * Default value for {@link #commitsInFlightPerBatch}.
+     */
+    public static final int COMMITS_IN_FLIGHT_PER_BATCH_DEFAULT = 4;
+
+    /**
+     * Value for {@link #minPatchesForParallelParsing} to parse the patches of each commit
+     * sequentially.
+     */
+    public static final int PARALLEL_PATCH_PARSING_DISABLED = 0;
+    /**
+     * Value for {@link #commitTimeout} and {@link #patchTimeout} to impose no time budget.
+     */
+    public static final Duration NO_TIMEOUT = Duration.ZERO;
+
+    /**
+     * Value for {@link #heapHighWaterMark} to start commit batches regardless of the heap usage.
+     */
+    public static final double HEAP_THROTTLING_DISABLED = 0;
+
+    /**
+     * Value for {@link #metricsPort} to serve no metrics via HTTP.
+     */
+    public static final int METRICS_ENDPOINT_DISABLED = 0;
+
+    /**
+     * Value for {@link #variationDiffCacheSize} to cache no variation diffs.
+     */
+    public static final int VARIATION_DIFF_CACHE_DISABLED = 0;
+
+    /**
+     * Default value for ExecutionOptions that processes batches of
+     * {@link Analysis#COMMITS_TO_PROCESS_PER_THREAD_DEFAULT} commits on a machine dependent number of
+     * {@link Diagnostics#getNumberOfAvailableProcessors threads} and merges their results
+     * deterministically.
+     */
+    public static final ExecutionOptions Default = new Builder().build();
+
+    /**
+     * Returns the maximum number of commit batches that are scheduled at the same time.
+     * @see ScheduledTasksIterator#ScheduledTasksIterator(java.util.Iterator, int, int)
+     */
+    public int maxScheduledTasks() {
+        if (tasksInFlightPerThread == ScheduledTasksIterator.UNBOUNDED) {
+            return ScheduledTasksIterator.UNBOUNDED;
+        }
+        return tasksInFlightPerThread * nThreads;
+    }
+
+    /**
+     * Returns whether commits are loaded and parsed by a {@link CommitDiffPipeline}.
+     *
+     * <p>When using a pipeline, commits are loaded and parsed even if they are skipped by
+     * {@link Analysis.Hooks#beginCommit} and the time measured in the commit phase only
+     * covers the execution of hooks.
+     */
+    public boolean isPipelined() {
+        return loadingThreads > 0 || parsingThreads > 0 || loadingExecutor == LoadingExecutor.VIRTUAL_THREADS;
+    }
+
+    /**
+     * Returns whether the patches of large commits are parsed in parallel.
+     * @see #minPatchesForParallelParsing
+     */
+    public boolean isParallelPatchParsingEnabled() {
+        return minPatchesForParallelParsing != PARALLEL_PATCH_PARSING_DISABLED;
+    }
+
+    /**
+     * Returns whether the start of commit batches depends on the heap usage.
+     * @see #heapHighWaterMark
+     */
+    public boolean isHeapThrottlingEnabled() {
+        return heapHighWaterMark != HEAP_THROTTLING_DISABLED;
+    }
+
+    /**
+     * Returns whether {@link LiveMetrics} are published.
+     * @see #metricsFile
+     * @see #metricsPort
+     */
+    public boolean isLiveMetricsEnabled() {
+        return metricsFile != null || metricsPort != METRICS_ENDPOINT_DISABLED;
+    }
+
+    /**
+     * Builder for {@link ExecutionOptions}.
+     */
+    public static class Builder {
+        private int commitsToProcessPerThread;
+        private int nThreads;
+        private int tasksInFlightPerThread;
+        private ResultOrder resultOrder;
+        private BatchSizing batchSizing;
+        private int loadingThreads;
+        private int parsingThreads;
+        private int commitsInFlightPerBatch;
+        private LoadingExecutor loadingExecutor;
+        private int minPatchesForParallelParsing;
+        private boolean resume;
+        private boolean incremental;
+        private Shard shard;
+        private boolean mergeShards;
+        private Duration commitTimeout;
+        private Duration patchTimeout;
+        private double heapHighWaterMark;
+        private boolean shrinkBatchesUnderMemoryPressure;
+        private Path metricsFile;
+        private int metricsPort;
+        private int variationDiffCacheSize;
+        private Path variationDiffCacheDirectory;
+        private boolean lazyPatchParsing;
+        private boolean variabilityPrescan;
+        private boolean recordTimings;
+
+        /**
+         * Creates a new builder with the default options for {@link ExecutionOptions}.
+         */
+        public Builder() {
+            commitsToProcessPerThread = Analysis.COMMITS_TO_PROCESS_PER_THREAD_DEFAULT;
+            nThreads = Diagnostics.INSTANCE.run().getNumberOfAvailableProcessors();
+            tasksInFlightPerThread = TASKS_IN_FLIGHT_PER_THREAD_DEFAULT;
+            resultOrder = ResultOrder.SUBMISSION;
+            batchSizing = BatchSizing.FIXED;
+            loadingThreads = 0;
+            parsingThreads = 0;
+            commitsInFlightPerBatch = COMMITS_IN_FLIGHT_PER_BATCH_DEFAULT;
+            loadingExecutor = LoadingExecutor.FIXED_POOL;
+            minPatchesForParallelParsing = PARALLEL_PATCH_PARSING_DISABLED;
+            resume = false;
+            incremental = false;
+            shard = Shard.ALL;
+            mergeShards = false;
+            commitTimeout = NO_TIMEOUT;
+            patchTimeout = NO_TIMEOUT;
+            heapHighWaterMark = HEAP_THROTTLING_DISABLED;
+            shrinkBatchesUnderMemoryPressure = false;
+            metricsFile = null;
+            metricsPort = METRICS_ENDPOINT_DISABLED;
+            variationDiffCacheSize = VARIATION_DIFF_CACHE_DISABLED;
+            variationDiffCacheDirectory = null;
+            lazyPatchParsing = false;
+            variabilityPrescan = false;
+            recordTimings = false;
+        }
+
+        /**
+         * Creates a new builder that is initialized to the values of the given options.
+         *
+         * @param other The options whose values to copy.
+         */
+        public Builder(final ExecutionOptions other) {
+            commitsToProcessPerThread = other.commitsToProcessPerThread;
+            nThreads = other.nThreads;
+            tasksInFlightPerThread = other.tasksInFlightPerThread;
+            resultOrder = other.resultOrder;
+            batchSizing = other.batchSizing;
+            loadingThreads = other.loadingThreads;
+            parsingThreads = other.parsingThreads;
+            commitsInFlightPerBatch = other.commitsInFlightPerBatch;
+            loadingExecutor = other.loadingExecutor;
+            minPatchesForParallelParsing = other.minPatchesForParallelParsing;
+            resume = other.resume;
+            incremental = other.incremental;
+            shard = other.shard;
+            mergeShards = other.mergeShards;
+            commitTimeout = other.commitTimeout;
+            patchTimeout = other.patchTimeout;
+            heapHighWaterMark = other.heapHighWaterMark;
+            shrinkBatchesUnderMemoryPressure = other.shrinkBatchesUnderMemoryPressure;
+            metricsFile = other.metricsFile;
+            metricsPort = other.metricsPort;
+            variationDiffCacheSize = other.variationDiffCacheSize;
+            variationDiffCacheDirectory = other.variationDiffCacheDirectory;
+            lazyPatchParsing = other.lazyPatchParsing;
+            variabilityPrescan = other.variabilityPrescan;
+            recordTimings = other.recordTimings;
+        }
+
+        /**
+         * Complete the creation of {@link ExecutionOptions}.
+         *
+         * @return {@link ExecutionOptions} with this builder's configured settings.
+         */
+        public ExecutionOptions build() {
+            return new ExecutionOptions(
+                    commitsToProcessPerThread,
+                    nThreads,
+                    tasksInFlightPerThread,
+                    resultOrder,
+                    batchSizing,
+                    loadingThreads,
+                    parsingThreads,
+                    commitsInFlightPerBatch,
+                    loadingExecutor,
+                    minPatchesForParallelParsing,
+                    resume,
+                    incremental,
+                    shard,
+                    mergeShards,
+                    commitTimeout,
+                    patchTimeout,
+                    heapHighWaterMark,
+                    shrinkBatchesUnderMemoryPressure,
+                    metricsFile,
+                    metricsPort,
+                    variationDiffCacheSize,
+                    variationDiffCacheDirectory,
+                    lazyPatchParsing,
+                    variabilityPrescan,
+                    recordTimings
+            );
+        }
+
+        /**
+         * @see ExecutionOptions#commitsToProcessPerThread
+         */
+        public Builder setCommitsToProcessPerThread(int commitsToProcessPerThread) {
+            this.commitsToProcessPerThread = commitsToProcessPerThread;
+            return this;
+        }
+
+        /**
+         * @see ExecutionOptions#nThreads
+         */
+        public Builder setNThreads(int nThreads) {
+            this.nThreads = nThreads;
+            return this;
+        }
+
+        /**
+         * @see ExecutionOptions#tasksInFlightPerThread
+         */
+        public Builder setTasksInFlightPerThread(int tasksInFlightPerThread) {
+            this.tasksInFlightPerThread = tasksInFlightPerThread;
+            return this;
+        }
+
+        /**
+         * @see ExecutionOptions#resultOrder
+         */
+        public Builder setResultOrder(ResultOrder resultOrder) {
+            this.resultOrder = resultOrder;
+            return this;
+        }
+
+        /**
+         * @see ExecutionOptions#batchSizing
+         */
+        public Builder setBatchSizing(BatchSizing batchSizing) {
+            this.batchSizing = batchSizing;
+            return this;
+        }
+
+        /**
+         * @see ExecutionOptions#loadingThreads
+         */
+        public Builder setLoadingThreads(int loadingThreads) {
+            this.loadingThreads = loadingThreads;
+            return this;
+        }
+
+        /**
+         * @see ExecutionOptions#parsingThreads
+         */
+        public Builder setParsingThreads(int parsingThreads) {
+            this.parsingThreads = parsingThreads;
+            return this;
+        }
+
+        /**
+         * @see ExecutionOptions#commitsInFlightPerBatch
+         */
+        public Builder setCommitsInFlightPerBatch(int commitsInFlightPerBatch) {
+            this.commitsInFlightPerBatch = commitsInFlightPerBatch;
+            return this;
+        }
+
+        /**
+         * @see ExecutionOptions#loadingExecutor
+         */
+        public Builder setLoadingExecutor(LoadingExecutor loadingExecutor) {
+            this.loadingExecutor = loadingExecutor;
+            return this;
+        }
+
+        /**
+         * @see ExecutionOptions#minPatchesForParallelParsing
+         */
+        public Builder setMinPatchesForParallelParsing(int minPatchesForParallelParsing) {
+            this.minPatchesForParallelParsing = minPatchesForParallelParsing;
+            return this;
+        }
+
+        /**
+         * @see ExecutionOptions#resume
+         */
+        public Builder setResume(boolean resume) {
+            this.resume = resume;
+            return this;
+        }
+
+        /**
+         * @see ExecutionOptions#incremental
+         */
+        public Builder setIncremental(boolean incremental) {
+            this.incremental = incremental;
+            return this;
+        }
+
+        /**
+         * @see ExecutionOptions#shard
+         */
+        public Builder setShard(Shard shard) {
+            this.shard = shard;
+            return this;
+        }
+
+        /**
+         * @see ExecutionOptions#mergeShards
+         */
+        public Builder setMergeShards(boolean mergeShards) {
+            this.mergeShards = mergeShards;
+            return this;
+        }
+
+        /**
+         * @see ExecutionOptions#commitTimeout
+         */
+        public Builder setCommitTimeout(Duration commitTimeout) {
+            this.commitTimeout = commitTimeout;
+            return this;
+        }
+
+        /**
+         * @see ExecutionOptions#patchTimeout
+         */
+        public Builder setPatchTimeout(Duration patchTimeout) {
+            this.patchTimeout = patchTimeout;
+            return this;
+        }
+
+        /**
+         * @see ExecutionOptions#heapHighWaterMark
+         */
+        public Builder setHeapHighWaterMark(double heapHighWaterMark) {
+            this.heapHighWaterMark = heapHighWaterMark;
+            return this;
+        }
+
+        /**
+         * @see ExecutionOptions#shrinkBatchesUnderMemoryPressure
+         */
+        public Builder setShrinkBatchesUnderMemoryPressure(boolean shrinkBatchesUnderMemoryPressure) {
+            this.shrinkBatchesUnderMemoryPressure = shrinkBatchesUnderMemoryPressure;
+            return this;
+        }
+
+        /**
+         * @see ExecutionOptions#metricsFile
+         */
+        public Builder setMetricsFile(Path metricsFile) {
+            this.metricsFile = metricsFile;
+            return this;
+        }
+
+        /**
+         * @see ExecutionOptions#metricsPort
+         */
+        public Builder setMetricsPort(int metricsPort) {
+            this.metricsPort = metricsPort;
+            return this;
+        }
+
+        /**
+         * @see ExecutionOptions#variationDiffCacheSize
+         */
+        public Builder setVariationDiffCacheSize(int variationDiffCacheSize) {
+            this.variationDiffCacheSize = variationDiffCacheSize;
+            return this;
+        }
+
+        /**
+         * @see ExecutionOptions#variationDiffCacheDirectory
+         */
+        public Builder setVariationDiffCacheDirectory(Path variationDiffCacheDirectory) {
+            this.variationDiffCacheDirectory = variationDiffCacheDirectory;
+            return this;
+        }
+
+        /**
+         * @see ExecutionOptions#lazyPatchParsing
+         */
+        public Builder setLazyPatchParsing(boolean lazyPatchParsing) {
+            this.lazyPatchParsing = lazyPatchParsing;
+            return this;
+        }
+
+        /**
+         * @see ExecutionOptions#variabilityPrescan
+         */
+        public Builder setVariabilityPrescan(boolean variabilityPrescan) {
+            this.variabilityPrescan = variabilityPrescan;
+            return this;
+        }
+
+        /**
+         * @see ExecutionOptions#recordTimings
+         */
+        public Builder setRecordTimings(boolean recordTimings) {
+            this.recordTimings = recordTimings;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.variantsync.diffdetective.analysis;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.variantsync.functjonal.iteration.Yield;
+
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * A deterministic part of the commit history of a repository.
+ * The commit history is partitioned into {@code count} shards by the hash of each commit. Hence,
+ * the shard of a commit doesn't depend on the order or the number of other commits and all
+ * processes analyzing the same repository agree on the partitioning without any communication.
+ *
+ * <p>The results of each shard are stored in a {@link #getOutputDirectory separate directory}
+ * such that shards can be analyzed by independent processes (possibly on different machines
+ * sharing a file system) and {@link Analysis#mergeShards merged} afterwards.
+ *
+ * @param index the index of this shard in the range {@code [0, count)}
+ * @param count the total number of shards
+ * @see ExecutionOptions#shard
+ */
+public record Shard(int index, int count) {
+    /**
+     * The shard containing the whole commit history.
+     */
+    public static final Shard ALL = new Shard(0, 1);
+
+    public Shard {
+        if (count < 1 || index < 0 || index >= count) {
+            throw new IllegalArgumentException("Invalid shard " + index + "/" + count + ". Expected 0 <= index < count.");
+        }
+    }
+
+    /**
+     * Parses a shard of the form {@code index/count}, e.g. {@code 0/4} for the first of four shards.
+     *
+     * @throws IllegalArgumentException if {@code shard} is malformed
+     */
+    public static Shard parse(final String shard) {
+        final String[] indexAndCount = shard.split("/");
+        if (indexAndCount.length != 2) {
+            throw new IllegalArgumentException("Expected a shard of the form index/count but got " + shard);
+        }
+
+        try {
+            return new Shard(Integer.parseInt(indexAndCount[0].trim()), Integer.parseInt(indexAndCount[1].trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected a shard of the form index/count but got " + shard, e);
+        }
+    }
+
+    /**
+     * Returns whether this shard contains the whole commit history.
+     */
+    public boolean isAll() {
+        return count == 1;
+    }
+
+    /**
+     * Returns whether the commit with the given id belongs to this shard.
+     * The shard is determined by the first 64 bits of the commit hash.
+     */
+    public boolean contains(final AnyObjectId commit) {
+        final long hashPrefix = Long.parseUnsignedLong(commit.getName().substring(0, 16), 16);
+        return Long.remainderUnsigned(hashPrefix, count) == index;
+    }
+
+    /**
+     * Returns all elements of {@code commits} which belong to this shard.
+     */
+    public <T extends AnyObjectId> Iterator<T> filter(final Iterator<T> commits) {
+        if (isAll()) {
+            return commits;
+        }
+
+        return new Yield<>(
+                () -> {
+                    while (commits.hasNext()) {
+                        final T commit = commits.next();
+                        if (contains(commit)) {
+                            return commit;
+                        }
+                    }
+                    return null;
+                }
+        );
+    }
+
+    /**
+     * Returns the name of the directory containing the results of this shard.
+     */
+    public String getDirectoryName() {
+        return "shard-" + index + "-of-" + count;
+    }
+
+    /**
+     * Returns the directory where the results of this shard are stored given the output directory
+     * of the whole repository. The whole commit history is stored directly in
+     * {@code repositoryOutputDir}.
+     */
+    public Path getOutputDirectory(final Path repositoryOutputDir) {
+        return isAll() ? repositoryOutputDir : repositoryOutputDir.resolve(getDirectoryName());
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+}
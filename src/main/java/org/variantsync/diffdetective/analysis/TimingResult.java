@@ -0,0 +1,98 @@
+package org.variantsync.diffdetective.analysis;
+
+import org.variantsync.diffdetective.analysis.AnalysisResult.ResultKey;
+import org.variantsync.diffdetective.metadata.Metadata;
+import org.variantsync.functjonal.category.InplaceSemigroup;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Metadata that accumulates the time spent in the phases of an {@link Analysis} and in each of its
+ * {@link Analysis.Hooks}. Times are summed over all threads, so they may exceed the wall clock time
+ * of a multithreaded analysis. Times are only recorded if {@link ExecutionOptions#recordTimings} is
+ * enabled.
+ *
+ * @see Analysis.Phase
+ */
+public class TimingResult implements Metadata<TimingResult> {
+    public static final ResultKey<TimingResult> KEY = new ResultKey<>("TimingResult");
+
+    /**
+     * Prefix for exported times.
+     */
+    public static final String TIME_BEGIN = "runtime of ";
+    /**
+     * Suffix for exported times.
+     */
+    public static final String TIME_END = " in seconds";
+
+    private static final double NANOSECONDS_PER_SECOND = 1e9;
+
+    /**
+     * Inplace Semigroup that sums the times of equally named phases.
+     */
+    public static final InplaceSemigroup<TimingResult> ISEMIGROUP =
+            (a, b) -> b.nanoseconds.forEach(a::add);
+
+    private final LinkedHashMap<String, Long> nanoseconds = new LinkedHashMap<>();
+
+    /**
+     * Adds {@code nanoseconds} to the time spent in the phase {@code name}.
+     */
+    public void add(final String name, final long nanoseconds) {
+        this.nanoseconds.merge(name, nanoseconds, Long::sum);
+    }
+
+    /**
+     * Returns the time in seconds spent in the phase {@code name}.
+     */
+    public double getSeconds(final String name) {
+        return nanoseconds.getOrDefault(name, 0L) / NANOSECONDS_PER_SECOND;
+    }
+
+    /**
+     * Returns the time in seconds of all phases in the order in which they were first measured.
+     */
+    public LinkedHashMap<String, Double> getSeconds() {
+        final LinkedHashMap<String, Double> seconds = new LinkedHashMap<>();
+        nanoseconds.forEach((name, time) -> seconds.put(name, time / NANOSECONDS_PER_SECOND));
+        return seconds;
+    }
+
+    @Override
+    public LinkedHashMap<String, Double> snapshot() {
+        final LinkedHashMap<String, Double> snap = new LinkedHashMap<>();
+        nanoseconds.forEach((name, time) -> snap.put(TIME_BEGIN + name + TIME_END, time / NANOSECONDS_PER_SECOND));
+        return snap;
+    }
+
+    @Override
+    public void setFromSnapshot(LinkedHashMap<String, String> snap) {
+        for (var entry : snap.entrySet()) {
+            final String key = entry.getKey();
+            if (key.startsWith(TIME_BEGIN) && key.endsWith(TIME_END)) {
+                final String name = key.substring(TIME_BEGIN.length(), key.length() - TIME_END.length());
+                nanoseconds.put(name, Math.round(Double.parseDouble(entry.getValue()) * NANOSECONDS_PER_SECOND));
+            }
+        }
+    }
+
+    @Override
+    public InplaceSemigroup<TimingResult> semigroup() {
+        return ISEMIGROUP;
+    }
+
+    /**
+     * Lists all phases, the slowest first, with their time in seconds.
+     */
+    @Override
+    public String toString() {
+        return nanoseconds.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+                .map(entry -> String.format("%s: %.2fs", entry.getKey(), entry.getValue() / NANOSECONDS_PER_SECOND))
+                .collect(Collectors.joining(", "));
+    }
+}
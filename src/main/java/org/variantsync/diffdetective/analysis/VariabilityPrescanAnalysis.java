@@ -0,0 +1,112 @@
+package org.variantsync.diffdetective.analysis;
+
+import org.variantsync.diffdetective.diff.git.PatchDiff;
+import org.variantsync.diffdetective.diff.git.VariabilityPrescan;
+import org.variantsync.diffdetective.metadata.ExplainedFilterSummary;
+import org.variantsync.diffdetective.variation.DiffLinesLabel;
+import org.variantsync.diffdetective.variation.diff.filter.ExplainedFilter;
+import org.variantsync.diffdetective.variation.diff.filter.TaggedPredicate;
+import org.variantsync.diffdetective.variation.diff.filter.VariationDiffFilter;
+import org.variantsync.diffdetective.variation.diff.parse.VariationDiffParseOptions;
+
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/**
+ * Skips patches which can't edit variability according to a {@link VariabilityPrescan} before
+ * they are analyzed. This hook is intended to precede a {@link FilterAnalysis} ending with
+ * {@link VariationDiffFilter#hasAtLeastOneEditToVariability()}, which would reject these patches
+ * anyway, so the accepted patches are the same.
+ *
+ * <p>To keep the {@link ExplainedFilterSummary} of the {@link FilterAnalysis} unchanged, each
+ * skipped patch is counted under the first reason for which the {@link FilterAnalysis} would have
+ * rejected it. Hence, the filters preceding {@link VariationDiffFilter#hasAtLeastOneEditToVariability()}
+ * have to be passed to this hook as predicates on the unparsed patch, like {@link #notEmpty()} and
+ * {@link #moreThanOneArtifactNode()}. Patches whose parsing would fail are counted too, because
+ * they are never parsed.
+ *
+ * <p>Patches are only scanned if {@link ExecutionOptions#variabilityPrescan} is enabled. If
+ * {@link ExecutionOptions#lazyPatchParsing} is enabled too, skipped patches are not even parsed.
+ */
+public class VariabilityPrescanAnalysis implements Analysis.Hooks {
+    private final boolean countsArtifacts;
+    private final ExplainedFilter<PatchDiff> skippedPatchFilter;
+
+    /**
+     * Creates a prescan for a {@link FilterAnalysis} whose filters all accept patches without
+     * edits to variability, except for {@link VariationDiffFilter#hasAtLeastOneEditToVariability()}.
+     *
+     * @param precedingFilters the filters preceding
+     * {@link VariationDiffFilter#hasAtLeastOneEditToVariability()} in the {@link FilterAnalysis},
+     * evaluated on skipped patches in the given order. Only {@link #notEmpty()} and
+     * {@link #moreThanOneArtifactNode()} are supported.
+     */
+    @SafeVarargs
+    public VariabilityPrescanAnalysis(final TaggedPredicate<String, PatchDiff>... precedingFilters) {
+        this.countsArtifacts = precedingFilters.length > 0;
+        this.skippedPatchFilter = new ExplainedFilter<>(Stream.concat(
+                Arrays.stream(precedingFilters),
+                Stream.of(new TaggedPredicate<>(
+                        VariationDiffFilter.<DiffLinesLabel>hasAtLeastOneEditToVariability().tag(),
+                        patch -> false
+                ))
+        ));
+    }
+
+    /**
+     * Returns {@link VariationDiffFilter#notEmpty()} for patches without edits to variability
+     * whose variation diff is preprocessed by
+     * {@link org.variantsync.diffdetective.variation.diff.transform.CutNonEditedSubtrees}.
+     */
+    public static TaggedPredicate<String, PatchDiff> notEmpty() {
+        return new TaggedPredicate<>(
+                VariationDiffFilter.<DiffLinesLabel>notEmpty().tag(),
+                patch -> patch.getNumberOfChangedLines() > 0
+        );
+    }
+
+    /**
+     * Returns {@link VariationDiffFilter#moreThanOneArtifactNode()} for patches without edits to
+     * variability whose variation diff is preprocessed by
+     * {@link org.variantsync.diffdetective.variation.diff.transform.CutNonEditedSubtrees}.
+     */
+    public static TaggedPredicate<String, PatchDiff> moreThanOneArtifactNode() {
+        return new TaggedPredicate<>(
+                VariationDiffFilter.<DiffLinesLabel>moreThanOneArtifactNode().tag(),
+                patch -> patch.getNumberOfChangedLines() > 1
+        );
+    }
+
+    @Override
+    public void initializeResults(Analysis analysis) {
+        analysis.append(ExplainedFilterSummary.KEY, new ExplainedFilterSummary());
+    }
+
+    @Override
+    public boolean beginPatch(Analysis analysis) {
+        final PatchDiff patch = analysis.getCurrentPatch();
+        if (patch.mayEditVariability()) {
+            return true;
+        }
+
+        // The preceding filters count each changed line as one artifact, which only holds if
+        // lines are neither collapsed nor ignored.
+        if (countsArtifacts) {
+            final VariationDiffParseOptions parseOptions = analysis.getRepository().getParseOptions().variationDiffParseOptions();
+            if (parseOptions.collapseMultipleCodeLines()
+                    || parseOptions.ignoreEmptyLines()
+                    || patch.getNumberOfChangedLines() < 0) {
+                return true;
+            }
+        }
+
+        skippedPatchFilter.test(patch);
+        return false;
+    }
+
+    @Override
+    public void endCommit(Analysis analysis) {
+        analysis.append(ExplainedFilterSummary.KEY, new ExplainedFilterSummary(skippedPatchFilter));
+        skippedPatchFilter.resetExplanations();
+    }
+}
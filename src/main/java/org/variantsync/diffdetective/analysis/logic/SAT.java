@@ -3,6 +3,8 @@ package org.variantsync.diffdetective.analysis.logic;
 import org.prop4j.*;
 import org.prop4j.explain.solvers.SatSolver;
 import org.prop4j.explain.solvers.SatSolverFactory;
+import org.variantsync.diffdetective.analysis.monitoring.SatQueryEvent;
+import org.variantsync.diffdetective.util.Deadline;
 import org.variantsync.diffdetective.util.fide.FixTrueFalse;
 import org.variantsync.diffdetective.util.fide.FormulaUtils;
 
@@ -78,17 +80,29 @@ public final class SAT {
             return false;
         }
 
-        final int numLiterals = FormulaUtils.numberOfLiterals(formula.get());
+        // SAT solving can't be interrupted, so check the time budget of the current analysis before.
+        Deadline.check();
 
-        if (numLiterals < 15) {
-            return checkSATviaDNF(formula);
-        }
+        final SatQueryEvent event = new SatQueryEvent();
+        event.begin();
 
-        if (numLiterals > 40) {
-            formula = formula.mapUnsafe(Tseytin::toEquivalentCNF);
+        final int numLiterals = FormulaUtils.numberOfLiterals(formula.get());
+        final boolean satisfiable;
+        if (numLiterals < 15) {
+            event.strategy = "DNF";
+            satisfiable = checkSATviaDNF(formula);
+        } else if (numLiterals > 40) {
+            event.strategy = "Tseytin and Sat4J";
+            satisfiable = checkSATviaSat4J(formula.mapUnsafe(Tseytin::toEquivalentCNF));
+        } else {
+            event.strategy = "Sat4J";
+            satisfiable = checkSATviaSat4J(formula);
         }
 
-        return checkSATviaSat4J(formula);
+        event.literals = numLiterals;
+        event.satisfiable = satisfiable;
+        event.commit();
+        return satisfiable;
     }
 
     /**
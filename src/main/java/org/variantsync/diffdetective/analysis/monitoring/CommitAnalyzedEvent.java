@@ -0,0 +1,30 @@
+package org.variantsync.diffdetective.analysis.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event emitted by {@link org.variantsync.diffdetective.analysis.Analysis}
+ * for each commit whose analysis started. The duration of the event covers the creation of the
+ * commit diff (unless it was created ahead of time by a pipeline) and all hooks of the commit.
+ */
+@Name(CommitAnalyzedEvent.NAME)
+@Label("Commit Analyzed")
+@Category({"DiffDetective", "Analysis"})
+@Description("The analysis of a single commit")
+public class CommitAnalyzedEvent extends Event {
+    public static final String NAME = "org.variantsync.diffdetective.CommitAnalyzed";
+
+    @Label("Repository")
+    public String repository;
+
+    @Label("Commit Hash")
+    public String commitHash;
+
+    @Label("Patch Count")
+    @Description("The number of parsed patches or zero if the commit was skipped or couldn't be parsed")
+    public int patchCount;
+}
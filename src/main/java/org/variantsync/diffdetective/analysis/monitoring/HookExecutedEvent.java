@@ -0,0 +1,27 @@
+package org.variantsync.diffdetective.analysis.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event emitted by {@link org.variantsync.diffdetective.analysis.Analysis}
+ * for each call of one of its {@link org.variantsync.diffdetective.analysis.Analysis.Hooks}.
+ */
+@Name(HookExecutedEvent.NAME)
+@Label("Hook Executed")
+@Category({"DiffDetective", "Analysis"})
+@Description("The execution of a single analysis hook")
+public class HookExecutedEvent extends Event {
+    public static final String NAME = "org.variantsync.diffdetective.HookExecuted";
+
+    @Label("Hook")
+    @Description("The class of the hook")
+    public Class<?> hook;
+
+    @Label("Phase")
+    @Description("The analysis phase in which the hook was called")
+    public String phase;
+}
@@ -0,0 +1,269 @@
+package org.variantsync.diffdetective.analysis.monitoring;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.tinylog.Logger;
+import org.variantsync.diffdetective.analysis.Analysis;
+import org.variantsync.diffdetective.analysis.AnalysisResult;
+import org.variantsync.diffdetective.analysis.StatisticsAnalysis;
+import org.variantsync.diffdetective.parallel.MemoryGovernor;
+import org.variantsync.diffdetective.util.StringUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Publishes the progress of running analyses in machine-readable formats such that long runs can
+ * be monitored by dashboards without parsing log files.
+ *
+ * <p>The metrics of each repository are {@link #update updated} whenever a commit batch of the
+ * repository finished (see {@link TaskCompletionMonitor#PublishMetrics}). They are published
+ * <ul>
+ * <li>to a file which is rewritten atomically after each update. If the file name ends with
+ * {@code .json}, the metrics are written as JSON, otherwise in the Prometheus text format.
+ * <li>by an HTTP server listening on the loopback interface. The Prometheus text format is served
+ * at {@code /metrics} and JSON at {@code /metrics.json}.
+ * </ul>
+ *
+ * <p>This class is thread safe.
+ */
+public class LiveMetrics implements AutoCloseable {
+    /**
+     * Path of the HTTP endpoint serving the Prometheus text format.
+     */
+    public static final String PROMETHEUS_PATH = "/metrics";
+    /**
+     * Path of the HTTP endpoint serving JSON.
+     */
+    public static final String JSON_PATH = "/metrics.json";
+
+    /**
+     * The progress of the analysis of one repository.
+     *
+     * @param repository the name of the analyzed repository
+     * @param commits the number of commits analyzed so far
+     * @param patches the number of patches analyzed so far
+     * @param commitsPerSecond the average number of commits analyzed per second
+     * @param patchesPerSecond the average number of patches analyzed per second
+     * @param parseErrorRate the fraction of patches which couldn't be parsed
+     * @param queueDepth the number of scheduled commit batches which are not finished yet
+     * @param heapUsage the fraction of the maximal heap size which is currently used
+     * @param etaSeconds the expected time in seconds until all commits are analyzed or
+     * {@link Double#NaN} if unknown
+     */
+    public record Snapshot(
+            String repository,
+            int commits,
+            int patches,
+            double commitsPerSecond,
+            double patchesPerSecond,
+            double parseErrorRate,
+            int queueDepth,
+            double heapUsage,
+            double etaSeconds
+    ) {
+        /**
+         * Computes the metrics of a repository from the merged results of all of its finished
+         * commit batches. Commits and patches are counted by {@link StatisticsAnalysis}, so most
+         * metrics are zero if the analysis doesn't include it.
+         *
+         * @param repository the name of the analyzed repository
+         * @param result the merged results of all finished commit batches
+         * @param passedSeconds the time since the analysis of the repository started
+         * @param queueDepth the number of scheduled commit batches which are not finished yet
+         * @param expectedCommits the total number of commits to analyze or a negative number if
+         * unknown
+         */
+        public static Snapshot of(
+                final String repository,
+                final AnalysisResult result,
+                final double passedSeconds,
+                final int queueDepth,
+                final int expectedCommits
+        ) {
+            int commits = 0;
+            int patches = 0;
+            int parsedPatches = 0;
+            final StatisticsAnalysis.Result statistics = result.get(StatisticsAnalysis.RESULT);
+            if (statistics != null) {
+                commits = statistics.processedCommits + statistics.emptyCommits + statistics.failedCommits;
+                patches = statistics.processedPatches;
+                parsedPatches = statistics.totalPatches;
+            } else {
+                final Analysis.TotalNumberOfCommitsResult totalCommits = result.get(Analysis.TotalNumberOfCommitsResult.KEY);
+                if (totalCommits != null) {
+                    commits = totalCommits.value;
+                }
+            }
+
+            final int parseErrors = result.diffErrors.values().stream().mapToInt(Integer::intValue).sum();
+            final double commitsPerSecond = passedSeconds > 0 ? commits / passedSeconds : 0;
+            final double etaSeconds = expectedCommits >= 0 && commitsPerSecond > 0
+                    ? Math.max(expectedCommits - commits, 0) / commitsPerSecond
+                    : Double.NaN;
+
+            return new Snapshot(
+                    repository,
+                    commits,
+                    patches,
+                    commitsPerSecond,
+                    passedSeconds > 0 ? patches / passedSeconds : 0,
+                    parseErrors + parsedPatches > 0 ? (double) parseErrors / (parseErrors + parsedPatches) : 0,
+                    queueDepth,
+                    MemoryGovernor.getHeapUsage(),
+                    etaSeconds
+            );
+        }
+    }
+
+    private record Metric(String name, String help, ToDoubleFunction<Snapshot> value) {}
+
+    private static final List<Metric> METRICS = List.of(
+            new Metric("commits", "Number of analyzed commits", Snapshot::commits),
+            new Metric("patches", "Number of analyzed patches", Snapshot::patches),
+            new Metric("commits_per_second", "Average number of analyzed commits per second", Snapshot::commitsPerSecond),
+            new Metric("patches_per_second", "Average number of analyzed patches per second", Snapshot::patchesPerSecond),
+            new Metric("parse_error_rate", "Fraction of patches which could not be parsed", Snapshot::parseErrorRate),
+            new Metric("queue_depth", "Number of scheduled but unfinished commit batches", Snapshot::queueDepth),
+            new Metric("heap_usage", "Fraction of the maximal heap size which is used", Snapshot::heapUsage),
+            new Metric("eta_seconds", "Expected time until all commits are analyzed", Snapshot::etaSeconds)
+    );
+    private static final String PROMETHEUS_PREFIX = "diffdetective_";
+
+    private final Path file;
+    private final HttpServer server;
+    private final LinkedHashMap<String, Snapshot> snapshots = new LinkedHashMap<>();
+
+    /**
+     * Creates a publisher of live metrics.
+     *
+     * @param file the file to which the metrics are written or {@code null} to write no file
+     * @param port the local port on which metrics are served or {@code 0} to start no server
+     * @throws IOException if the HTTP server can't be started
+     */
+    public LiveMetrics(final Path file, final int port) throws IOException {
+        this.file = file;
+
+        if (port == 0) {
+            this.server = null;
+        } else {
+            this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            server.createContext(PROMETHEUS_PATH, exchange -> respond(exchange, "text/plain; version=0.0.4", toPrometheus()));
+            server.createContext(JSON_PATH, exchange -> respond(exchange, "application/json", toJSON()));
+            server.start();
+            Logger.info("Serving live metrics at http://{}:{}{}", server.getAddress().getHostString(), server.getAddress().getPort(), PROMETHEUS_PATH);
+        }
+    }
+
+    /**
+     * Returns the port of the HTTP server or {@code 0} if no server is running.
+     */
+    public int getPort() {
+        return server == null ? 0 : server.getAddress().getPort();
+    }
+
+    /**
+     * Replaces the metrics of {@link Snapshot#repository} and publishes all metrics to the file.
+     */
+    public void update(final Snapshot snapshot) {
+        final String content;
+        synchronized (this) {
+            snapshots.put(snapshot.repository(), snapshot);
+            if (file == null) {
+                return;
+            }
+            content = file.getFileName().toString().endsWith(".json") ? toJSON() : toPrometheus();
+        }
+
+        try {
+            final Path absoluteFile = file.toAbsolutePath();
+            Files.createDirectories(absoluteFile.getParent());
+            final Path temporaryFile = absoluteFile.resolveSibling(absoluteFile.getFileName() + ".tmp");
+            Files.writeString(temporaryFile, content);
+            Files.move(temporaryFile, absoluteFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Logger.warn(e, "Could not write the live metrics to {}", file);
+        }
+    }
+
+    /**
+     * Returns the current metrics of all repositories in the Prometheus text format.
+     */
+    public synchronized String toPrometheus() {
+        final StringBuilder prometheus = new StringBuilder();
+        for (final Metric metric : METRICS) {
+            final String name = PROMETHEUS_PREFIX + metric.name();
+            prometheus.append("# HELP ").append(name).append(" ").append(metric.help()).append(StringUtils.LINEBREAK);
+            prometheus.append("# TYPE ").append(name).append(" gauge").append(StringUtils.LINEBREAK);
+            for (final Snapshot snapshot : snapshots.values()) {
+                prometheus
+                        .append(name)
+                        .append("{repository=\"").append(escape(snapshot.repository())).append("\"} ")
+                        .append(format(metric.value().applyAsDouble(snapshot), "NaN"))
+                        .append(StringUtils.LINEBREAK);
+            }
+        }
+        return prometheus.toString();
+    }
+
+    /**
+     * Returns the current metrics of all repositories as a JSON object mapping the name of each
+     * repository to its metrics.
+     */
+    public synchronized String toJSON() {
+        final List<String> repositories = new ArrayList<>(snapshots.size());
+        for (final Snapshot snapshot : snapshots.values()) {
+            final List<String> values = new ArrayList<>(METRICS.size());
+            for (final Metric metric : METRICS) {
+                values.add("\"" + metric.name() + "\": " + format(metric.value().applyAsDouble(snapshot), "null"));
+            }
+            repositories.add("\"" + escape(snapshot.repository()) + "\": {" + String.join(", ", values) + "}");
+        }
+        return "{" + String.join(", ", repositories) + "}" + StringUtils.LINEBREAK;
+    }
+
+    private static String format(final double value, final String notANumber) {
+        if (Double.isNaN(value)) {
+            return notANumber;
+        }
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            return Long.toString((long) value);
+        }
+        return String.format(Locale.ROOT, "%.4f", value);
+    }
+
+    /**
+     * Escapes backslashes and quotes which is sufficient for Prometheus labels and JSON strings.
+     */
+    private static String escape(final String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static void respond(final HttpExchange exchange, final String contentType, final String body) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream response = exchange.getResponseBody()) {
+            response.write(bytes);
+        }
+    }
+
+    /** Stops the HTTP server. */
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package org.variantsync.diffdetective.analysis.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event emitted by {@link org.variantsync.diffdetective.diff.git.GitDiffer}
+ * for each patch which is successfully parsed into a
+ * {@link org.variantsync.diffdetective.variation.diff.VariationDiff}. The duration of the event
+ * covers the reconstruction of the full diff and the
+ * {@link org.variantsync.diffdetective.variation.diff.parse.VariationDiffParser parsing}.
+ */
+@Name(PatchParsedEvent.NAME)
+@Label("Patch Parsed")
+@Category({"DiffDetective", "Parsing"})
+@Description("The parsing of a single patch into a variation diff")
+public class PatchParsedEvent extends Event {
+    public static final String NAME = "org.variantsync.diffdetective.PatchParsed";
+
+    @Label("Commit Hash")
+    public String commitHash;
+
+    @Label("File")
+    public String file;
+
+    @Label("Lines")
+    @Description("The number of lines of the full diff")
+    public int lines;
+
+    @Label("Nodes")
+    @Description("The number of nodes of the parsed variation diff")
+    public int nodes;
+}
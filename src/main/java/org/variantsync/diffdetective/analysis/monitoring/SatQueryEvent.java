@@ -0,0 +1,30 @@
+package org.variantsync.diffdetective.analysis.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event emitted by
+ * {@link org.variantsync.diffdetective.analysis.logic.SAT#isSatisfiable} for each formula which is
+ * not a constant.
+ */
+@Name(SatQueryEvent.NAME)
+@Label("SAT Query")
+@Category({"DiffDetective", "Logic"})
+@Description("A satisfiability check of a formula")
+public class SatQueryEvent extends Event {
+    public static final String NAME = "org.variantsync.diffdetective.SatQuery";
+
+    @Label("Literal Count")
+    public int literals;
+
+    @Label("Strategy")
+    @Description("The procedure chosen to decide the satisfiability")
+    public String strategy;
+
+    @Label("Satisfiable")
+    public boolean satisfiable;
+}
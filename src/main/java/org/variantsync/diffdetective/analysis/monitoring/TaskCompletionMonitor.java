@@ -1,8 +1,11 @@
 package org.variantsync.diffdetective.analysis.monitoring;
 
 import org.tinylog.Logger;
+import org.variantsync.diffdetective.analysis.AnalysisResult;
 
 import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
 
 public class TaskCompletionMonitor {
     public record TimeInfo(int completedTasks, float passedSeconds, float tasksPerSecond) {}
@@ -52,4 +55,31 @@ public class TaskCompletionMonitor {
                         String.format("%.2f", time.tasksPerSecond),
                         tasksName);
     }
+
+    /**
+     * Creates a progress reporter which publishes the {@link LiveMetrics} of a repository.
+     * The completed tasks of the monitor are ignored in favour of the commits and patches counted
+     * in the results of the repository.
+     *
+     * @param metrics the publisher of the metrics
+     * @param repository the name of the monitored repository
+     * @param result the merged results of all finished commit batches of the repository
+     * @param queueDepth the number of scheduled commit batches which are not finished yet
+     * @param expectedCommits the total number of commits to analyze or a negative number if unknown
+     */
+    public static Consumer<TimeInfo> PublishMetrics(
+            final LiveMetrics metrics,
+            final String repository,
+            final Supplier<AnalysisResult> result,
+            final IntSupplier queueDepth,
+            final int expectedCommits
+    ) {
+        return time -> metrics.update(LiveMetrics.Snapshot.of(
+                repository,
+                result.get(),
+                time.passedSeconds,
+                queueDepth.getAsInt(),
+                expectedCommits
+        ));
+    }
 }
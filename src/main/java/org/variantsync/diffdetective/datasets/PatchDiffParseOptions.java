@@ -10,11 +10,14 @@ import org.variantsync.diffdetective.variation.diff.parse.VariationDiffParseOpti
  * @param variationDiffParseOptions Options for parsing a patch to a {@link
  *                                  org.variantsync.diffdetective.variation.diff.VariationDiff}. For
  *                                  more information, see {@link VariationDiffParseOptions}.
+ * @param renameDetection Decides how renamed files are detected when loading the patches of a
+ *                        commit. For more information, see {@link RenameDetection}.
  * @author Paul Bittner
  */
 public record PatchDiffParseOptions(
         DiffStoragePolicy diffStoragePolicy,
-        VariationDiffParseOptions variationDiffParseOptions
+        VariationDiffParseOptions variationDiffParseOptions,
+        RenameDetection renameDetection
 ) {
     public enum DiffStoragePolicy {
         REMEMBER_DIFF,
@@ -23,13 +26,111 @@ public record PatchDiffParseOptions(
         DO_NOT_REMEMBER,
     }
 
+    /**
+     * Configures the detection of renamed and copied files by JGit.
+     * Without rename detection, a renamed file is reported as a deleted and an added file.
+     * Detecting similar but not identical files compares all added with all deleted files, so its
+     * cost is quadratic in the number of added and deleted files. For large commits, such as
+     * imports of third party code, it is restricted to exact renames by {@link #renameLimit}.
+     *
+     * @param mode Which renames are detected.
+     * @param renameScore The minimal similarity in percent of two files to be considered a rename
+     *                    in {@link Mode#SIMILARITY}.
+     * @param renameLimit The maximal number of added or deleted files of a commit for which
+     *                    {@link Mode#SIMILARITY similar} renames are detected. Commits with more
+     *                    added or deleted files fall back to {@link Mode#EXACT exact} renames.
+     *                    Use {@link #NO_RENAME_LIMIT} to detect similar renames in all commits.
+     */
+    public record RenameDetection(Mode mode, int renameScore, int renameLimit) {
+        public enum Mode {
+            /** Renamed files are reported as deleted and added files. */
+            OFF,
+            /** Only files with identical content are detected as renamed. */
+            EXACT,
+            /** Files with a similarity of at least {@link #renameScore} are detected as renamed. */
+            SIMILARITY,
+        }
+
+        /**
+         * The way in which the renames of a single commit were detected.
+         */
+        public enum Outcome {
+            /** Rename detection is {@link Mode#OFF disabled}. */
+            DISABLED,
+            /** There were no added or no deleted files so no renames had to be detected. */
+            NOT_REQUIRED,
+            /** Only exact renames were detected as requested by {@link Mode#EXACT}. */
+            EXACT,
+            /** Similar renames were detected as requested by {@link Mode#SIMILARITY}. */
+            SIMILARITY,
+            /** Only exact renames were detected because the {@link #renameLimit} was exceeded. */
+            EXACT_ABOVE_RENAME_LIMIT,
+        }
+
+        /**
+         * Value for {@link #renameLimit} to detect similar renames regardless of the size of a
+         * commit.
+         */
+        public static final int NO_RENAME_LIMIT = 0;
+
+        /**
+         * The rename limit used by git if {@code diff.renameLimit} is not configured.
+         */
+        public static final int DEFAULT_RENAME_LIMIT = 400;
+
+        /**
+         * Reports renamed files as deleted and added files.
+         */
+        public static final RenameDetection Off = new RenameDetection(Mode.OFF, 0, NO_RENAME_LIMIT);
+
+        /**
+         * Only detects renames of files with identical content.
+         */
+        public static final RenameDetection Exact = new RenameDetection(Mode.EXACT, 100, NO_RENAME_LIMIT);
+
+        /**
+         * Detects renames of files with a similarity of at least 50% in commits with at most
+         * {@link #DEFAULT_RENAME_LIMIT} added or deleted files.
+         */
+        public static final RenameDetection Default = new RenameDetection(Mode.SIMILARITY, 50, DEFAULT_RENAME_LIMIT);
+
+        public RenameDetection {
+            if (renameScore < 0 || renameScore > 100) {
+                throw new IllegalArgumentException("The rename score must be between 0 and 100 but was " + renameScore);
+            }
+            if (renameLimit < 0) {
+                throw new IllegalArgumentException("The rename limit must not be negative but was " + renameLimit);
+            }
+        }
+
+        /**
+         * Detects renames of files with a similarity of at least {@code renameScore} percent in
+         * commits with at most {@code renameLimit} added or deleted files.
+         */
+        public static RenameDetection similarity(final int renameScore, final int renameLimit) {
+            return new RenameDetection(Mode.SIMILARITY, renameScore, renameLimit);
+        }
+    }
+
+    /**
+     * Creates PatchDiffParseOptions with the {@link RenameDetection#Default default rename
+     * detection}.
+     */
+    public PatchDiffParseOptions(
+            DiffStoragePolicy diffStoragePolicy,
+            VariationDiffParseOptions variationDiffParseOptions
+    ) {
+        this(diffStoragePolicy, variationDiffParseOptions, RenameDetection.Default);
+    }
+
     /**
      * Creates PatchDiffParseOptions with the given annotation parser.
      */
     public PatchDiffParseOptions withAnnotationParser(CPPAnnotationParser annotationParser) {
         return new PatchDiffParseOptions(
                 this.diffStoragePolicy(),
-                this.variationDiffParseOptions().withAnnotationParser(annotationParser)
+                this.variationDiffParseOptions().withAnnotationParser(annotationParser),
+                this.renameDetection()
         );
     }
 
@@ -39,7 +140,19 @@ public record PatchDiffParseOptions(
     public PatchDiffParseOptions withDiffStoragePolicy(DiffStoragePolicy diffStoragePolicy) {
         return new PatchDiffParseOptions(
                 diffStoragePolicy,
-                this.variationDiffParseOptions()
+                this.variationDiffParseOptions(),
+                this.renameDetection()
+        );
+    }
+
+    /**
+     * Creates PatchDiffParseOptions with the given detection of renamed files.
+     */
+    public PatchDiffParseOptions withRenameDetection(RenameDetection renameDetection) {
+        return new PatchDiffParseOptions(
+                this.diffStoragePolicy(),
+                this.variationDiffParseOptions(),
+                renameDetection
         );
     }
 
@@ -3,8 +3,15 @@ package org.variantsync.diffdetective.diff.git;
 import org.apache.commons.io.FilenameUtils;
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.variantsync.diffdetective.variation.diff.Time;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -67,6 +74,12 @@ public class DiffFilter {
      */
     private final boolean allowCommitsWithoutParents;
 
+    /**
+     * When set to false, commits that change no file with an allowed path and file extension are
+     * skipped while walking the history. Otherwise, such commits are reported as empty commits.
+     */
+    private final boolean allowCommitsWithoutMatchingFiles;
+
     /**
      * Builder for a DiffFilter.
      * <p>
@@ -82,6 +95,7 @@ public class DiffFilter {
         private final List<String> blockedPaths;
         private boolean allowMerge;
         private boolean allowCommitsWithoutParents;
+        private boolean allowCommitsWithoutMatchingFiles;
 
         /**
          * Create a new builder that is used to construct a DiffFilter.
@@ -94,6 +108,7 @@ public class DiffFilter {
             blockedPaths = new ArrayList<>();
             allowMerge = true;
             allowCommitsWithoutParents = true;
+            allowCommitsWithoutMatchingFiles = true;
         }
 
         /**
@@ -109,6 +124,7 @@ public class DiffFilter {
             blockedPaths = new ArrayList<>(other.blockedPaths);
             allowMerge = other.allowMerge;
             allowCommitsWithoutParents = other.allowCommitsWithoutParents;
+            allowCommitsWithoutMatchingFiles = other.allowCommitsWithoutMatchingFiles;
         }
 
         /**
@@ -194,6 +210,19 @@ public class DiffFilter {
             return this;
         }
 
+        /**
+         * Specifies whether commits which change no file passing the path and file extension
+         * filters should be considered or not. Skipping such commits avoids loading and diffing
+         * them entirely but they are no longer counted as empty commits.
+         * @param allowWithoutMatchingFiles True iff commits without matching files should be included.
+         * @return this
+         * @see DiffFilter#toRevFilter()
+         */
+        public Builder allowCommitsWithoutMatchingFiles(boolean allowWithoutMatchingFiles) {
+            this.allowCommitsWithoutMatchingFiles = allowWithoutMatchingFiles;
+            return this;
+        }
+
         /**
          * Resets the list of allowed change types to allow all change types.
          *
@@ -233,6 +262,7 @@ public class DiffFilter {
         this.blockedPaths = builder.blockedPaths;
         this.allowMerge = builder.allowMerge;
         this.allowCommitsWithoutParents = builder.allowCommitsWithoutParents;
+        this.allowCommitsWithoutMatchingFiles = builder.allowCommitsWithoutMatchingFiles;
     }
 
     /**
@@ -317,6 +347,157 @@ public class DiffFilter {
                 ;
     }
 
+    /**
+     * Compiles the path and file extension filters into a JGit {@link TreeFilter}.
+     * The tree filter includes each file whose modification passes {@link #filter(DiffEntry)},
+     * except for the change type, and only includes subtrees and changed files. Applied to a
+     * {@link org.eclipse.jgit.diff.DiffFormatter#setPathFilter diff scan}, it avoids scanning
+     * files which would be filtered anyway. Path regexes can only be checked for files so all
+     * changed subtrees are entered.
+     *
+     * @return a filter for the trees of a diff or {@link TreeFilter#ALL} if this filter has no
+     * path or file extension restrictions
+     * @see #canFilterTreesBeforeRenameDetection()
+     */
+    public TreeFilter toTreeFilter() {
+        if (allowedPaths.isEmpty() && blockedPaths.isEmpty()
+                && allowedFileExtensions.isEmpty() && blockedFileExtensions.isEmpty()) {
+            return TreeFilter.ALL;
+        }
+
+        return new PathTreeFilter(false);
+    }
+
+    /**
+     * Whether the {@link #toTreeFilter tree filter} can be applied to a diff with rename detection
+     * without changing the patches accepted by {@link #filter(DiffEntry)}. The rename detector
+     * pairs added and deleted files, so removing some of them changes the detected renames. Only
+     * modifications are unaffected by rename detection.
+     */
+    public boolean canFilterTreesBeforeRenameDetection() {
+        return !allowedChangeTypes.isEmpty()
+                && allowedChangeTypes.stream().allMatch(changeType -> changeType == DiffEntry.ChangeType.MODIFY);
+    }
+
+    /**
+     * Compiles {@link Builder#allowCommitsWithoutMatchingFiles} into a JGit {@link RevFilter}
+     * for walking the history. The rev filter excludes commits whose diff to their first parent
+     * contains no file passing the {@link #toTreeFilter tree filter}. No history simplification
+     * is performed, so the parents of the remaining commits are unchanged.
+     * <p>
+     * A renamed file passes {@link #filter(DiffEntry)} if its old path is allowed and its new path
+     * has an allowed file extension, or vice versa. Hence, if both, paths and file extensions, are
+     * restricted, a single path only needs to be allowed or have an allowed file extension.
+     *
+     * @return a filter for the commits of a history or {@link RevFilter#ALL} if all commits are
+     * allowed
+     */
+    public RevFilter toRevFilter() {
+        final TreeFilter treeFilter = toTreeFilter();
+        if (allowCommitsWithoutMatchingFiles || treeFilter == TreeFilter.ALL) {
+            return RevFilter.ALL;
+        }
+
+        return new ChangedFilesRevFilter(new PathTreeFilter(true));
+    }
+
+    /**
+     * Includes all subtrees and all changed files which pass the path and file extension filters
+     * of this {@link DiffFilter}.
+     */
+    private final class PathTreeFilter extends TreeFilter {
+        /**
+         * Added and deleted files have {@link DiffEntry#DEV_NULL} as their other path, which is
+         * also checked by {@link #filter(DiffEntry)}. If it is allowed, every file is allowed.
+         */
+        private final boolean allowsAllPaths = allowedPaths.isEmpty() || isAllowedPath(DiffEntry.DEV_NULL);
+        private final boolean allowsAllFileExtensions = allowedFileExtensions.isEmpty() || hasAllowedExtension(DiffEntry.DEV_NULL);
+        /**
+         * Whether a file only needs an allowed path or an allowed file extension because the other
+         * requirement might be fulfilled by the other path of a rename.
+         */
+        private final boolean matchRenames;
+
+        private PathTreeFilter(final boolean matchRenames) {
+            this.matchRenames = matchRenames && !allowsAllPaths && !allowsAllFileExtensions;
+        }
+
+        @Override
+        public boolean include(final TreeWalk walker) throws IOException {
+            if (walker.getTreeCount() > 1 && !TreeFilter.ANY_DIFF.include(walker)) {
+                return false;
+            }
+            if (walker.isSubtree()) {
+                return true;
+            }
+
+            final String path = walker.getPathString();
+            if (isBlockedPath(path) || hasBlockedExtension(path)) {
+                return false;
+            }
+
+            final boolean isAllowedPath = allowsAllPaths || isAllowedPath(path);
+            final boolean hasAllowedExtension = allowsAllFileExtensions || hasAllowedExtension(path);
+            return matchRenames
+                    ? isAllowedPath || hasAllowedExtension
+                    : isAllowedPath && hasAllowedExtension;
+        }
+
+        @Override
+        public boolean shouldBeRecursive() {
+            return true;
+        }
+
+        @Override
+        public TreeFilter clone() {
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return "PATHS_OF(" + DiffFilter.this + ")";
+        }
+    }
+
+    /**
+     * Includes all commits which change at least one file included by a {@link TreeFilter}
+     * compared to their first parent.
+     */
+    private static final class ChangedFilesRevFilter extends RevFilter {
+        private final TreeFilter treeFilter;
+
+        private ChangedFilesRevFilter(final TreeFilter treeFilter) {
+            this.treeFilter = treeFilter;
+        }
+
+        @Override
+        public boolean include(final RevWalk walker, final RevCommit commit) throws IOException {
+            try (TreeWalk treeWalk = new TreeWalk(walker.getObjectReader())) {
+                if (commit.getParentCount() > 0) {
+                    final RevCommit parent = commit.getParent(0);
+                    walker.parseHeaders(parent);
+                    treeWalk.addTree(parent.getTree());
+                } else {
+                    treeWalk.addTree(new EmptyTreeIterator());
+                }
+                treeWalk.addTree(commit.getTree());
+                treeWalk.setRecursive(true);
+                treeWalk.setFilter(AndTreeFilter.create(TreeFilter.ANY_DIFF, treeFilter));
+                return treeWalk.next();
+            }
+        }
+
+        @Override
+        public RevFilter clone() {
+            return new ChangedFilesRevFilter(treeFilter.clone());
+        }
+
+        @Override
+        public String toString() {
+            return "CHANGED_FILES(" + treeFilter + ")";
+        }
+    }
+
     private boolean isAllowedPath(String filename) {
         return allowedPaths.stream().anyMatch(filename::matches);
     }
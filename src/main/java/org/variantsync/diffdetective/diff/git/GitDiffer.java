@@ -1,9 +1,14 @@
 package org.variantsync.diffdetective.diff.git;
 
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.LogCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.diff.DiffAlgorithm;
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.RenameDetector;
+import org.eclipse.jgit.lib.AbbreviatedObjectId;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectLoader;
 import org.eclipse.jgit.lib.ObjectReader;
@@ -13,26 +18,42 @@ import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.treewalk.*;
 import org.eclipse.jgit.treewalk.filter.PathFilter;
 import org.tinylog.Logger;
+import org.variantsync.diffdetective.analysis.monitoring.PatchParsedEvent;
 import org.variantsync.diffdetective.datasets.PatchDiffParseOptions;
+import org.variantsync.diffdetective.datasets.PatchDiffParseOptions.RenameDetection;
 import org.variantsync.diffdetective.datasets.Repository;
 import org.variantsync.diffdetective.diff.result.CommitDiffResult;
 import org.variantsync.diffdetective.diff.result.DiffError;
 import org.variantsync.diffdetective.diff.result.DiffParseException;
+import org.variantsync.diffdetective.error.DeadlineExceededException;
+import org.variantsync.diffdetective.feature.FormulaCache;
 import org.variantsync.diffdetective.util.Assert;
+import org.variantsync.diffdetective.util.Deadline;
 import org.variantsync.diffdetective.util.StringUtils;
 import org.variantsync.diffdetective.variation.DiffLinesLabel;
 import org.variantsync.diffdetective.variation.diff.VariationDiff;
+import org.variantsync.diffdetective.variation.diff.parse.VariationDiffParseOptions;
 import org.variantsync.diffdetective.variation.diff.parse.VariationDiffParser;
+import org.variantsync.functjonal.Result;
 import org.variantsync.functjonal.iteration.MappedIterator;
 import org.variantsync.functjonal.iteration.SideEffectIterator;
 import org.variantsync.functjonal.iteration.Yield;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -48,7 +69,7 @@ import java.util.regex.Pattern;
  *
  * @author Soeren Viegener, Paul Maximilian Bittner
  */
-public class GitDiffer {
+public class GitDiffer implements AutoCloseable {
     private static final Pattern BOM_PATTERN = Pattern.compile("\\x{FEFF}");
     private static final Pattern DIFF_HUNK_PATTERN = Pattern.compile( "^@@\\s-(\\d+).*\\+(\\d+).*@@$");
     private static final Pattern GIT_HEADER_PATTERN = Pattern.compile( "^diff --git .*$", Pattern.MULTILINE);
@@ -59,6 +80,65 @@ public class GitDiffer {
     private final Git git;
     private final DiffFilter diffFilter;
     private final PatchDiffParseOptions parseOptions;
+    private ExecutorService patchParsingPool;
+    private ObjectId head;
+    private ObjectId previousHead;
+    private int minPatchesForParallelParsing;
+    private Duration commitTimeout = Duration.ZERO;
+    private Duration patchTimeout = Duration.ZERO;
+    private VariationDiffCache variationDiffCache;
+    private boolean lazyPatchParsing;
+    private VariabilityPrescan variabilityPrescan;
+    private final AtomicLongArray renameDetectionOutcomes = new AtomicLongArray(RenameDetection.Outcome.values().length);
+    /** All sessions opened by {@link #loadCommitDiff(RevCommit)} which are not closed yet. */
+    private final Queue<Session> sessions = new ConcurrentLinkedQueue<>();
+    /** The open sessions which are currently not used by any thread. */
+    private final Deque<Session> idleSessions = new ConcurrentLinkedDeque<>();
+
+    /**
+     * The JGit objects required to load commit diffs. Opening an {@link ObjectReader} and a
+     * {@link RevWalk} for each commit is costly because each reader has its own caches. Hence,
+     * a {@link GitDiffer} keeps a pool of sessions. Each commit checks out an idle session and
+     * returns it afterwards, so the number of open sessions is bounded by the number of commits
+     * loaded at the same time, even if each commit is loaded by a new (virtual) thread.
+     * A session is not thread safe.
+     *
+     * @see GitDiffer#loadCommitDiff(RevCommit)
+     */
+    public static final class Session implements AutoCloseable {
+        private final ObjectReader reader;
+        private final RevWalk revWalk;
+        private volatile boolean closed = false;
+
+        /**
+         * Opens a session for the given repository. The caller is responsible for closing it.
+         */
+        public Session(final Git git) {
+            this.reader = git.getRepository().newObjectReader();
+            this.revWalk = new RevWalk(reader);
+        }
+
+        /**
+         * Returns the reader used to load all objects of this session.
+         */
+        public ObjectReader getReader() {
+            return reader;
+        }
+
+        /**
+         * Returns whether this session was closed.
+         */
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            revWalk.close();
+            reader.close();
+        }
+    }
 
     /**
      * Create a differ operating on the given repository.
@@ -76,8 +156,8 @@ public class GitDiffer {
     public Yield<RevCommit> yieldRevCommits() {
         final Iterable<RevCommit> commitsIterable;
         try {
-            commitsIterable = git.log().call();
-        } catch (GitAPIException e) {
+            commitsIterable = log().call();
+        } catch (GitAPIException | IOException e) {
             Logger.warn("Could not get log for git repository {}", git.toString());
             return null;
         }
@@ -95,8 +175,8 @@ public class GitDiffer {
     public Yield<RevCommit> yieldRevCommitsAfter(final Function<RevCommit, RevCommit> f) {
         Iterable<RevCommit> commitsIterable;
         try {
-            commitsIterable = git.log().call();
-        } catch (GitAPIException e) {
+            commitsIterable = log().call();
+        } catch (GitAPIException | IOException e) {
             Logger.warn("Could not get log for git repository {}", git.toString());
             return null;
         }
@@ -104,6 +184,55 @@ public class GitDiffer {
         return yieldAllValidIn(new MappedIterator<>(commitsIterable.iterator(), f));
     }
 
+    /**
+     * Restricts the history returned by {@link #yieldRevCommits} and {@link #yieldRevCommitsAfter}
+     * to all commits reachable from {@code head} but not reachable from {@code previousHead}.
+     * This allows to analyze only the commits added since a previous analysis of {@code previousHead}.
+     * This method is not thread safe and should be called before this differ is shared.
+     *
+     * @param head the newest commit of the history or {@code null} for the current {@code HEAD}
+     * @param previousHead the newest commit that was already analyzed or {@code null} to include
+     * the whole history of {@code head}
+     * @throws IOException if one of the commits doesn't exist in the repository
+     */
+    public void restrictHistory(final ObjectId head, final ObjectId previousHead) throws IOException {
+        try (RevWalk revWalk = new RevWalk(git.getRepository())) {
+            if (head != null) {
+                revWalk.parseCommit(head);
+            }
+            if (previousHead != null) {
+                revWalk.parseCommit(previousHead);
+            }
+        }
+
+        this.head = head;
+        this.previousHead = previousHead;
+    }
+
+    /**
+     * Returns the id of the current {@code HEAD} commit or {@code null} if the repository has no
+     * commits.
+     */
+    public ObjectId resolveHead() throws IOException {
+        return git.getRepository().resolve(Constants.HEAD);
+    }
+
+    /**
+     * Creates a log command for the history selected by {@link #restrictHistory}.
+     */
+    private LogCommand log() throws IOException {
+        final LogCommand log = git.log();
+        if (head != null) {
+            log.add(head);
+        }
+        if (previousHead != null) {
+            // marks all commits reachable from previousHead as uninteresting
+            log.not(previousHead);
+        }
+        log.setRevFilter(diffFilter.toRevFilter());
+        return log;
+    }
+
     /**
      * Filters all undesired commits from the given set of commits using the {@link DiffFilter} of
      * this differs repository.
@@ -140,7 +269,227 @@ public class GitDiffer {
     }
 
     public CommitDiffResult createCommitDiff(final RevCommit revCommit) {
-        return createCommitDiffFromFirstParent(git, diffFilter, revCommit, parseOptions);
+        return parseCommitDiff(loadCommitDiff(revCommit));
+    }
+
+    /**
+     * Parses the patches of commits with at least {@code minPatches} patches in parallel on the
+     * given thread pool. Hooks still observe the patches in a deterministic order because the
+     * order of patches in a {@link CommitDiff} is not affected.
+     * This method is not thread safe and should be called before this differ is shared.
+     *
+     * @param patchParsingPool the threads used to parse patches or {@code null} to disable
+     * parallel patch parsing
+     * @param minPatches the minimal number of patches of a commit to parse its patches in parallel
+     * @see #parseCommitDiff(LoadedCommitDiff, PatchDiffParseOptions, ExecutorService)
+     */
+    public void setParallelPatchParsing(final ExecutorService patchParsingPool, final int minPatches) {
+        this.patchParsingPool = patchParsingPool;
+        this.minPatchesForParallelParsing = minPatches;
+    }
+
+    /**
+     * Limits the time spent on parsing a single commit or patch. A commit exceeding its budget
+     * fails entirely with a {@link DiffError#TIMEOUT}. A patch exceeding its budget is missing in
+     * its commit diff and reported as {@link DiffError#TIMEOUT}.
+     * This method is not thread safe and should be called before this differ is shared.
+     *
+     * @param commitTimeout the time budget per commit, zero for no limit
+     * @param patchTimeout the time budget per patch, zero for no limit
+     * @see Deadline
+     */
+    public void setTimeouts(final Duration commitTimeout, final Duration patchTimeout) {
+        this.commitTimeout = commitTimeout;
+        this.patchTimeout = patchTimeout;
+    }
+
+    /**
+     * Defers the parsing of each patch until its variation diff is first accessed. Patches which
+     * are never inspected, for example because a hook skips them, are never parsed. Patches which
+     * can't be parsed are still part of their commit diff and report their error by
+     * {@link PatchDiff#getParseError()} instead of {@link CommitDiffResult#errors()}. Lazy parsing
+     * takes precedence over {@link #setParallelPatchParsing parallel patch parsing} and
+     * {@link #setTimeouts the patch timeout}. Instead, patches are parsed within the
+     * {@link Deadline} of the thread accessing them.
+     * This method is not thread safe and should be called before this differ is shared.
+     *
+     * @param lazyPatchParsing whether patches are parsed on first access
+     * @see #parseCommitDiffLazily
+     */
+    public void setLazyPatchParsing(final boolean lazyPatchParsing) {
+        this.lazyPatchParsing = lazyPatchParsing;
+    }
+
+    /**
+     * Scans the changed lines of each patch for edits to variability before it is parsed. The
+     * result is available by {@link PatchDiff#mayEditVariability()}. Only patches loaded as
+     * {@link LineDiff}s are scanned, that is, if the parse options of this differ don't require
+     * the git diff of patches to be remembered. Other patches may always edit variability.
+     * This method is not thread safe and should be called before this differ is shared.
+     *
+     * @param prescan the scan shared by all threads of this differ, which counts the scanned
+     * patches, or {@code null} to scan no patches
+     * @see #setLazyPatchParsing
+     */
+    public void setVariabilityPrescan(final VariabilityPrescan prescan) {
+        this.variabilityPrescan = prescan;
+    }
+
+    /**
+     * Loads all data required to create the CommitDiff of the given commit without parsing it.
+     * This is the IO bound part of {@link #createCommitDiff(RevCommit)}.
+     *
+     * @param revCommit The commit which is diffed against its first parent
+     * @return the loaded commit diff or the final result in case of a failure
+     * @see #parseCommitDiff(LoadedCommitDiff)
+     */
+    public Result<LoadedCommitDiff, CommitDiffResult> loadCommitDiff(final RevCommit revCommit) {
+        final boolean loadGitDiffs = requiresGitDiff(parseOptions);
+        final Session session = checkOutSession();
+        final Result<LoadedCommitDiff, CommitDiffResult> loaded;
+        try {
+            loaded = loadCommitDiffFromFirstParent(
+                    session,
+                    git,
+                    diffFilter,
+                    revCommit,
+                    loadGitDiffs,
+                    parseOptions.renameDetection(),
+                    // Cached patches have no git diff to remember.
+                    loadGitDiffs ? null : variationDiffCache,
+                    parseOptions.variationDiffParseOptions()
+            );
+        } finally {
+            returnSession(session);
+        }
+        if (loaded.isSuccess()) {
+            renameDetectionOutcomes.incrementAndGet(loaded.getSuccess().renameDetection().ordinal());
+        }
+        return loaded;
+    }
+
+    /**
+     * Returns the number of commits loaded by {@link #loadCommitDiff(RevCommit)} whose renamed
+     * files were detected in the way described by {@code outcome}.
+     */
+    public long getRenameDetectionCount(final RenameDetection.Outcome outcome) {
+        return renameDetectionOutcomes.get(outcome.ordinal());
+    }
+
+    /**
+     * Reuses the variation diffs of files whose content before and after the change was already
+     * parsed. Patches found in {@code cache} are neither loaded nor parsed by
+     * {@link #loadCommitDiff(RevCommit)} and {@link #parseCommitDiff(Result)}. The cache is not
+     * used if the parse options of this differ require the git diff of patches to be remembered.
+     * This method is not thread safe and should be called before this differ is shared.
+     *
+     * @param cache the cache shared by all threads of this differ or {@code null} to disable
+     * caching
+     * @see VariationDiffCache
+     */
+    public void setVariationDiffCache(final VariationDiffCache cache) {
+        this.variationDiffCache = cache;
+    }
+
+    /**
+     * Returns the number of sessions opened by {@link #loadCommitDiff(RevCommit)} which are not
+     * closed yet. This is at most the number of commits which were loaded at the same time.
+     */
+    public int getOpenSessions() {
+        return sessions.size();
+    }
+
+    /**
+     * Removes an idle session from the pool, opening a new one if all sessions are in use.
+     * The most recently used session is preferred because its caches are the most up to date.
+     */
+    private Session checkOutSession() {
+        Session session;
+        while ((session = idleSessions.pollFirst()) != null) {
+            if (!session.isClosed()) {
+                return session;
+            }
+        }
+
+        session = new Session(git);
+        sessions.add(session);
+        return session;
+    }
+
+    /**
+     * Makes a session checked out by {@link #checkOutSession()} available to other commits.
+     */
+    private void returnSession(final Session session) {
+        if (!session.isClosed()) {
+            idleSessions.addFirst(session);
+        }
+    }
+
+    /**
+     * Closes all sessions opened to load commits with this differ and logs how often
+     * the variation diff cache and the variability prescan were hit and how renames were detected.
+     * This differ can still be used afterwards, which opens new sessions, but no commit must be
+     * loaded while this method is running.
+     */
+    @Override
+    public void close() {
+        idleSessions.clear();
+        Session session;
+        while ((session = sessions.poll()) != null) {
+            session.close();
+        }
+
+        if (variationDiffCache != null) {
+            Logger.info("Variation diff cache of {}: {}", git.getRepository().getDirectory(), variationDiffCache);
+        }
+
+        if (variabilityPrescan != null) {
+            Logger.info("Variability prescan of {}: {}", git.getRepository().getDirectory(), variabilityPrescan);
+        }
+
+        // Annotation parsers may be shared by multiple repositories, so this includes their formulas.
+        final FormulaCache formulaCache = parseOptions.variationDiffParseOptions().annotationParser().getFormulaCache();
+        if (formulaCache != null) {
+            Logger.info("Formula cache used by {}: {}", git.getRepository().getDirectory(), formulaCache);
+        }
+
+        final StringBuilder renameDetection = new StringBuilder();
+        for (final RenameDetection.Outcome outcome : RenameDetection.Outcome.values()) {
+            if (getRenameDetectionCount(outcome) > 0) {
+                renameDetection.append(renameDetection.isEmpty() ? "" : ", ").append(outcome).append(": ").append(getRenameDetectionCount(outcome));
+            }
+        }
+        if (!renameDetection.isEmpty()) {
+            Logger.info("Rename detection of {}: {}", git.getRepository().getDirectory(), renameDetection);
+        }
+    }
+
+    /**
+     * Parses a commit diff loaded by {@link #loadCommitDiff(RevCommit)}.
+     * This is the CPU bound part of {@link #createCommitDiff(RevCommit)}.
+     *
+     * @param loadedCommitDiff The result of {@link #loadCommitDiff(RevCommit)}
+     * @return The same result as {@link #createCommitDiff(RevCommit)}
+     */
+    public CommitDiffResult parseCommitDiff(final Result<LoadedCommitDiff, CommitDiffResult> loadedCommitDiff) {
+        return loadedCommitDiff.match(
+                loaded -> {
+                    if (lazyPatchParsing) {
+                        return parseCommitDiffLazily(loaded, parseOptions, variabilityPrescan);
+                    }
+
+                    final ExecutorService pool = patchParsingPool != null && loaded.patches().size() >= minPatchesForParallelParsing
+                            ? patchParsingPool
+                            : null;
+                    try (Deadline commitDeadline = Deadline.start(commitTimeout)) {
+                        return parsePatches(loaded, parseOptions, pool, patchTimeout, variabilityPrescan);
+                    } catch (DeadlineExceededException e) {
+                        Logger.warn("Parsing commit {} exceeded its time budget of {}", loaded.childCommit().getId().getName(), commitTimeout);
+                        return CommitDiffResult.Failure(DiffError.TIMEOUT, "Parsing exceeded the time budget of " + commitTimeout);
+                    }
+                },
+                Function.identity()
+        );
     }
 
     /**
@@ -158,18 +507,62 @@ public class GitDiffer {
             DiffFilter diffFilter,
             RevCommit currentCommit,
             final PatchDiffParseOptions parseOptions) {
+        return parseCommitDiff(loadCommitDiffFromFirstParent(git, diffFilter, currentCommit, parseOptions), parseOptions);
+    }
+
+    /**
+     * The same as {@link GitDiffer#createCommitDiffFromFirstParent} but only loads the diff.
+     * The result can be parsed with any {@link PatchDiffParseOptions}.
+     * @see GitDiffer#parseCommitDiff(LoadedCommitDiff, PatchDiffParseOptions)
+     */
+    public static Result<LoadedCommitDiff, CommitDiffResult> loadCommitDiffFromFirstParent(
+            Git git,
+            DiffFilter diffFilter,
+            RevCommit currentCommit) {
+        try (Session session = new Session(git)) {
+            return loadCommitDiffFromFirstParent(session, git, diffFilter, currentCommit, true, RenameDetection.Default, null, null);
+        }
+    }
+
+    /**
+     * The same as {@link GitDiffer#loadCommitDiffFromFirstParent(Git, DiffFilter, RevCommit)} but
+     * the result can only be parsed with {@code parseOptions}.
+     * @see GitDiffer#loadCommitDiff(Git, DiffFilter, RevCommit, RevCommit, PatchDiffParseOptions)
+     */
+    public static Result<LoadedCommitDiff, CommitDiffResult> loadCommitDiffFromFirstParent(
+            Git git,
+            DiffFilter diffFilter,
+            RevCommit currentCommit,
+            final PatchDiffParseOptions parseOptions) {
+        try (Session session = new Session(git)) {
+            return loadCommitDiffFromFirstParent(session, git, diffFilter, currentCommit, requiresGitDiff(parseOptions), parseOptions.renameDetection(), null, null);
+        }
+    }
+
+    private static Result<LoadedCommitDiff, CommitDiffResult> loadCommitDiffFromFirstParent(
+            Session session,
+            Git git,
+            DiffFilter diffFilter,
+            RevCommit currentCommit,
+            boolean loadGitDiffs,
+            RenameDetection renameDetection,
+            VariationDiffCache cache,
+            VariationDiffParseOptions cacheOptions) {
         final RevCommit parent;
         if (currentCommit.getParentCount() > 0) {
-            try (var revWalk = new RevWalk(git.getRepository())) {
-                parent = revWalk.parseCommit(currentCommit.getParent(0).getId());
+            try {
+                parent = session.revWalk.parseCommit(currentCommit.getParent(0).getId());
             } catch (IOException e) {
-                return CommitDiffResult.Failure(DiffError.JGIT_ERROR, "Could not parse parent commit of " + currentCommit.getId().getName() + "!");
+                return Result.Failure(CommitDiffResult.Failure(DiffError.JGIT_ERROR, "Could not parse parent commit of " + currentCommit.getId().getName() + "!"));
+            } finally {
+                // The parsed parent stays valid but the walk must not accumulate the whole history.
+                session.revWalk.dispose();
             }
         } else {
             parent = null;
         }
 
-        return createCommitDiff(git, diffFilter, parent, currentCommit, parseOptions);
+        return loadCommitDiff(session, git, diffFilter, parent, currentCommit, loadGitDiffs, renameDetection, cache, cacheOptions);
     }
 
     /**
@@ -185,25 +578,69 @@ public class GitDiffer {
             RevCommit parentCommit,
             RevCommit childCommit,
             final PatchDiffParseOptions parseOptions) {
+        return parseCommitDiff(loadCommitDiff(git, diffFilter, parentCommit, childCommit, parseOptions), parseOptions);
+    }
+
+    /**
+     * The same as {@link GitDiffer#createCommitDiff(Git, DiffFilter, RevCommit, RevCommit, PatchDiffParseOptions)}
+     * but only loads the diff. The result can be parsed with any {@link PatchDiffParseOptions}.
+     * @see GitDiffer#parseCommitDiff(LoadedCommitDiff, PatchDiffParseOptions)
+     */
+    public static Result<LoadedCommitDiff, CommitDiffResult> loadCommitDiff(
+            Git git,
+            DiffFilter diffFilter,
+            RevCommit parentCommit,
+            RevCommit childCommit) {
+        try (Session session = new Session(git)) {
+            return loadCommitDiff(session, git, diffFilter, parentCommit, childCommit, true, RenameDetection.Default, null, null);
+        }
+    }
+
+    /**
+     * The same as {@link GitDiffer#loadCommitDiff(Git, DiffFilter, RevCommit, RevCommit)} but the
+     * result can only be parsed with {@code parseOptions}. Unless {@code parseOptions} requires
+     * the textual output of {@code git diff} to be remembered, patches are loaded as
+     * {@link LineDiff}s, which can be parsed without creating and splitting any diff text.
+     * @see GitDiffer#parseCommitDiff(LoadedCommitDiff, PatchDiffParseOptions)
+     */
+    public static Result<LoadedCommitDiff, CommitDiffResult> loadCommitDiff(
+            Git git,
+            DiffFilter diffFilter,
+            RevCommit parentCommit,
+            RevCommit childCommit,
+            final PatchDiffParseOptions parseOptions) {
+        try (Session session = new Session(git)) {
+            return loadCommitDiff(session, git, diffFilter, parentCommit, childCommit, requiresGitDiff(parseOptions), parseOptions.renameDetection(), null, null);
+        }
+    }
+
+    private static Result<LoadedCommitDiff, CommitDiffResult> loadCommitDiff(
+            Session session,
+            Git git,
+            DiffFilter diffFilter,
+            RevCommit parentCommit,
+            RevCommit childCommit,
+            boolean loadGitDiffs,
+            RenameDetection renameDetection,
+            VariationDiffCache cache,
+            VariationDiffParseOptions cacheOptions) {
         if (childCommit.getTree() == null) {
-            return CommitDiffResult.Failure(DiffError.JGIT_ERROR, "Could not obtain RevTree from child commit " + childCommit.getId());
+            return Result.Failure(CommitDiffResult.Failure(DiffError.JGIT_ERROR, "Could not obtain RevTree from child commit " + childCommit.getId()));
         }
         if (parentCommit != null && parentCommit.getTree() == null) {
-            return CommitDiffResult.Failure(DiffError.JGIT_ERROR, "Could not obtain RevTree from parent commit " + parentCommit.getId());
+            return Result.Failure(CommitDiffResult.Failure(DiffError.JGIT_ERROR, "Could not obtain RevTree from parent commit " + parentCommit.getId()));
         }
 
         // get TreeParsers
         final CanonicalTreeParser currentTreeParser = new CanonicalTreeParser();
         final CanonicalTreeParser prevTreeParser = new CanonicalTreeParser();
-        try (ObjectReader reader = git.getRepository().newObjectReader()) {
-            try {
-                currentTreeParser.reset(reader, childCommit.getTree());
-                if (parentCommit != null) {
-                    prevTreeParser.reset(reader, parentCommit.getTree());
-                }
-            } catch (IOException e) {
-                return CommitDiffResult.Failure(DiffError.JGIT_ERROR, e.toString());
+        try {
+            currentTreeParser.reset(session.reader, childCommit.getTree());
+            if (parentCommit != null) {
+                prevTreeParser.reset(session.reader, parentCommit.getTree());
             }
+        } catch (IOException e) {
+            return Result.Failure(CommitDiffResult.Failure(DiffError.JGIT_ERROR, e.toString()));
         }
 
         final AbstractTreeIterator parentTreeIterator;
@@ -213,17 +650,29 @@ public class GitDiffer {
             parentTreeIterator = prevTreeParser;
         }
 
-        return getPatchDiffs(
+        return loadPatches(
+                session,
                 git,
                 diffFilter,
-                parseOptions,
                 parentTreeIterator,
                 currentTreeParser,
                 parentCommit,
-                childCommit
+                childCommit,
+                loadGitDiffs,
+                renameDetection,
+                cache,
+                cacheOptions
         );
     }
 
+    /**
+     * Whether patches parsed with {@code parseOptions} need to be loaded as the textual output of
+     * {@code git diff} because some form of it is remembered in the resulting {@link PatchDiff}s.
+     */
+    private static boolean requiresGitDiff(final PatchDiffParseOptions parseOptions) {
+        return parseOptions.diffStoragePolicy() != PatchDiffParseOptions.DiffStoragePolicy.DO_NOT_REMEMBER;
+    }
+
     /**
      * The same as {@link GitDiffer#createCommitDiff(Git, DiffFilter, RevCommit, RevCommit, PatchDiffParseOptions)}
      * but diffs the given commit against the current working tree.
@@ -242,167 +691,526 @@ public class GitDiffer {
             return CommitDiffResult.Failure(DiffError.JGIT_ERROR, "Could not obtain RevTree from child commit " + commit.getId());
         }
 
-		// get TreeParsers
-        final AbstractTreeIterator workingTreeIterator = new FileTreeIterator(git.getRepository());
-        final AbstractTreeIterator prevTreeIterator;
-        if (commit == null) {
-            prevTreeIterator = new EmptyTreeIterator();
-        } else try (ObjectReader reader = git.getRepository().newObjectReader()) {
-            prevTreeIterator = new CanonicalTreeParser(null, reader, commit.getTree());
-        } catch (IOException e) {
-            return CommitDiffResult.Failure(DiffError.JGIT_ERROR, e.toString());
-        }
+        try (Session session = new Session(git)) {
+            // get TreeParsers
+            final AbstractTreeIterator workingTreeIterator = new FileTreeIterator(git.getRepository());
+            final AbstractTreeIterator prevTreeIterator;
+            if (commit == null) {
+                prevTreeIterator = new EmptyTreeIterator();
+            } else try {
+                prevTreeIterator = new CanonicalTreeParser(null, session.reader, commit.getTree());
+            } catch (IOException e) {
+                return CommitDiffResult.Failure(DiffError.JGIT_ERROR, e.toString());
+            }
 
-        return getPatchDiffs(git, diffFilter, parseOptions, prevTreeIterator, workingTreeIterator, commit, commit);
+            return parseCommitDiff(loadPatches(session, git, diffFilter, prevTreeIterator, workingTreeIterator, commit, commit, true, parseOptions.renameDetection(), null, null), parseOptions);
+        }
     }
-    
+
     /**
-     * Obtains the CommitDiff between two commit's trees.
+     * Loads the git diffs and the files before the change of all patches between two commit's
+     * trees.
      *
+     * @param session The session used to load all objects
      * @param git The git repo which the commit stems from
      * @param diffFilter {@link DiffFilter}
-     * @param parseOptions {@link PatchDiffParseOptions}
      * @param prevTreeParser The tree parser for parentCommit
      * @param currentTreeParser The tree parser for childCommit or the working tree
      * @param parentCommit The {@link RevCommit} for the parent commit
      * @param childCommit The {@link RevCommit} for the child commit (equal to parentCommit if working tree is requested)
-     * @return {@link CommitDiffResult}
+     * @param loadGitDiffs whether all patches have to be loaded as the textual output of
+     *                     {@code git diff} instead of as {@link LineDiff}s where possible. Must be
+     *                     {@code true} for the working tree.
+     * @param renameDetection how renamed files are detected
+     * @param cache the cache in which the variation diffs of all patches are looked up before
+     *              loading them or {@code null} to load all patches
+     * @param cacheOptions the options with which the looked up variation diffs are parsed
+     * @return the loaded commit diff or a {@link CommitDiffResult} describing the failure
      */
-    private static CommitDiffResult getPatchDiffs(
+    private static Result<LoadedCommitDiff, CommitDiffResult> loadPatches(
+    		Session session,
     		Git git,
     		DiffFilter diffFilter,
-    		final PatchDiffParseOptions parseOptions,
     		AbstractTreeIterator prevTreeParser,
     		AbstractTreeIterator currentTreeParser,
     		RevCommit parentCommit,
-    		RevCommit childCommit) {
-    	final CommitDiff commitDiff = new CommitDiff(childCommit, parentCommit);
+    		RevCommit childCommit,
+    		boolean loadGitDiffs,
+    		RenameDetection renameDetection,
+    		VariationDiffCache cache,
+    		VariationDiffParseOptions cacheOptions) {
+        final List<LoadedCommitDiff.Patch> patches = new ArrayList<>();
         final List<DiffError> errors = new ArrayList<>();
+        final RenameDetection.Outcome renameDetectionOutcome;
 
-        // get PatchDiffs
         try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
              DiffFormatter diffFormatter = new DiffFormatter(outputStream))
         {
-            diffFormatter.setRepository(git.getRepository());
-            diffFormatter.setDetectRenames(true);
-            diffFormatter.getRenameDetector().setRenameScore(50);
+            final DiffAlgorithm diffAlgorithm = LineDiff.getDiffAlgorithm(git.getRepository());
+            diffFormatter.setReader(session.reader, git.getRepository().getConfig());
+            configureRenameDetection(diffFormatter, renameDetection);
+            if (renameDetection.mode() == RenameDetection.Mode.OFF || diffFilter.canFilterTreesBeforeRenameDetection()) {
+                // Skip files whose patches would be filtered before they are diffed.
+                diffFormatter.setPathFilter(diffFilter.toTreeFilter());
+            }
 
             List<DiffEntry> entries = diffFormatter.scan(prevTreeParser, currentTreeParser);
+            renameDetectionOutcome = getRenameDetectionOutcome(diffFormatter, renameDetection, entries);
             for (DiffEntry diffEntry : entries) {
                 if (!diffFilter.filter(diffEntry)) {
                     continue;
                 }
 
-                diffFormatter.format(diffEntry);
-                final String gitDiff = outputStream.toString(StandardCharsets.UTF_8);
-                final String filename = diffEntry.getOldPath();
+                VariationDiffCache.Lookup cacheLookup = null;
+                if (cache != null) {
+                    final VariationDiffCache.Key key = VariationDiffCache.Key.of(diffEntry, cacheOptions);
+                    if (key != null) {
+                        cacheLookup = cache.lookup(key);
+                        if (cacheLookup.isHit()) {
+                            patches.add(new LoadedCommitDiff.Patch(diffEntry, cacheLookup));
+                            continue;
+                        }
+                    }
+                }
 
-                final Matcher matcher = DIFF_HEADER_PATTERN.matcher(gitDiff);
-                final String strippedDiff;
-                if (matcher.find()) {
-                    strippedDiff = gitDiff.substring(matcher.end() + 1);
-                } else if (GIT_HEADER_PATTERN.matcher(gitDiff).find()) {
-                    // Check whether it is a diff returned by `git diff` and not one created by some other means
-                    strippedDiff = "";
-                } else {
-                    // It is a diff from another source (e.g., manually created or copy-pasted from GitHub)
-                    strippedDiff = gitDiff;
+                if (!loadGitDiffs) {
+                    final LineDiff lineDiff = LineDiff.load(session.reader, diffAlgorithm, diffEntry);
+                    if (lineDiff != null) {
+                        patches.add(new LoadedCommitDiff.Patch(diffEntry, null, null, lineDiff, cacheLookup));
+                        continue;
+                    }
                 }
 
+                diffFormatter.format(diffEntry);
+                final String gitDiff = outputStream.toString(StandardCharsets.UTF_8);
+                outputStream.reset();
 
-                try {
-                    String fullDiff = switch (diffEntry.getChangeType()) {
-                        case ADD, DELETE -> {
-                            if (strippedDiff.isEmpty()) {
-                                // Addition or deletion of an empty file
-                                yield "";
-                            }
-                            // The first lines contains meta information "@@ ... " that we want to skip.
-                            final String[] hunkBeginAndRest = StringUtils.LINEBREAK_REGEX.split(strippedDiff, 2);
-                            Assert.assertTrue(hunkBeginAndRest.length == 2, "Hunk is only one line. Is it a hunk? Hunk: " + strippedDiff);
-                            yield hunkBeginAndRest[1];
-                        }
-                        case RENAME, COPY, MODIFY -> {
-                            final BufferedReader beforeFullFile = getBeforeFullFile(git, parentCommit, filename);
-                            yield getFullDiff(beforeFullFile, new BufferedReader(new StringReader(strippedDiff)));
+                String beforeFullFile = null;
+                switch (diffEntry.getChangeType()) {
+                    case RENAME, COPY, MODIFY -> {
+                        final String filename = diffEntry.getOldPath();
+                        try (BufferedReader beforeFile = getBeforeFullFile(session, git, parentCommit, diffEntry)) {
+                            final StringWriter content = new StringWriter();
+                            beforeFile.transferTo(content);
+                            beforeFullFile = content.toString();
+                        } catch (IOException e) {
+                            Logger.debug(e, "Could not obtain full diff of file " + filename + " before commit " + parentCommit + "!");
+                            errors.add(DiffError.COULD_NOT_OBTAIN_FULLDIFF);
+                            continue;
                         }
-                    };
-
-                    // Iff a file does not end with a newline character, git adds a meta-line to the diff, which states
-                    // the absence of the newline. If this is the case, we remove the meta-line, in order not to
-                    // parse it as artifact line. If the meta-line does not exist, we add a newline, which adds an empty
-                    // line to the end of the diff. Without this empty line, we would loose the information about the
-                    // newline during the next parse step, which splits the text into lines and removes all newline
-                    // characters.
-                    // TODO: In future versions, we might want to track the newline more explicitly
-                    final Matcher newlineMatcher = NO_NEWLINE_PATTERN.matcher(fullDiff);
-                    if (newlineMatcher.find()) {
-                        fullDiff = newlineMatcher.replaceAll("");
-                    } else {
-                        fullDiff += StringUtils.LINEBREAK;
-                    }
-
-                    final VariationDiff<DiffLinesLabel> variationDiff = VariationDiffParser.createVariationDiff(
-                            fullDiff,
-                            parseOptions.variationDiffParseOptions()
-                    );
-
-                    // not storing the full diff reduces memory usage by around 40-50%
-                    final String diffToRemember = switch (parseOptions.diffStoragePolicy()) {
-                        case DO_NOT_REMEMBER -> "";
-                        case REMEMBER_DIFF -> gitDiff;
-                        case REMEMBER_FULL_DIFF -> fullDiff;
-                        case REMEMBER_STRIPPED_DIFF -> strippedDiff;
-                    };
-
-                    commitDiff.addPatchDiff(new PatchDiff(
-                            commitDiff,
-                            diffEntry,
-                            diffToRemember,
-                            variationDiff
-                    ));
-                } catch (IOException e) {
-                    Logger.debug(e, "Could not obtain full diff of file " + filename + " before commit " + parentCommit + "!");
-                    errors.add(DiffError.COULD_NOT_OBTAIN_FULLDIFF);
-                } catch (DiffParseException e) {
-                    StringBuilder logMessage = new StringBuilder();
-                    logMessage
-                            .append("parse exception for commit ")
-                            .append(childCommit.getName())
-                            .append(" in line ")
-                            .append(e.getLineNumber())
-                            .append(" of patch ")
-                            .append(diffEntry.getOldPath())
-                            .append(" -> ")
-                            .append(diffEntry.getNewPath())
-                            .append("\n");
-                    logMessage
-                            .append(e)
-                            .append("\n");
-                    if (e.getMessage() != null) {
-                        logMessage
-                                .append("error message: ")
-                                .append(e.getMessage())
-                                .append("\n");
-                    }
-                    if (e.getCause() != null) {
-                        logMessage
-                                .append("cause: ")
-                                .append(e.getCause());
                     }
-                    Logger.debug(logMessage);
-                    errors.add(e.getError());
                 }
 
-                outputStream.reset();
+                patches.add(new LoadedCommitDiff.Patch(diffEntry, gitDiff, beforeFullFile, null, cacheLookup));
             }
         } catch (IOException e) {
-            return CommitDiffResult.Failure(DiffError.JGIT_ERROR, e.toString());
+            return Result.Failure(CommitDiffResult.Failure(DiffError.JGIT_ERROR, e.toString()));
+        }
+
+        return Result.Success(new LoadedCommitDiff(parentCommit, childCommit, patches, errors, renameDetectionOutcome));
+    }
+
+    private static void configureRenameDetection(final DiffFormatter diffFormatter, final RenameDetection renameDetection) {
+        if (renameDetection.mode() == RenameDetection.Mode.OFF) {
+            diffFormatter.setDetectRenames(false);
+            return;
+        }
+
+        diffFormatter.setDetectRenames(true);
+        final RenameDetector renameDetector = diffFormatter.getRenameDetector();
+        renameDetector.setRenameScore(renameDetection.renameScore());
+        if (renameDetection.mode() == RenameDetection.Mode.EXACT) {
+            // JGit detects content renames only if the number of added or deleted files does not
+            // exceed the rename limit, unless it is zero. A negative limit is always exceeded.
+            renameDetector.setRenameLimit(-1);
+        } else {
+            renameDetector.setRenameLimit(renameDetection.renameLimit());
+        }
+    }
+
+    /**
+     * Determines how the renames among {@code entries} were detected by the rename detector of
+     * {@code diffFormatter}.
+     */
+    private static RenameDetection.Outcome getRenameDetectionOutcome(
+            final DiffFormatter diffFormatter,
+            final RenameDetection renameDetection,
+            final List<DiffEntry> entries) {
+        if (renameDetection.mode() == RenameDetection.Mode.OFF) {
+            return RenameDetection.Outcome.DISABLED;
+        }
+
+        boolean hasRenames = false;
+        boolean hasAdditions = false;
+        boolean hasDeletions = false;
+        for (final DiffEntry entry : entries) {
+            switch (entry.getChangeType()) {
+                case RENAME, COPY -> hasRenames = true;
+                case ADD -> hasAdditions = true;
+                case DELETE -> hasDeletions = true;
+                case MODIFY -> {}
+            }
+        }
+        if (!hasRenames && !(hasAdditions && hasDeletions)) {
+            return RenameDetection.Outcome.NOT_REQUIRED;
+        }
+
+        if (renameDetection.mode() == RenameDetection.Mode.EXACT) {
+            return RenameDetection.Outcome.EXACT;
+        }
+        return diffFormatter.getRenameDetector().isOverRenameLimit()
+                ? RenameDetection.Outcome.EXACT_ABOVE_RENAME_LIMIT
+                : RenameDetection.Outcome.SIMILARITY;
+    }
+
+    /**
+     * Parses the result of {@link #loadCommitDiff(Git, DiffFilter, RevCommit, RevCommit)}.
+     * Failures are passed through unchanged.
+     *
+     * @param loadedCommitDiff the loaded commit diff or the result of a failed loading
+     * @param parseOptions {@link PatchDiffParseOptions}
+     * @return {@link CommitDiffResult}
+     */
+    public static CommitDiffResult parseCommitDiff(
+            Result<LoadedCommitDiff, CommitDiffResult> loadedCommitDiff,
+            final PatchDiffParseOptions parseOptions) {
+        return loadedCommitDiff.match(
+                loaded -> parseCommitDiff(loaded, parseOptions),
+                Function.identity()
+        );
+    }
+
+    /**
+     * Obtains the CommitDiff from the raw data of a commit. This performs no IO and can thus be
+     * run concurrently to the loading of other commit diffs.
+     *
+     * @param loadedCommitDiff the patches of a commit loaded by {@link #loadCommitDiff}
+     * @param parseOptions {@link PatchDiffParseOptions}
+     * @return {@link CommitDiffResult}
+     */
+    public static CommitDiffResult parseCommitDiff(
+            final LoadedCommitDiff loadedCommitDiff,
+            final PatchDiffParseOptions parseOptions) {
+        return parsePatches(loadedCommitDiff, parseOptions, null, null, null);
+    }
+
+    /**
+     * The same as {@link #parseCommitDiff(LoadedCommitDiff, PatchDiffParseOptions)} but parses the
+     * patches in parallel on {@code patchParsingPool}. The order of the patches and errors in the
+     * result is the same as for sequential parsing.
+     *
+     * @param loadedCommitDiff the patches of a commit loaded by {@link #loadCommitDiff}
+     * @param parseOptions {@link PatchDiffParseOptions}
+     * @param patchParsingPool the threads used to parse the patches, must not contain the current
+     *                         thread
+     * @return {@link CommitDiffResult}
+     */
+    public static CommitDiffResult parseCommitDiff(
+            final LoadedCommitDiff loadedCommitDiff,
+            final PatchDiffParseOptions parseOptions,
+            final ExecutorService patchParsingPool) {
+        return parsePatches(loadedCommitDiff, parseOptions, patchParsingPool, null, null);
+    }
+
+    /**
+     * The same as {@link #parseCommitDiff(LoadedCommitDiff, PatchDiffParseOptions)} but defers the
+     * parsing of each patch until its variation diff is first accessed. Hence, this method is
+     * cheap and all patches of {@code loadedCommitDiff} are part of the resulting commit diff.
+     * Errors of unparsable patches are reported by {@link PatchDiff#getParseError()} and not by
+     * {@link CommitDiffResult#errors()}, which only contains the errors of loading the commit.
+     *
+     * @param loadedCommitDiff the patches of a commit loaded by {@link #loadCommitDiff}
+     * @param parseOptions {@link PatchDiffParseOptions}
+     * @return {@link CommitDiffResult}
+     */
+    public static CommitDiffResult parseCommitDiffLazily(
+            final LoadedCommitDiff loadedCommitDiff,
+            final PatchDiffParseOptions parseOptions) {
+        return parseCommitDiffLazily(loadedCommitDiff, parseOptions, null);
+    }
+
+    /**
+     * The same as {@link #parseCommitDiffLazily(LoadedCommitDiff, PatchDiffParseOptions)} but
+     * additionally scans the patches with {@code prescan} if it is not {@code null}.
+     */
+    private static CommitDiffResult parseCommitDiffLazily(
+            final LoadedCommitDiff loadedCommitDiff,
+            final PatchDiffParseOptions parseOptions,
+            final VariabilityPrescan prescan) {
+        final CommitDiff commitDiff = new CommitDiff(loadedCommitDiff.childCommit(), loadedCommitDiff.parentCommit());
+        for (final LoadedCommitDiff.Patch patch : loadedCommitDiff.patches()) {
+            commitDiff.addPatchDiff(prescan(new PatchDiff(
+                    commitDiff,
+                    patch.diffEntry(),
+                    () -> parsePatch(commitDiff.getCommitHash(), patch, parseOptions)
+            ), patch, prescan));
+        }
+
+        return new CommitDiffResult(Optional.of(commitDiff), new ArrayList<>(loadedCommitDiff.errors()));
+    }
+
+    /**
+     * Parses all patches of {@code loadedCommitDiff} within the {@link Deadline#current current
+     * deadline}.
+     *
+     * @param patchParsingPool the threads used to parse the patches or {@code null} to parse them
+     *                         sequentially in the current thread
+     * @param patchTimeout the time budget of each patch or {@code null} for no limit
+     * @param prescan the scan of parsed patches or {@code null} to scan no patches
+     * @throws DeadlineExceededException if the current deadline is exceeded
+     */
+    private static CommitDiffResult parsePatches(
+            final LoadedCommitDiff loadedCommitDiff,
+            final PatchDiffParseOptions parseOptions,
+            final ExecutorService patchParsingPool,
+            final Duration patchTimeout,
+            final VariabilityPrescan prescan) {
+        final CommitDiff commitDiff = new CommitDiff(loadedCommitDiff.childCommit(), loadedCommitDiff.parentCommit());
+        final List<DiffError> errors = new ArrayList<>(loadedCommitDiff.errors());
+        final Deadline commitDeadline = Deadline.current();
+
+        if (patchParsingPool == null) {
+            // get PatchDiffs
+            for (final LoadedCommitDiff.Patch patch : loadedCommitDiff.patches()) {
+                parsePatch(commitDiff, patch, parseOptions, commitDeadline, patchTimeout, prescan).match(commitDiff::addPatchDiff, errors::add);
+            }
+
+            return new CommitDiffResult(Optional.of(commitDiff), errors);
+        }
+
+        final List<Future<Result<PatchDiff, DiffError>>> parsedPatches = new ArrayList<>(loadedCommitDiff.patches().size());
+        for (final LoadedCommitDiff.Patch patch : loadedCommitDiff.patches()) {
+            parsedPatches.add(patchParsingPool.submit(() -> parsePatch(commitDiff, patch, parseOptions, commitDeadline, patchTimeout, prescan)));
+        }
+
+        // Collect the results in order to keep the order of patches deterministic.
+        try {
+            for (final Future<Result<PatchDiff, DiffError>> parsedPatch : parsedPatches) {
+                parsedPatch.get().match(commitDiff::addPatchDiff, errors::add);
+            }
+        } catch (InterruptedException e) {
+            parsedPatches.forEach(parsedPatch -> parsedPatch.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            parsedPatches.forEach(parsedPatch -> parsedPatch.cancel(true));
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new RuntimeException(e.getCause());
         }
 
         return new CommitDiffResult(Optional.of(commitDiff), errors);
     }
 
+    /**
+     * Same as {@link #parsePatch(String, LoadedCommitDiff.Patch, PatchDiffParseOptions)} but
+     * limits the parsing time and creates the {@link PatchDiff} of {@code commitDiff} without
+     * adding it to {@code commitDiff}. The patch has its own deadline which ends after
+     * {@code patchTimeout} but not after {@code commitDeadline}.
+     *
+     * @return the parsed patch or the reason why it couldn't be parsed, including
+     * {@link DiffError#TIMEOUT} if the patch exceeded its own deadline
+     * @throws DeadlineExceededException if {@code commitDeadline} is exceeded
+     */
+    private static Result<PatchDiff, DiffError> parsePatch(
+            final CommitDiff commitDiff,
+            final LoadedCommitDiff.Patch patch,
+            final PatchDiffParseOptions parseOptions,
+            final Deadline commitDeadline,
+            final Duration patchTimeout,
+            final VariabilityPrescan prescan) {
+        try (Deadline patchDeadline = Deadline.start(commitDeadline, patchTimeout)) {
+            return parsePatch(commitDiff.getCommitHash(), patch, parseOptions)
+                    .map(parsed -> prescan(
+                            new PatchDiff(commitDiff, patch.diffEntry(), parsed.fullDiff(), parsed.variationDiff()),
+                            patch,
+                            prescan
+                    ));
+        } catch (DeadlineExceededException e) {
+            if (commitDeadline.isExceeded()) {
+                throw e;
+            }
+
+            Logger.warn("Parsing {} in commit {} exceeded its time budget of {}", patch.diffEntry().getNewPath(), commitDiff.getCommitHash(), patchTimeout);
+            return Result.Failure(DiffError.TIMEOUT);
+        }
+    }
+
+    /**
+     * Records whether {@code patchDiff} may edit variability and how many lines it changes if
+     * {@code patch} can be scanned by {@code prescan}.
+     *
+     * @return {@code patchDiff}
+     */
+    private static PatchDiff prescan(
+            final PatchDiff patchDiff,
+            final LoadedCommitDiff.Patch patch,
+            final VariabilityPrescan prescan) {
+        if (prescan != null && patch.lineDiff() != null) {
+            patchDiff.setMayEditVariability(prescan.mayEditVariability(patch.lineDiff()));
+            patchDiff.setNumberOfChangedLines(VariabilityPrescan.countChangedLines(patch.lineDiff()));
+        }
+        return patchDiff;
+    }
+
+    /**
+     * Parses a single patch of the commit {@code commitHash}.
+     *
+     * @return the parsed patch or the reason why it couldn't be parsed
+     */
+    private static Result<PatchDiff.Parsed, DiffError> parsePatch(
+            final String commitHash,
+            final LoadedCommitDiff.Patch patch,
+            final PatchDiffParseOptions parseOptions) {
+        final DiffEntry diffEntry = patch.diffEntry();
+
+        final PatchParsedEvent event = new PatchParsedEvent();
+        event.begin();
+        event.commitHash = commitHash;
+        event.file = diffEntry.getChangeType() == DiffEntry.ChangeType.DELETE ? diffEntry.getOldPath() : diffEntry.getNewPath();
+
+        try {
+            final VariationDiffCache.Lookup cacheLookup = patch.cacheLookup();
+            if (cacheLookup != null) {
+                Assert.assertTrue(
+                        !requiresGitDiff(parseOptions) && cacheLookup.getKey().options().equals(parseOptions.variationDiffParseOptions()),
+                        "The patch " + event.file + " was looked up in the cache with different parse options"
+                );
+
+                if (cacheLookup.isHit()) {
+                    return Result.Success(new PatchDiff.Parsed("", cacheLookup.restore()));
+                }
+            }
+
+            if (patch.lineDiff() != null) {
+                Assert.assertTrue(
+                        !requiresGitDiff(parseOptions),
+                        "The diff of " + event.file + " can't be remembered because it was loaded without git diff"
+                );
+
+                final VariationDiff<DiffLinesLabel> variationDiff = VariationDiffParser.createVariationDiff(
+                        patch.lineDiff().fullDiff(diffEntry.getChangeType()),
+                        parseOptions.variationDiffParseOptions()
+                );
+
+                event.end();
+                if (event.shouldCommit()) {
+                    event.lines = patch.lineDiff().getFullDiffLineCount(diffEntry.getChangeType());
+                    event.nodes = variationDiff.computeSize();
+                    event.commit();
+                }
+
+                if (cacheLookup != null) {
+                    cacheLookup.store(variationDiff, () -> VariationDiffCache.toFullDiff(patch.lineDiff().fullDiff(diffEntry.getChangeType())));
+                }
+
+                return Result.Success(new PatchDiff.Parsed("", variationDiff));
+            }
+
+            final String gitDiff = patch.gitDiff();
+            final Matcher matcher = DIFF_HEADER_PATTERN.matcher(gitDiff);
+            final String strippedDiff;
+            if (matcher.find()) {
+                strippedDiff = gitDiff.substring(matcher.end() + 1);
+            } else if (GIT_HEADER_PATTERN.matcher(gitDiff).find()) {
+                // Check whether it is a diff returned by `git diff` and not one created by some other means
+                strippedDiff = "";
+            } else {
+                // It is a diff from another source (e.g., manually created or copy-pasted from GitHub)
+                strippedDiff = gitDiff;
+            }
+
+            String fullDiff = switch (diffEntry.getChangeType()) {
+                case ADD, DELETE -> {
+                    if (strippedDiff.isEmpty()) {
+                        // Addition or deletion of an empty file
+                        yield "";
+                    }
+                    // The first lines contains meta information "@@ ... " that we want to skip.
+                    final String[] hunkBeginAndRest = StringUtils.LINEBREAK_REGEX.split(strippedDiff, 2);
+                    Assert.assertTrue(hunkBeginAndRest.length == 2, "Hunk is only one line. Is it a hunk? Hunk: " + strippedDiff);
+                    yield hunkBeginAndRest[1];
+                }
+                case RENAME, COPY, MODIFY -> getFullDiff(
+                        new BufferedReader(new StringReader(patch.beforeFullFile())),
+                        new BufferedReader(new StringReader(strippedDiff))
+                );
+            };
+
+            // Iff a file does not end with a newline character, git adds a meta-line to the diff, which states
+            // the absence of the newline. If this is the case, we remove the meta-line, in order not to
+            // parse it as artifact line. If the meta-line does not exist, we add a newline, which adds an empty
+            // line to the end of the diff. Without this empty line, we would loose the information about the
+            // newline during the next parse step, which splits the text into lines and removes all newline
+            // characters.
+            // TODO: In future versions, we might want to track the newline more explicitly
+            final Matcher newlineMatcher = NO_NEWLINE_PATTERN.matcher(fullDiff);
+            if (newlineMatcher.find()) {
+                fullDiff = newlineMatcher.replaceAll("");
+            } else {
+                fullDiff += StringUtils.LINEBREAK;
+            }
+
+            final String parsedFullDiff = fullDiff;
+            final VariationDiff<DiffLinesLabel> variationDiff = VariationDiffParser.createVariationDiff(
+                    parsedFullDiff,
+                    parseOptions.variationDiffParseOptions()
+            );
+            if (cacheLookup != null) {
+                cacheLookup.store(variationDiff, () -> parsedFullDiff);
+            }
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.lines = (int) fullDiff.lines().count();
+                event.nodes = variationDiff.computeSize();
+                event.commit();
+            }
+
+            // not storing the full diff reduces memory usage by around 40-50%
+            final String diffToRemember = switch (parseOptions.diffStoragePolicy()) {
+                case DO_NOT_REMEMBER -> "";
+                case REMEMBER_DIFF -> gitDiff;
+                case REMEMBER_FULL_DIFF -> fullDiff;
+                case REMEMBER_STRIPPED_DIFF -> strippedDiff;
+            };
+
+            return Result.Success(new PatchDiff.Parsed(diffToRemember, variationDiff));
+        } catch (DiffParseException e) {
+            StringBuilder logMessage = new StringBuilder();
+            logMessage
+                    .append("parse exception for commit ")
+                    .append(commitHash)
+                    .append(" in line ")
+                    .append(e.getLineNumber())
+                    .append(" of patch ")
+                    .append(diffEntry.getOldPath())
+                    .append(" -> ")
+                    .append(diffEntry.getNewPath())
+                    .append("\n");
+            logMessage
+                    .append(e)
+                    .append("\n");
+            if (e.getMessage() != null) {
+                logMessage
+                        .append("error message: ")
+                        .append(e.getMessage())
+                        .append("\n");
+            }
+            if (e.getCause() != null) {
+                logMessage
+                        .append("cause: ")
+                        .append(e.getCause());
+            }
+            Logger.debug(logMessage);
+            return Result.Failure(e.getError());
+        }
+    }
+
     /**
      * Creates a full git diff from a file before the change and the git diff containing only the
      * changed lines.
@@ -456,6 +1264,20 @@ public class GitDiffer {
         }
     }
 
+    /**
+     * Gets the full content of the file changed by {@code diffEntry} before {@code commit}.
+     * The blob is opened directly by its id in {@code diffEntry} instead of searching the tree of
+     * {@code commit} for the file.
+     */
+    private static BufferedReader getBeforeFullFile(Session session, Git git, RevCommit commit, DiffEntry diffEntry) throws IOException {
+        final AbbreviatedObjectId oldId = diffEntry.getOldId();
+        if (oldId == null || !oldId.isComplete()) {
+            return getBeforeFullFile(git, commit, diffEntry.getOldPath());
+        }
+
+        return new BufferedReader(new InputStreamReader(session.reader.open(oldId.toObjectId(), Constants.OBJ_BLOB).openStream()));
+    }
+
     /**
      * Gets the full content of a file before a commit.
      *
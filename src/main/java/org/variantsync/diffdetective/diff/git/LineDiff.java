@@ -0,0 +1,274 @@
+package org.variantsync.diffdetective.diff.git;
+
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.errors.BinaryBlobException;
+import org.eclipse.jgit.lib.AbbreviatedObjectId;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.pack.PackConfig;
+import org.eclipse.jgit.util.RawParseUtils;
+import org.variantsync.diffdetective.variation.diff.DiffType;
+import org.variantsync.diffdetective.variation.diff.parse.VariationDiffParser.DiffLine;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The line based changes of a single file as computed by JGit.
+ * In contrast to the output of {@code git diff}, a {@code LineDiff} keeps the full content of the
+ * file before and after the change. Hence, the full diff of the file can be obtained by
+ * {@link #fullDiff iterating} over the edits without formatting and parsing any diff text.
+ *
+ * @param before the content of the file before the change
+ * @param after the content of the file after the change
+ * @param edits the changed regions between {@code before} and {@code after}
+ * @see GitDiffer#parseCommitDiff(LoadedCommitDiff, org.variantsync.diffdetective.datasets.PatchDiffParseOptions)
+ */
+public record LineDiff(RawText before, RawText after, EditList edits) {
+    /**
+     * Files larger than this number of bytes are considered binary, just as in
+     * {@link org.eclipse.jgit.diff.DiffFormatter}.
+     */
+    private static final int BINARY_FILE_THRESHOLD = PackConfig.DEFAULT_BIG_FILE_THRESHOLD;
+
+    /**
+     * Returns the diff algorithm configured for {@code repository}, which is also used by
+     * {@link org.eclipse.jgit.diff.DiffFormatter}.
+     */
+    public static DiffAlgorithm getDiffAlgorithm(final Repository repository) {
+        return DiffAlgorithm.getAlgorithm(repository.getConfig().getEnum(
+                ConfigConstants.CONFIG_DIFF_SECTION,
+                null,
+                ConfigConstants.CONFIG_KEY_ALGORITHM,
+                DiffAlgorithm.SupportedAlgorithm.HISTOGRAM
+        ));
+    }
+
+    /**
+     * Loads the content of both sides of {@code diffEntry} and computes their edits.
+     * Returns {@code null} if the change can't be represented as a line diff that results in the
+     * same full diff as the output of {@code git diff}. This is the case for submodules, binary
+     * files and files containing carriage returns which don't end a line.
+     *
+     * @param reader the reader used to load the contents of the file
+     * @param algorithm the algorithm computing the edits
+     * @param diffEntry the change of a file reported by JGit
+     * @return the line diff of {@code diffEntry} or {@code null}
+     * @throws IOException if the contents of the file can't be loaded
+     */
+    public static LineDiff load(
+            final ObjectReader reader,
+            final DiffAlgorithm algorithm,
+            final DiffEntry diffEntry
+    ) throws IOException {
+        if (diffEntry.getOldMode() == FileMode.GITLINK || diffEntry.getNewMode() == FileMode.GITLINK) {
+            return null;
+        }
+
+        final RawText before;
+        final RawText after;
+        try {
+            before = load(reader, diffEntry, DiffEntry.Side.OLD);
+            after = load(reader, diffEntry, DiffEntry.Side.NEW);
+        } catch (BinaryBlobException e) {
+            return null;
+        }
+
+        if (before == null || after == null || hasLoneCarriageReturn(before) || hasLoneCarriageReturn(after)) {
+            return null;
+        }
+
+        return new LineDiff(before, after, algorithm.diff(RawTextComparator.DEFAULT, before, after));
+    }
+
+    private static RawText load(
+            final ObjectReader reader,
+            final DiffEntry diffEntry,
+            final DiffEntry.Side side
+    ) throws IOException, BinaryBlobException {
+        final FileMode mode = diffEntry.getMode(side);
+        if (mode == FileMode.MISSING || mode.getObjectType() != Constants.OBJ_BLOB) {
+            return RawText.EMPTY_TEXT;
+        }
+
+        final AbbreviatedObjectId id = diffEntry.getId(side);
+        if (id == null || !id.isComplete()) {
+            return null;
+        }
+
+        return RawText.load(reader.open(id.toObjectId(), Constants.OBJ_BLOB), BINARY_FILE_THRESHOLD);
+    }
+
+    /**
+     * {@link java.io.BufferedReader} treats a single carriage return as a line break but JGit
+     * doesn't. Such files are parsed from their textual diff to preserve the previous line
+     * splitting.
+     */
+    private static boolean hasLoneCarriageReturn(final RawText text) {
+        final byte[] content = text.getRawContent();
+        for (int i = 0; i < content.length; ++i) {
+            if (content[i] == '\r' && (i + 1 == content.length || content[i + 1] != '\n')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of lines returned by {@link #fullDiff} for the same change type.
+     */
+    public int getFullDiffLineCount(final DiffEntry.ChangeType changeType) {
+        int lines = before.size();
+        for (final Edit edit : edits) {
+            lines += edit.getLengthB();
+        }
+        return hasTrailingEmptyLine(changeType, lines) ? lines + 1 : lines;
+    }
+
+    /**
+     * Returns the lines of the full diff, that is, all lines of {@link #before} and {@link #after}
+     * in the order of the files with a diff type describing whether the line was removed, added or
+     * is unchanged. Lines don't contain line delimiters.
+     * <p>
+     * The lines are exactly the lines parsed from the textual full diff, which is created from the
+     * output of {@code git diff} when {@link GitDiffer} remembers diffs. This includes its quirks:
+     * Byte order marks are only removed from modified, renamed and copied files (see
+     * {@link GitDiffer#getFullDiff}) and the full diff may end with an additional empty line.
+     *
+     * @param changeType the type of the change described by this line diff
+     */
+    public Iterator<DiffLine> fullDiff(final DiffEntry.ChangeType changeType) {
+        return new FullDiffIterator(changeType);
+    }
+
+    /**
+     * Whether the textual full diff of a change ends with an empty line. Added and deleted files
+     * are parsed including the line break of their last line. Other diffs are reassembled without
+     * line breaks at the end so only empty diffs consist of an empty line.
+     *
+     * @param lines the number of lines of the full diff without the trailing empty line
+     */
+    private boolean hasTrailingEmptyLine(final DiffEntry.ChangeType changeType, final int lines) {
+        return switch (changeType) {
+            case ADD, DELETE -> {
+                final byte[] content = (changeType == DiffEntry.ChangeType.ADD ? after : before).getRawContent();
+                yield content.length == 0 || content[content.length - 1] == '\n';
+            }
+            case RENAME, COPY, MODIFY -> lines == 0;
+        };
+    }
+
+    private final class FullDiffIterator implements Iterator<DiffLine> {
+        private final DiffEntry.ChangeType changeType;
+        private final boolean removeBOMs;
+        private int editIndex = 0;
+        /** Index of the next line in {@link #before}. */
+        private int beforeLine = 0;
+        /** Index of the next line in {@link #after}. */
+        private int afterLine = 0;
+        /** Offset of the next line in the content of {@link #before}. */
+        private int beforeOffset = 0;
+        /** Offset of the next line in the content of {@link #after}. */
+        private int afterOffset = 0;
+        private int lines = 0;
+        private boolean isFinished = false;
+        private DiffLine next;
+
+        private FullDiffIterator(final DiffEntry.ChangeType changeType) {
+            this.changeType = changeType;
+            this.removeBOMs = switch (changeType) {
+                case ADD, DELETE -> false;
+                case RENAME, COPY, MODIFY -> true;
+            };
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = computeNext();
+            }
+            return next != null;
+        }
+
+        @Override
+        public DiffLine next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            final DiffLine result = next;
+            next = null;
+            ++lines;
+            return result;
+        }
+
+        private DiffLine computeNext() {
+            while (editIndex < edits.size()) {
+                final Edit edit = edits.get(editIndex);
+                if (beforeLine < edit.getBeginA()) {
+                    afterOffset = RawParseUtils.nextLF(after.getRawContent(), afterOffset);
+                    ++afterLine;
+                    return nextBeforeLine(DiffType.NON);
+                } else if (beforeLine < edit.getEndA()) {
+                    return nextBeforeLine(DiffType.REM);
+                } else if (afterLine < edit.getEndB()) {
+                    final byte[] content = after.getRawContent();
+                    final int end = RawParseUtils.nextLF(content, afterOffset);
+                    final DiffLine line = toDiffLine(DiffType.ADD, content, afterOffset, end);
+                    afterOffset = end;
+                    ++afterLine;
+                    return line;
+                }
+
+                ++editIndex;
+            }
+
+            if (beforeLine < before.size()) {
+                return nextBeforeLine(DiffType.NON);
+            }
+
+            if (!isFinished) {
+                isFinished = true;
+                if (hasTrailingEmptyLine(changeType, lines)) {
+                    return new DiffLine(DiffType.NON, "");
+                }
+            }
+
+            return null;
+        }
+
+        private DiffLine nextBeforeLine(final DiffType diffType) {
+            final byte[] content = before.getRawContent();
+            final int end = RawParseUtils.nextLF(content, beforeOffset);
+            final DiffLine line = toDiffLine(diffType, content, beforeOffset, end);
+            beforeOffset = end;
+            ++beforeLine;
+            return line;
+        }
+
+        private DiffLine toDiffLine(final DiffType diffType, final byte[] content, final int begin, int end) {
+            if (end > begin && content[end - 1] == '\n') {
+                --end;
+            }
+            if (end > begin && content[end - 1] == '\r') {
+                --end;
+            }
+
+            String line = new String(content, begin, end - begin, StandardCharsets.UTF_8);
+            if (removeBOMs) {
+                line = line.replace("\uFEFF", "");
+            }
+            return new DiffLine(diffType, line);
+        }
+    }
+}
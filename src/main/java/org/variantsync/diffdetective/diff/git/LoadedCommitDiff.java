@@ -0,0 +1,78 @@
+package org.variantsync.diffdetective.diff.git;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.variantsync.diffdetective.datasets.PatchDiffParseOptions.RenameDetection;
+import org.variantsync.diffdetective.diff.result.DiffError;
+
+import java.util.List;
+
+/**
+ * The raw data required to create a {@link CommitDiff} as it is loaded from a git repository.
+ * Obtaining a {@code LoadedCommitDiff} is IO bound whereas the parsing into a {@link CommitDiff}
+ * is CPU bound. Hence, the two steps can be performed by different threads.
+ *
+ * @param parentCommit The parent commit of the diff or {@code null} if {@code childCommit} is a
+ *                     root commit.
+ * @param childCommit The commit whose changes are described.
+ * @param patches The changed files which passed the {@link DiffFilter} in the order reported by
+ *                JGit.
+ * @param errors Errors that occurred while loading some patches. These patches are missing in
+ *               {@code patches}.
+ * @param renameDetection How renamed files were detected among the changed files.
+ * @see GitDiffer#loadCommitDiff
+ * @see GitDiffer#parseCommitDiff
+ */
+public record LoadedCommitDiff(
+        RevCommit parentCommit,
+        RevCommit childCommit,
+        List<Patch> patches,
+        List<DiffError> errors,
+        RenameDetection.Outcome renameDetection
+) {
+    /**
+     * A single changed file. It is either loaded as the textual output of {@code git diff}
+     * together with the file before the change, or as a {@link LineDiff}. In the former case,
+     * {@code lineDiff} is {@code null} and in the latter case, {@code gitDiff} and {@code
+     * beforeFullFile} are {@code null}. If the variation diff of the file was found in a
+     * {@link VariationDiffCache}, nothing is loaded and all three are {@code null}.
+     *
+     * @param diffEntry The change as reported by JGit.
+     * @param gitDiff The output of {@code git diff} for {@code diffEntry}.
+     * @param beforeFullFile The full content of the file before the change. Only present for
+     *                       {@link DiffEntry.ChangeType#MODIFY modified}, {@link
+     *                       DiffEntry.ChangeType#RENAME renamed} and {@link DiffEntry.ChangeType#COPY
+     *                       copied} files and {@code null} otherwise.
+     * @param lineDiff The contents of the file before and after the change and their edits.
+     * @param cacheLookup The result of looking up the variation diff of the file in a cache or
+     *                    {@code null} if no cache is used.
+     */
+    public record Patch(
+            DiffEntry diffEntry,
+            String gitDiff,
+            String beforeFullFile,
+            LineDiff lineDiff,
+            VariationDiffCache.Lookup cacheLookup
+    ) {
+        /**
+         * Creates a patch loaded as the textual output of {@code git diff}.
+         */
+        public Patch(DiffEntry diffEntry, String gitDiff, String beforeFullFile) {
+            this(diffEntry, gitDiff, beforeFullFile, null, null);
+        }
+
+        /**
+         * Creates a patch loaded as a {@link LineDiff}.
+         */
+        public Patch(DiffEntry diffEntry, LineDiff lineDiff) {
+            this(diffEntry, null, null, lineDiff, null);
+        }
+
+        /**
+         * Creates a patch whose variation diff was found in a cache.
+         */
+        public Patch(DiffEntry diffEntry, VariationDiffCache.Lookup cacheHit) {
+            this(diffEntry, null, null, null, cacheHit);
+        }
+    }
+}
@@ -2,20 +2,42 @@ package org.variantsync.diffdetective.diff.git;
 
 import org.apache.commons.io.FilenameUtils;
 import org.eclipse.jgit.diff.DiffEntry;
+import org.variantsync.diffdetective.diff.result.DiffError;
 import org.variantsync.diffdetective.variation.DiffLinesLabel;
 import org.variantsync.diffdetective.variation.diff.Time;
 import org.variantsync.diffdetective.variation.diff.VariationDiff;
+import org.variantsync.functjonal.Result;
+
+import java.util.Optional;
+import java.util.function.Supplier;
 
 /**
  * Data class containing information about a single patch (i.e., the differences in a single file).
  *
- * Contains a VariationDiff of the patch.
+ * Contains a VariationDiff of the patch. The VariationDiff is either given on construction or
+ * parsed lazily on first access. Lazy parsing is thread safe.
  *
  * @author Sören Viegener, Paul Bittner
  */
 public class PatchDiff implements GitPatch {
-    private final String fullDiff;
-    private final VariationDiff<DiffLinesLabel> variationDiff;
+    /**
+     * The result of parsing a patch.
+     *
+     * @param fullDiff the diff of the patch as text which should be remembered, might be empty
+     * @param variationDiff the {@link VariationDiff} that describes the patch
+     */
+    public record Parsed(String fullDiff, VariationDiff<DiffLinesLabel> variationDiff) {}
+
+    /**
+     * Parses the patch on first access or {@code null} if the patch was already parsed.
+     * Dropped after parsing so the loaded data of the patch can be garbage collected.
+     */
+    private volatile Supplier<Result<Parsed, DiffError>> parser;
+    private String fullDiff;
+    private VariationDiff<DiffLinesLabel> variationDiff;
+    private DiffError parseError;
+    private boolean mayEditVariability = true;
+    private int changedLines = -1;
 
     /**
      * The commit the patch belongs to.
@@ -56,6 +78,51 @@ public class PatchDiff implements GitPatch {
         }
     }
 
+    /**
+     * Creates a new PatchDiff whose {@link VariationDiff} is parsed on first access.
+     * Runtime exceptions thrown by {@code parser}, for example when a
+     * {@link org.variantsync.diffdetective.util.Deadline deadline} is exceeded, are propagated to
+     * the accessor and the parsing is retried on the next access.
+     *
+     * @param commitDiff The changes of a commit this patch belongs to.
+     * @param diffEntry The diff entry from jgit from which this PatchDiff was produced.
+     * @param parser Parses the patch or returns the reason why it can't be parsed. Called at most
+     *               once successfully.
+     * @see #getParseError()
+     */
+    public PatchDiff(CommitDiff commitDiff, DiffEntry diffEntry, Supplier<Result<Parsed, DiffError>> parser) {
+        this(commitDiff, diffEntry, null, null);
+        this.parser = parser;
+    }
+
+    /**
+     * Parses this patch if it was created lazily and not parsed yet.
+     */
+    private void parse() {
+        if (parser == null) {
+            return;
+        }
+
+        synchronized (this) {
+            if (parser == null) {
+                return;
+            }
+
+            parser.get().match(
+                    parsed -> {
+                        fullDiff = parsed.fullDiff();
+                        variationDiff = parsed.variationDiff();
+                        variationDiff.setSource(this);
+                    },
+                    error -> {
+                        fullDiff = "";
+                        parseError = error;
+                    }
+            );
+            parser = null;
+        }
+    }
+
     /**
      * Returns the corresponding CommitDiff, which this patch is part of.
      */
@@ -96,22 +163,78 @@ public class PatchDiff implements GitPatch {
 
     @Override
     public String getDiff() {
+        parse();
         return fullDiff;
     }
 
     /**
-     * Returns the VariationDiff for this patch.
+     * Returns the VariationDiff for this patch or {@code null} if it couldn't be parsed.
+     * Parses the patch if it was created lazily.
      */
     public VariationDiff<DiffLinesLabel> getVariationDiff() {
+        parse();
         return variationDiff;
     }
 
     /**
      * Returns whether this PatchDiff is a valid patch.
      * A patch is valid if it has a VariationDiff.
+     * Parses the patch if it was created lazily.
      */
     public boolean isValid() {
-        return variationDiff != null;
+        return getVariationDiff() != null;
+    }
+
+    /**
+     * Returns the reason why the lazily parsed VariationDiff of this patch couldn't be parsed.
+     * Parses the patch if it was created lazily.
+     *
+     * @return the parse error or nothing if the patch is valid or was not created lazily
+     */
+    public Optional<DiffError> getParseError() {
+        parse();
+        return Optional.ofNullable(parseError);
+    }
+
+    /**
+     * Returns whether this patch may add or remove annotations. If {@code false}, all annotations
+     * of the VariationDiff are unchanged, which is known without parsing the patch.
+     *
+     * @see VariabilityPrescan
+     */
+    public boolean mayEditVariability() {
+        return mayEditVariability;
+    }
+
+    /**
+     * Records the result of a {@link VariabilityPrescan} of this patch.
+     */
+    void setMayEditVariability(boolean mayEditVariability) {
+        this.mayEditVariability = mayEditVariability;
+    }
+
+    /**
+     * Returns the number of added and removed lines of this patch or {@code -1} if this patch was
+     * not scanned by a {@link VariabilityPrescan}.
+     *
+     * @see VariabilityPrescan#countChangedLines
+     */
+    public int getNumberOfChangedLines() {
+        return changedLines;
+    }
+
+    /**
+     * Records the number of added and removed lines counted by a {@link VariabilityPrescan}.
+     */
+    void setNumberOfChangedLines(int changedLines) {
+        this.changedLines = changedLines;
+    }
+
+    /**
+     * Returns whether the VariationDiff of this patch is available without parsing.
+     */
+    public boolean isParsed() {
+        return parser == null;
     }
 
     @Override
@@ -0,0 +1,271 @@
+package org.variantsync.diffdetective.diff.git;
+
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.RawText;
+import org.variantsync.diffdetective.variation.diff.Time;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fast scan of the changed lines of a {@link LineDiff} which detects patches that can't edit
+ * variability. Such patches are rejected by
+ * {@link org.variantsync.diffdetective.variation.diff.filter.VariationDiffFilter#hasAtLeastOneEditToVariability}
+ * but parsing and transforming them dominates the runtime of analyses like
+ * {@link org.variantsync.diffdetective.mining.VariationDiffMiner}.
+ *
+ * <p>The scan works on the raw bytes of the files without decoding them. A patch may edit
+ * variability if one of its changed lines may be part of a conditional preprocessor macro, that
+ * is, if it starts with {@code #}, is part of a line continuation or is part of a multi-line
+ * comment, which the parser also joins into one logical line. Otherwise, all added and removed
+ * lines are parsed as artifacts and all annotations are unchanged. The scan is conservative: It
+ * never misses a patch editing variability but may report patches which only change other
+ * preprocessor directives, like {@code #define}, or comments.
+ *
+ * <p>This class is thread safe.
+ *
+ * @see GitDiffer#setVariabilityPrescan
+ * @see PatchDiff#mayEditVariability()
+ */
+public class VariabilityPrescan {
+    private final AtomicLong scannedPatches = new AtomicLong();
+    private final AtomicLong patchesWithoutVariabilityEdits = new AtomicLong();
+
+    /**
+     * Returns whether the variation diff parsed from {@code lineDiff} may contain an added or
+     * removed annotation. If {@code false} is returned, all annotations of the variation diff are
+     * unchanged, independently of the used
+     * {@link org.variantsync.diffdetective.variation.diff.parse.VariationDiffParseOptions}.
+     */
+    public boolean mayEditVariability(final LineDiff lineDiff) {
+        scannedPatches.incrementAndGet();
+        if (mayEditVariability(lineDiff.before(), lineDiff.edits(), Time.BEFORE)
+                || mayEditVariability(lineDiff.after(), lineDiff.edits(), Time.AFTER)) {
+            return true;
+        }
+
+        patchesWithoutVariabilityEdits.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Returns the number of lines removed from and added to the file by {@code lineDiff}.
+     * If {@link #mayEditVariability} returns {@code false}, each of these lines is parsed as an
+     * artifact of its own, unless the
+     * {@link org.variantsync.diffdetective.variation.diff.parse.VariationDiffParseOptions}
+     * collapse multiple lines or ignore empty lines.
+     */
+    public static int countChangedLines(final LineDiff lineDiff) {
+        int changedLines = 0;
+        for (final Edit edit : lineDiff.edits()) {
+            changedLines += edit.getLengthA() + edit.getLengthB();
+        }
+        return changedLines;
+    }
+
+    /**
+     * Returns whether the lines of {@code text} changed by {@code edits} may belong to a
+     * conditional macro or change the logical lines of unchanged lines.
+     *
+     * @param time whether {@code text} is the file before or after the edits
+     */
+    private static boolean mayEditVariability(final RawText text, final EditList edits, final Time time) {
+        // Whether the last line with comment markers before the next line may leave a comment open.
+        boolean inComment = false;
+        int nextLine = 0;
+
+        for (final Edit edit : edits) {
+            final int begin = time == Time.BEFORE ? edit.getBeginA() : edit.getBeginB();
+            final int end = time == Time.BEFORE ? edit.getEndA() : edit.getEndB();
+            if (begin == end) {
+                continue;
+            }
+
+            // The first changed line might be part of a multi-line comment of an unchanged line.
+            for (; nextLine < begin; ++nextLine) {
+                inComment = mayBeInComment(text.getRawString(nextLine), inComment);
+            }
+            if (inComment) {
+                return true;
+            }
+
+            // The first changed line might continue an unchanged line. Empty lines might be ignored
+            // by the parser, so they don't end a line continuation.
+            int previous = begin - 1;
+            while (previous >= 0 && isBlank(text.getRawString(previous))) {
+                --previous;
+            }
+            if (previous >= 0 && isContinued(text.getRawString(previous))) {
+                return true;
+            }
+
+            for (int i = begin; i < end; ++i) {
+                final ByteBuffer line = text.getRawString(i);
+                if (mayBeMacro(line) || isContinued(line) || hasCommentMarker(line)) {
+                    return true;
+                }
+            }
+
+            // The changed lines have no comment markers, so they don't change inComment.
+            nextLine = end;
+        }
+
+        return false;
+    }
+
+    /**
+     * Whether {@code line} may match the macro pattern of the
+     * {@link org.variantsync.diffdetective.variation.diff.parse.VariationDiffParser} once byte
+     * order marks are removed.
+     */
+    private static boolean mayBeMacro(final ByteBuffer line) {
+        final byte[] content = line.array();
+        for (int i = line.position(); i < line.limit(); ++i) {
+            final byte b = content[i];
+            if (b == '#') {
+                return true;
+            }
+            if (b != '+' && b != '-' && !isWhitespace(b) && !isNonAscii(b)) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether {@code line} may end with a backslash once its carriage return and byte order marks
+     * are removed.
+     */
+    private static boolean isContinued(final ByteBuffer line) {
+        final byte[] content = line.array();
+        for (int i = line.limit() - 1; i >= line.position(); --i) {
+            final byte b = content[i];
+            if (b == '\\') {
+                return true;
+            }
+            if (b != '\r' && !isNonAscii(b)) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether a multi-line comment may be open after {@code line}. Just like the
+     * {@link org.variantsync.diffdetective.variation.diff.parse.VariationDiffParser}, only the
+     * last comment markers of a line are considered. Non-ASCII characters might be byte order
+     * marks, which are removed before parsing and may thus separate the characters of a marker.
+     *
+     * @param inComment whether a multi-line comment may be open before {@code line}
+     */
+    private static boolean mayBeInComment(final ByteBuffer line, final boolean inComment) {
+        final byte[] content = line.array();
+        int lastOpen = -1;
+        int lastClose = -1;
+        boolean hasNonAscii = false;
+        byte previous = 0;
+        for (int i = line.position(); i < line.limit(); ++i) {
+            final byte b = content[i];
+            if (isNonAscii(b)) {
+                hasNonAscii = true;
+                continue;
+            }
+
+            if (previous == '/' && b == '*') {
+                lastOpen = i;
+            } else if (previous == '*' && b == '/') {
+                lastClose = i;
+            }
+            previous = b;
+        }
+
+        if (lastOpen == -1 && lastClose == -1) {
+            return inComment;
+        }
+        return hasNonAscii || lastOpen > lastClose;
+    }
+
+    /**
+     * Whether {@code line} may contain the start or end of a multi-line comment.
+     */
+    private static boolean hasCommentMarker(final ByteBuffer line) {
+        final byte[] content = line.array();
+        byte previous = 0;
+        for (int i = line.position(); i < line.limit(); ++i) {
+            final byte b = content[i];
+            if (isNonAscii(b)) {
+                continue;
+            }
+
+            if ((previous == '/' && b == '*') || (previous == '*' && b == '/')) {
+                return true;
+            }
+            previous = b;
+        }
+        return false;
+    }
+
+    /**
+     * Whether {@code line} may be {@link String#isBlank blank}. Non-ASCII characters might be
+     * whitespace.
+     */
+    private static boolean isBlank(final ByteBuffer line) {
+        final byte[] content = line.array();
+        for (int i = line.position(); i < line.limit(); ++i) {
+            final byte b = content[i];
+            if (!isWhitespace(b) && !(b >= 0x1C && b <= 0x1F) && !isNonAscii(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether {@code b} is an ASCII whitespace character as matched by {@code \s} in a
+     * {@link java.util.regex.Pattern}.
+     */
+    private static boolean isWhitespace(final byte b) {
+        return b == ' ' || (b >= '\t' && b <= '\r');
+    }
+
+    /**
+     * Whether {@code b} is part of a multi-byte character in UTF-8.
+     */
+    private static boolean isNonAscii(final byte b) {
+        return b < 0;
+    }
+
+    /**
+     * Returns the number of patches scanned by {@link #mayEditVariability}.
+     */
+    public long getScannedPatches() {
+        return scannedPatches.get();
+    }
+
+    /**
+     * Returns the number of scanned patches which can't edit variability.
+     */
+    public long getPatchesWithoutVariabilityEdits() {
+        return patchesWithoutVariabilityEdits.get();
+    }
+
+    /**
+     * Returns the fraction of scanned patches which can't edit variability and thus don't need to
+     * be analyzed by analyses interested in edits to variability.
+     */
+    public double getHitRate() {
+        final long scanned = getScannedPatches();
+        return scanned == 0 ? 0 : (double) getPatchesWithoutVariabilityEdits() / scanned;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%d of %d scanned patches without edits to variability (hit rate %.1f%%)",
+                getPatchesWithoutVariabilityEdits(),
+                getScannedPatches(),
+                100 * getHitRate()
+        );
+    }
+}
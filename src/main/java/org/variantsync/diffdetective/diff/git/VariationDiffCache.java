@@ -0,0 +1,317 @@
+package org.variantsync.diffdetective.diff.git;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.AbbreviatedObjectId;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.tinylog.Logger;
+import org.variantsync.diffdetective.diff.result.DiffParseException;
+import org.variantsync.diffdetective.util.StringUtils;
+import org.variantsync.diffdetective.variation.DiffLinesLabel;
+import org.variantsync.diffdetective.variation.diff.VariationDiff;
+import org.variantsync.diffdetective.variation.diff.parse.VariationDiffParseOptions;
+import org.variantsync.diffdetective.variation.diff.parse.VariationDiffParser;
+import org.variantsync.diffdetective.variation.diff.parse.VariationDiffParser.DiffLine;
+import org.variantsync.diffdetective.variation.diff.source.VariationDiffSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A cache of parsed {@link VariationDiff}s addressed by the content of a changed file.
+ * The full diff of a file only depends on the blobs before and after the change. Histories with
+ * cherry-picks, reverts and backports contain the same pair of blobs many times. A cache hit skips
+ * loading the blobs and computing their diff and, for hits in memory, also the parsing.
+ *
+ * <p>Parsed variation diffs are kept in memory and evicted in least recently used order.
+ * Optionally, the full diff of each parsed patch is additionally stored compressed in a directory.
+ * These diffs survive their eviction from memory and the current run but have to be parsed again
+ * on a hit.
+ *
+ * <p>Variation diffs are mutable, so the cache only hands out copies.
+ * This class is thread safe.
+ *
+ * @see GitDiffer#setVariationDiffCache
+ */
+public class VariationDiffCache {
+    /**
+     * Identifies a parsed variation diff.
+     *
+     * @param oldId the blob of the file before the change or {@link ObjectId#zeroId()} if the
+     * file was added
+     * @param newId the blob of the file after the change or {@link ObjectId#zeroId()} if the
+     * file was deleted
+     * @param options the options used for parsing the full diff of both blobs
+     */
+    public record Key(ObjectId oldId, ObjectId newId, VariationDiffParseOptions options) {
+        /**
+         * Returns the key of the variation diff of {@code diffEntry} or {@code null} if the change
+         * can't be identified by its blobs, for example, if the ids are abbreviated.
+         */
+        public static Key of(final DiffEntry diffEntry, final VariationDiffParseOptions options) {
+            final AbbreviatedObjectId oldId = diffEntry.getOldId();
+            final AbbreviatedObjectId newId = diffEntry.getNewId();
+            if (diffEntry.getOldMode() == FileMode.GITLINK || diffEntry.getNewMode() == FileMode.GITLINK
+                    || oldId == null || !oldId.isComplete() || newId == null || !newId.isComplete()) {
+                return null;
+            }
+
+            return new Key(oldId.toObjectId(), newId.toObjectId(), options);
+        }
+    }
+
+    /**
+     * The result of looking up a variation diff while loading a commit. Restoring the variation
+     * diff or storing it after parsing is left to the parsing of the commit.
+     */
+    public static final class Lookup {
+        private final VariationDiffCache cache;
+        private final Key key;
+        private final VariationDiff<DiffLinesLabel> variationDiff;
+        private final String fullDiff;
+
+        private Lookup(
+                final VariationDiffCache cache,
+                final Key key,
+                final VariationDiff<DiffLinesLabel> variationDiff,
+                final String fullDiff
+        ) {
+            this.cache = cache;
+            this.key = key;
+            this.variationDiff = variationDiff;
+            this.fullDiff = fullDiff;
+        }
+
+        /**
+         * Returns the key which was looked up.
+         */
+        public Key getKey() {
+            return key;
+        }
+
+        /**
+         * Returns whether the variation diff was found in memory or on disk.
+         */
+        public boolean isHit() {
+            return variationDiff != null || fullDiff != null;
+        }
+
+        /**
+         * Returns a new copy of the cached variation diff.
+         * If the hit was on disk, the stored full diff is parsed and kept in memory.
+         *
+         * @throws DiffParseException if the full diff stored on disk can't be parsed
+         * @throws IllegalStateException if this lookup is not a {@link #isHit hit}
+         */
+        public VariationDiff<DiffLinesLabel> restore() throws DiffParseException {
+            if (variationDiff != null) {
+                return copy(variationDiff);
+            }
+            if (fullDiff == null) {
+                throw new IllegalStateException("Cannot restore a variation diff that was not found in the cache");
+            }
+
+            final VariationDiff<DiffLinesLabel> parsed = VariationDiffParser.createVariationDiff(fullDiff, key.options());
+            cache.remember(key, parsed);
+            return parsed;
+        }
+
+        /**
+         * Adds the variation diff which was missing to the cache.
+         *
+         * @see VariationDiffCache#put
+         */
+        public void store(final VariationDiff<DiffLinesLabel> variationDiff, final Supplier<String> fullDiff) {
+            cache.put(key, variationDiff, fullDiff);
+        }
+    }
+
+    private static final String FILE_EXTENSION = ".diff.gz";
+
+    private final int capacity;
+    private final Path directory;
+    private final LinkedHashMap<Key, VariationDiff<DiffLinesLabel>> memory;
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param capacity the maximal number of variation diffs kept in memory
+     * @param directory the directory in which full diffs are stored or {@code null} to keep
+     * variation diffs only in memory
+     */
+    public VariationDiffCache(final int capacity, final Path directory) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity of the cache must be positive but was " + capacity);
+        }
+
+        this.capacity = capacity;
+        this.directory = directory;
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, VariationDiff<DiffLinesLabel>> eldest) {
+                return size() > VariationDiffCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Looks up the variation diff identified by {@code key}, first in memory and then on disk.
+     *
+     * @return the cached variation diff or a {@link Lookup#isHit miss}
+     */
+    public Lookup lookup(final Key key) {
+        final VariationDiff<DiffLinesLabel> variationDiff;
+        synchronized (memory) {
+            variationDiff = memory.get(key);
+        }
+        if (variationDiff != null) {
+            memoryHits.incrementAndGet();
+            return new Lookup(this, key, variationDiff, null);
+        }
+
+        if (directory != null) {
+            final Path file = getFile(key);
+            if (Files.exists(file)) {
+                try (InputStream input = new GZIPInputStream(Files.newInputStream(file))) {
+                    final String fullDiff = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+                    diskHits.incrementAndGet();
+                    return new Lookup(this, key, null, fullDiff);
+                } catch (IOException e) {
+                    Logger.warn(e, "Could not read the cached diff {}", file);
+                }
+            }
+        }
+
+        misses.incrementAndGet();
+        return new Lookup(this, key, null, null);
+    }
+
+    /**
+     * Adds a freshly parsed variation diff to the cache. {@code variationDiff} is copied so the
+     * caller may continue to use and modify it.
+     *
+     * @param key the key of {@code variationDiff}
+     * @param variationDiff the variation diff parsed from {@code fullDiff}
+     * @param fullDiff the full diff from which {@code variationDiff} was parsed, only requested
+     * if the diff has to be stored on disk
+     */
+    public void put(final Key key, final VariationDiff<DiffLinesLabel> variationDiff, final Supplier<String> fullDiff) {
+        remember(key, variationDiff);
+
+        if (directory != null) {
+            final Path file = getFile(key);
+            if (Files.exists(file)) {
+                return;
+            }
+
+            try {
+                Files.createDirectories(directory);
+                final Path temporaryFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+                try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(temporaryFile))) {
+                    output.write(fullDiff.get().getBytes(StandardCharsets.UTF_8));
+                }
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Logger.warn(e, "Could not store the diff {} in the cache", file);
+            }
+        }
+    }
+
+    private void remember(final Key key, final VariationDiff<DiffLinesLabel> variationDiff) {
+        final VariationDiff<DiffLinesLabel> copy = copy(variationDiff);
+        synchronized (memory) {
+            memory.put(key, copy);
+        }
+    }
+
+    /**
+     * The full diff is independent of the parse options so files are shared by all options.
+     */
+    private Path getFile(final Key key) {
+        return directory.resolve(key.oldId().name() + "_" + key.newId().name() + FILE_EXTENSION);
+    }
+
+    /**
+     * Copies {@code variationDiff} including the formulas of its nodes, which are mutable but not
+     * copied by {@link VariationDiff#deepCopy}. The source is dropped so cached variation diffs
+     * don't keep the commit diffs they were parsed for alive.
+     */
+    private static VariationDiff<DiffLinesLabel> copy(final VariationDiff<DiffLinesLabel> variationDiff) {
+        final VariationDiff<DiffLinesLabel> copy = variationDiff.deepCopy().forAll(node -> {
+            if (node.getFormula() != null) {
+                node.setFormula(node.getFormula().clone());
+            }
+        });
+        copy.setSource(VariationDiffSource.Unknown);
+        return copy;
+    }
+
+    /**
+     * Creates the textual full diff consisting of the given lines. Parsing the result yields the
+     * same variation diff as parsing {@code lines} directly.
+     */
+    public static String toFullDiff(final Iterator<DiffLine> lines) {
+        final StringBuilder fullDiff = new StringBuilder();
+        while (lines.hasNext()) {
+            final DiffLine line = lines.next();
+            fullDiff.append(line.diffType().symbol).append(line.content()).append(StringUtils.LINEBREAK);
+        }
+        return fullDiff.toString();
+    }
+
+    /**
+     * Returns the number of lookups which found a variation diff in memory.
+     */
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    /**
+     * Returns the number of lookups which found a full diff on disk.
+     */
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    /**
+     * Returns the number of lookups which didn't find anything.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the fraction of lookups which found a variation diff in memory or on disk.
+     */
+    public double getHitRate() {
+        final long hits = getMemoryHits() + getDiskHits();
+        final long lookups = hits + getMisses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%d memory hits, %d disk hits, %d misses (hit rate %.1f%%)",
+                getMemoryHits(),
+                getDiskHits(),
+                getMisses(),
+                100 * getHitRate()
+        );
+    }
+}
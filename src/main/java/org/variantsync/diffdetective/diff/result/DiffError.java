@@ -82,7 +82,13 @@ public enum DiffError {
     /**
      * A line with an unparseable formula.
      */
-    UNPARSEABLE_FORMULA("the extracted formula cannot be parsed");
+    UNPARSEABLE_FORMULA("the extracted formula cannot be parsed"),
+
+    /**
+     * Processing a commit or patch took longer than its time budget.
+     * @see org.variantsync.diffdetective.util.Deadline
+     */
+    TIMEOUT("processing exceeded the time budget");
 
     private final String message;
 
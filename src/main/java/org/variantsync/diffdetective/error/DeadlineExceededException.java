@@ -0,0 +1,13 @@
+package org.variantsync.diffdetective.error;
+
+import org.variantsync.diffdetective.util.Deadline;
+
+/**
+ * Runtime exception for cases in which a computation exceeded its time budget.
+ * @see Deadline#check
+ */
+public class DeadlineExceededException extends RuntimeException {
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
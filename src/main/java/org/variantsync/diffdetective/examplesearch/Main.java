@@ -60,11 +60,10 @@ public class Main {
                 ),
                 defaultOptions.getFilterForRepo(),
                 false,
-                false
+                false,
+                defaultOptions.executionOptions()
         );
 
-        AnalysisRunner.run(myOptions, (repo, repoOutputDir) ->
-                Analysis.forEachCommit(() -> findExamplesIn(repo, repoOutputDir))
-        );
+        AnalysisRunner.runForEachCommit(myOptions, Main::findExamplesIn);
     }
 }
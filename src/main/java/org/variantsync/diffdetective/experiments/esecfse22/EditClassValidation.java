@@ -103,12 +103,11 @@ public class EditClassValidation implements Analysis.Hooks {
                 },
                 defaultOptions.getFilterForRepo(),
                 true,
-                false
+                false,
+                defaultOptions.executionOptions()
         );
 
-        AnalysisRunner.run(validationOptions, (repo, repoOutputDir) ->
-            Analysis.forEachCommit(() -> AnalysisFactory.apply(repo, repoOutputDir))
-        );
+        AnalysisRunner.runForEachCommit(validationOptions, AnalysisFactory);
     }
 
     @Override
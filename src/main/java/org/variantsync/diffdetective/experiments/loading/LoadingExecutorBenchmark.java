@@ -0,0 +1,148 @@
+package org.variantsync.diffdetective.experiments.loading;
+
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+import org.tinylog.Logger;
+import org.variantsync.diffdetective.AnalysisRunner;
+import org.variantsync.diffdetective.analysis.Analysis;
+import org.variantsync.diffdetective.analysis.ExecutionOptions;
+import org.variantsync.diffdetective.analysis.ExecutionOptions.LoadingExecutor;
+import org.variantsync.diffdetective.analysis.StatisticsAnalysis;
+import org.variantsync.diffdetective.datasets.Repository;
+import org.variantsync.diffdetective.parallel.VirtualThreads;
+import org.variantsync.diffdetective.util.CSV;
+import org.variantsync.diffdetective.util.Clock;
+import org.variantsync.diffdetective.util.Diagnostics;
+import org.variantsync.diffdetective.util.IO;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Benchmark comparing the {@link LoadingExecutor executors} for loading git objects.
+ * Each repository is analyzed with a {@link StatisticsAnalysis} using
+ * <ul>
+ * <li>the sequential execution on a fixed thread pool (no pipeline),
+ * <li>a pipeline with fixed thread pools for loading and parsing and
+ * <li>a pipeline loading on virtual threads (only on Java {@value VirtualThreads#MINIMUM_JAVA_VERSION}
+ * or later).
+ * </ul>
+ * Before each run, the pack file cache of JGit is reset such that each run starts with a cold
+ * repository. Note that the page cache of the operating system can't be cleared from Java and
+ * should be dropped manually for the first run of each repository if required.
+ * The runtime of each run is written to {@link #RESULTS_FILE_NAME} in the output directory of the
+ * repository.
+ */
+public class LoadingExecutorBenchmark {
+    /**
+     * Number of times each configuration is run on each repository.
+     */
+    public static final int REPETITIONS = 3;
+    /**
+     * Name of the CSV file containing the measured runtimes.
+     */
+    public static final String RESULTS_FILE_NAME = "loadingbenchmark.csv";
+
+    /**
+     * The runtime of a single benchmark run.
+     *
+     * @param repository the name of the analyzed repository
+     * @param configuration the name of the benchmarked configuration
+     * @param repetition the index of this run among all runs of the same configuration
+     * @param runtimeInSeconds the wall clock time of the analysis
+     */
+    public record Measurement(String repository, String configuration, int repetition, double runtimeInSeconds) implements CSV {
+        @Override
+        public String toCSV(final String delimiter) {
+            return repository + delimiter + configuration + delimiter + repetition + delimiter + runtimeInSeconds;
+        }
+    }
+
+    /**
+     * Returns the benchmarked configurations by their name.
+     */
+    public static Map<String, ExecutionOptions> configurations() {
+        final int cores = Diagnostics.INSTANCE.run().getNumberOfAvailableProcessors();
+        final Map<String, ExecutionOptions> configurations = new LinkedHashMap<>();
+        configurations.put("sequential", ExecutionOptions.Default);
+        configurations.put("fixed pool", new ExecutionOptions.Builder()
+                .setLoadingThreads(cores)
+                .setParsingThreads(cores)
+                .build());
+        if (VirtualThreads.isAvailable()) {
+            configurations.put("virtual threads", new ExecutionOptions.Builder()
+                    .setLoadingExecutor(LoadingExecutor.VIRTUAL_THREADS)
+                    .build());
+        } else {
+            Logger.warn("Skipping the benchmark of virtual threads because they require Java {}",
+                    VirtualThreads.MINIMUM_JAVA_VERSION);
+        }
+        return configurations;
+    }
+
+    /**
+     * Runs all {@link #configurations} {@link #REPETITIONS} times on the given repository.
+     *
+     * @param repo the repository to analyze
+     * @param repoOutputDir the directory where all results are saved
+     */
+    public static void benchmark(final Repository repo, final Path repoOutputDir) {
+        final List<Measurement> measurements = new ArrayList<>();
+
+        for (final var configuration : configurations().entrySet()) {
+            for (int repetition = 0; repetition < REPETITIONS; ++repetition) {
+                // Start with a cold repository by discarding all cached pack file windows.
+                new WindowCacheConfig().install();
+
+                final Path runOutputDir = repoOutputDir
+                        .resolve(configuration.getKey().replace(' ', '_'))
+                        .resolve(String.valueOf(repetition));
+                final Clock clock = new Clock();
+                Analysis.forEachCommit(
+                        () -> new Analysis(
+                                "LoadingExecutorBenchmark",
+                                new ArrayList<>(List.of(new StatisticsAnalysis())),
+                                repo,
+                                runOutputDir
+                        ),
+                        configuration.getValue()
+                );
+                final double runtime = clock.getPassedSeconds();
+
+                Logger.info("{} run {} of {} took {}", configuration.getKey(), repetition, repo.getRepositoryName(), Clock.printPassedSeconds(runtime));
+                measurements.add(new Measurement(repo.getRepositoryName(), configuration.getKey(), repetition, runtime));
+            }
+        }
+
+        try {
+            IO.write(repoOutputDir.resolve(RESULTS_FILE_NAME), CSV.toCSV(measurements));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Main method to start the benchmark.
+     * @param args see {@link AnalysisRunner.Options#DEFAULT(String[])}
+     * @throws IOException When copying the log file fails.
+     */
+    public static void main(String[] args) throws IOException {
+        final AnalysisRunner.Options defaultOptions = AnalysisRunner.Options.DEFAULT(args);
+        final AnalysisRunner.Options benchmarkOptions = new AnalysisRunner.Options(
+                defaultOptions.repositoriesDirectory(),
+                Paths.get("results", "loadingbenchmark", "current"),
+                defaultOptions.datasetsFile(),
+                defaultOptions.getParseOptionsForRepo(),
+                defaultOptions.getFilterForRepo(),
+                true,
+                false
+        );
+
+        AnalysisRunner.run(benchmarkOptions, LoadingExecutorBenchmark::benchmark);
+    }
+}
@@ -19,6 +19,7 @@ import org.tinylog.Logger;
 import org.variantsync.diffdetective.AnalysisRunner;
 import org.variantsync.diffdetective.analysis.Analysis;
 import org.variantsync.diffdetective.analysis.AnalysisResult.ResultKey;
+import org.variantsync.diffdetective.analysis.ExecutionOptions;
 import org.variantsync.diffdetective.analysis.FilterAnalysis;
 import org.variantsync.diffdetective.analysis.MetadataKeys;
 import org.variantsync.diffdetective.analysis.StatisticsAnalysis;
@@ -179,7 +180,12 @@ public class ConstructionValidation implements Analysis.Hooks {
      * @throws IOException When copying the log file fails.
      */
     public static void main(String[] args) throws IOException {
-        AnalysisRunner.run(AnalysisRunner.Options.DEFAULT(args), (repo, repoOutputDir) ->
+        final AnalysisRunner.Options options = AnalysisRunner.Options.DEFAULT(args);
+        final ExecutionOptions executionOptions = new ExecutionOptions.Builder(options.executionOptions())
+                .setCommitsToProcessPerThread(100)
+                .setNThreads(Diagnostics.INSTANCE.run().getNumberOfAvailableProcessors())
+                .build();
+        AnalysisRunner.run(options, (repo, repoOutputDir) ->
             Analysis.forEachCommit(() ->
                 new Analysis(
                     "ConstructionValidation",
@@ -198,8 +204,7 @@ public class ConstructionValidation implements Analysis.Hooks {
                     repo,
                     repoOutputDir
                 ),
-                100,
-                Diagnostics.INSTANCE.run().getNumberOfAvailableProcessors()
+                executionOptions
             )
         );
     }
@@ -78,15 +78,12 @@ public class Main {
                 ),
                 defaultOptions.getFilterForRepo(),
                 true,
-                false
+                false,
+                defaultOptions.executionOptions()
         );
 
-        AnalysisRunner.run(analysisOptions, (repository, path) -> {
-            //1b424533675341a2090b79a6ffc420ac6b179ce7
-//            Analysis.forSinglePatch("2254b6c09cff8f3a83684fd159289d0e305b0e7d", "src/alloc.c", AnalysisFactory(repository, path));
-            Analysis.forEachCommit(() -> AnalysisFactory(repository, path)
-//                    , 1000, 1
-            );
-        });
+        //1b424533675341a2090b79a6ffc420ac6b179ce7
+//        Analysis.forSinglePatch("2254b6c09cff8f3a83684fd159289d0e305b0e7d", "src/alloc.c", AnalysisFactory(repository, path));
+        AnalysisRunner.runForEachCommit(analysisOptions, Main::AnalysisFactory);
     }
 }
@@ -10,12 +10,25 @@ import org.variantsync.diffdetective.error.UnparseableFormulaException;
  */
 public class CPPAnnotationParser {
     /**
-     * Default CPPAnnotationParser. Created by invoking {@link #CPPAnnotationParser()}.
+     * The number of formulas cached by the {@link #Default default parser}.
      */
-    public static final CPPAnnotationParser Default = new CPPAnnotationParser();
+    public static final int DEFAULT_FORMULA_CACHE_CAPACITY = 1 << 14;
+
+    /**
+     * Default CPPAnnotationParser. Uses the {@link PropositionalFormulaParser#Default default formula parser}
+     * and a {@link CPPDiffLineFormulaExtractor} like {@link #CPPAnnotationParser()} but additionally
+     * caches up to {@link #DEFAULT_FORMULA_CACHE_CAPACITY} formulas.
+     */
+    public static final CPPAnnotationParser Default = new CPPAnnotationParser(
+            PropositionalFormulaParser.Default,
+            new CPPDiffLineFormulaExtractor(),
+            DEFAULT_FORMULA_CACHE_CAPACITY
+    );
 
     private final PropositionalFormulaParser formulaParser;
     private final CPPDiffLineFormulaExtractor extractor;
+    private final FormulaCache formulaCache;
+    private final boolean useSimpleFormulaParser;
 
     /**
      * Invokes {@link #CPPAnnotationParser(PropositionalFormulaParser, CPPDiffLineFormulaExtractor)} with
@@ -26,23 +39,67 @@ public class CPPAnnotationParser {
     }
 
     /**
-     * Creates a new preprocessor annotation parser.
+     * Creates a new preprocessor annotation parser which doesn't cache formulas.
      * @param formulaParser Parser that is used to parse propositional formulas in conditional annotations (e.g., the formula <code>f</code> in <code>#if f</code>).
      * @param extractor An extractor that extracts the formula part of a preprocessor annotation that is then given to the formulaParser.
      */
     public CPPAnnotationParser(final PropositionalFormulaParser formulaParser, CPPDiffLineFormulaExtractor extractor) {
+        this(formulaParser, extractor, 0);
+    }
+
+    /**
+     * Creates a new preprocessor annotation parser.
+     * If {@code formulaCacheCapacity} is positive, the formulas parsed by {@link #parseDiffLine}
+     * are cached in a {@link FormulaCache}. In this case, {@code formulaParser} and
+     * {@code extractor} must be deterministic and the extracted formula must not depend on the
+     * part of the line removed by {@link FormulaCache#normalize}.
+     * @param formulaParser Parser that is used to parse propositional formulas in conditional annotations (e.g., the formula <code>f</code> in <code>#if f</code>).
+     * @param extractor An extractor that extracts the formula part of a preprocessor annotation that is then given to the formulaParser.
+     * @param formulaCacheCapacity The maximal number of cached formulas or {@code 0} to disable caching.
+     */
+    public CPPAnnotationParser(final PropositionalFormulaParser formulaParser, CPPDiffLineFormulaExtractor extractor, int formulaCacheCapacity) {
         this.formulaParser = formulaParser;
         this.extractor = extractor;
+        this.formulaCache = formulaCacheCapacity == 0 ? null : new FormulaCache(formulaCacheCapacity);
+        // The simple parser reproduces exactly the formulas of the default extractor and parser.
+        this.useSimpleFormulaParser =
+                formulaParser == PropositionalFormulaParser.Default
+                && extractor.getClass() == CPPDiffLineFormulaExtractor.class;
     }
 
     /**
      * Parses the condition of the given line of source code that contains a preprocessor macro (i.e., IF, IFDEF, ELIF).
+     * Common conditions are parsed by a {@link SimpleCPPFormulaParser} if this parser uses the
+     * default formula parser and extractor.
      * @param line The line of code of a preprocessor annotation.
      * @return The formula of the macro in the given line.
      *         If no such formula could be parsed, returns a Literal with the line's condition as name.
      * @throws UnparseableFormulaException when {@link CPPDiffLineFormulaExtractor#extractFormula(String)} throws.
      */
     public Node parseDiffLine(String line) throws UnparseableFormulaException {
+        if (formulaCache == null) {
+            return parseDiffLineUncached(line);
+        }
+
+        // Lines whose formula can't be extracted are not cached. Hence, all cached keys start with
+        // the macro and the removed prefix is exactly the one skipped by the extractor.
+        final String key = FormulaCache.normalize(line);
+        Node formula = formulaCache.lookup(key);
+        if (formula == null) {
+            formula = parseDiffLineUncached(line);
+            formulaCache.put(key, formula);
+        }
+        return formula;
+    }
+
+    private Node parseDiffLineUncached(String line) throws UnparseableFormulaException {
+        if (useSimpleFormulaParser) {
+            final Node formula = SimpleCPPFormulaParser.parseDiffLine(line);
+            if (formula != null) {
+                return formula;
+            }
+        }
+
         return parseCondition(extractor.extractFormula(line));
     }
 
@@ -65,4 +122,12 @@ public class CPPAnnotationParser {
 
         return formula;
     }
+
+    /**
+     * Returns the cache of the formulas parsed by {@link #parseDiffLine} or {@code null} if
+     * caching is disabled.
+     */
+    public FormulaCache getFormulaCache() {
+        return formulaCache;
+    }
 }
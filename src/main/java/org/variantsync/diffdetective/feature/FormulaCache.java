@@ -0,0 +1,131 @@
+package org.variantsync.diffdetective.feature;
+
+import org.prop4j.Node;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A cache of the formulas parsed from the lines of preprocessor annotations.
+ * Extracting and parsing a formula runs a regex, an ANTLR parser and a {@link PropositionalFormulaParser}
+ * on each annotation. Histories of large projects contain a few thousand distinct conditions which
+ * recur in almost every commit touching a file, so a cache hit skips nearly all of this work.
+ *
+ * <p>Lines are identified by their {@link #normalize normalized} text. The cache is shared by all
+ * threads parsing with the same {@link CPPAnnotationParser}, so lookups don't lock. Instead of
+ * tracking the usage of formulas, the cache is cleared when it is full. The few frequent
+ * conditions are cached again right away. Concurrent additions may exceed the capacity slightly.
+ *
+ * <p>Formulas are mutable (e.g., by
+ * {@link org.variantsync.diffdetective.util.fide.FixTrueFalse#EliminateTrueAndFalseInplace}), so
+ * the cache only hands out copies.
+ * This class is thread safe.
+ *
+ * @see CPPAnnotationParser#CPPAnnotationParser(PropositionalFormulaParser, CPPDiffLineFormulaExtractor, int)
+ */
+public class FormulaCache {
+    private final int capacity;
+    private final ConcurrentHashMap<String, Node> memory = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param capacity the number of formulas kept in memory, after which the cache is cleared
+     */
+    public FormulaCache(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity of the cache must be positive but was " + capacity);
+        }
+
+        this.capacity = capacity;
+    }
+
+    /**
+     * Removes the parts of an annotation {@code line} which don't influence its formula: An optional
+     * leading diff symbol ({@code +} or {@code -}) followed by whitespace.
+     * Thus, the same annotation before and after an edit share the same entry.
+     */
+    public static String normalize(final String line) {
+        int begin = 0;
+        if (begin < line.length() && (line.charAt(begin) == '+' || line.charAt(begin) == '-')) {
+            ++begin;
+        }
+        // Only skip the characters matched by \s in the pattern of CPPDiffLineFormulaExtractor.
+        while (begin < line.length() && (line.charAt(begin) == ' ' || (line.charAt(begin) >= '\t' && line.charAt(begin) <= '\r'))) {
+            ++begin;
+        }
+        return line.substring(begin);
+    }
+
+    /**
+     * Looks up the formula of the {@link #normalize normalized} annotation line {@code key}.
+     *
+     * @return a new copy of the cached formula or {@code null} if it wasn't found
+     */
+    public Node lookup(final String key) {
+        final Node formula = memory.get(key);
+        if (formula == null) {
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        return formula.clone();
+    }
+
+    /**
+     * Adds a freshly parsed formula to the cache. {@code formula} is copied so the caller may
+     * continue to use and modify it.
+     *
+     * @param key the {@link #normalize normalized} annotation line {@code formula} was parsed from
+     * @param formula the formula of the annotation
+     */
+    public void put(final String key, final Node formula) {
+        if (memory.size() >= capacity && !memory.containsKey(key)) {
+            memory.clear();
+        }
+        memory.put(key, formula.clone());
+    }
+
+    /**
+     * Returns the number of formulas kept in memory, after which the cache is cleared.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of lookups which found a formula.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups which didn't find a formula.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the fraction of lookups which found a formula.
+     */
+    public double getHitRate() {
+        final long hits = getHits();
+        final long lookups = hits + getMisses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%d hits, %d misses (hit rate %.1f%%)",
+                getHits(),
+                getMisses(),
+                100 * getHitRate()
+        );
+    }
+}
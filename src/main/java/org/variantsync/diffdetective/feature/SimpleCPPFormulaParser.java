@@ -0,0 +1,239 @@
+package org.variantsync.diffdetective.feature;
+
+import org.prop4j.And;
+import org.prop4j.Literal;
+import org.prop4j.Node;
+import org.prop4j.Not;
+import org.prop4j.Or;
+import org.variantsync.diffdetective.util.fide.FixTrueFalse;
+
+/**
+ * A hand-written parser for the most common conditions of preprocessor annotations.
+ * Most annotations are of the form <code>#ifdef A</code>, <code>#ifndef A</code> or
+ * <code>#if defined(A)</code>, optionally combined with <code>!</code>, <code>&amp;&amp;</code>,
+ * <code>||</code> and parentheses. For these, extracting the formula with a
+ * {@link CPPDiffLineFormulaExtractor} builds an ANTLR parse tree, renders it to a string and
+ * parses that string again with the {@link PropositionalFormulaParser#Default default formula parser}.
+ * This parser builds the same formula in a single pass over the line.
+ *
+ * <p>Conditions outside of this subset, for example, containing arithmetics, comparisons, macro
+ * calls, literals or comments, are rejected, so the caller can fall back to the full parser.
+ *
+ * @see CPPAnnotationParser#parseDiffLine
+ */
+public final class SimpleCPPFormulaParser {
+    private final String line;
+    private int position;
+
+    private SimpleCPPFormulaParser(final String line, final int position) {
+        this.line = line;
+        this.position = position;
+    }
+
+    /**
+     * Parses the formula of the given line of a preprocessor annotation (i.e., IF, IFDEF, IFNDEF,
+     * ELIF), which might be preceded by a diff symbol.
+     * @param line The line of code of a preprocessor annotation.
+     * @return The same formula as parsing the {@link CPPDiffLineFormulaExtractor#extractFormula extracted formula}
+     *         of {@code line} with {@link PropositionalFormulaParser#Default}
+     *         or {@code null} if the condition of {@code line} is not supported by this parser.
+     */
+    public static Node parseDiffLine(final String line) {
+        // ^[+-]?\s*#\s*(if|ifdef|ifndef|elif)(\s+(.*)|(\(.*\)))$
+        int i = 0;
+        if (i < line.length() && (line.charAt(i) == '+' || line.charAt(i) == '-')) {
+            ++i;
+        }
+        i = skipPatternWhitespace(line, i);
+        if (i >= line.length() || line.charAt(i) != '#') {
+            return null;
+        }
+        i = skipPatternWhitespace(line, i + 1);
+
+        final int macroBegin = i;
+        while (i < line.length() && line.charAt(i) >= 'a' && line.charAt(i) <= 'z') {
+            ++i;
+        }
+        final String macro = line.substring(macroBegin, i);
+        if (!(macro.equals("if") || macro.equals("ifdef") || macro.equals("ifndef") || macro.equals("elif"))) {
+            return null;
+        }
+
+        if (i < line.length() && line.charAt(i) == '(') {
+            // The pattern requires the whole condition to be enclosed in parentheses.
+            if (line.charAt(line.length() - 1) != ')') {
+                return null;
+            }
+        } else {
+            final int conditionBegin = skipPatternWhitespace(line, i);
+            if (conditionBegin == i) {
+                return null;
+            }
+            i = conditionBegin;
+        }
+
+        final SimpleCPPFormulaParser parser = new SimpleCPPFormulaParser(line, i);
+        Node formula = parser.parseOr();
+        if (formula == null || parser.skipWhitespace() < line.length()) {
+            return null;
+        }
+
+        if (macro.equals("ifndef")) {
+            formula = new Not(formula);
+        }
+        return FixTrueFalse.EliminateTrueAndFalseInplace(formula).get();
+    }
+
+    /*
+     * The following methods mirror how the default formula parser reads the formula rendered by
+     * the ControllingCExpressionVisitor: Chains of binary operators are nested to the right and
+     * && binds stronger than ||. They return null if the input is not supported.
+     */
+
+    // or : and ('||' or)?
+    private Node parseOr() {
+        final Node left = parseAnd();
+        if (left == null || !skipOperator('|')) {
+            return left;
+        }
+
+        final Node right = parseOr();
+        return right == null ? null : new Or(left, right);
+    }
+
+    // and : unary ('&&' and)?
+    private Node parseAnd() {
+        final Node left = parseUnary();
+        if (left == null || !skipOperator('&')) {
+            return left;
+        }
+
+        final Node right = parseAnd();
+        return right == null ? null : new And(left, right);
+    }
+
+    // unary : '!' unary | '(' or ')' | 'defined' '(' Identifier ')' | 'defined' Identifier | Identifier
+    private Node parseUnary() {
+        skipWhitespace();
+        if (position >= line.length()) {
+            return null;
+        }
+
+        final char c = line.charAt(position);
+        if (c == '!') {
+            ++position;
+            final Node operand = parseUnary();
+            return operand == null ? null : new Not(operand);
+        }
+
+        if (c == '(') {
+            ++position;
+            final Node operand = parseOr();
+            if (operand == null || !skip(')')) {
+                return null;
+            }
+            return operand;
+        }
+
+        final String identifier = parseIdentifier();
+        if (identifier == null) {
+            return null;
+        }
+
+        if (identifier.equals("defined")) {
+            if (skip('(')) {
+                final String argument = parseIdentifier();
+                if (argument == null || isAbstracted(argument) || !skip(')')) {
+                    return null;
+                }
+                return new Literal(BooleanAbstraction.DEFINED + BooleanAbstraction.BRACKET_L + argument + BooleanAbstraction.BRACKET_R);
+            }
+
+            final String argument = parseIdentifier();
+            if (argument == null || isAbstracted(argument)) {
+                return null;
+            }
+            return new Literal(BooleanAbstraction.DEFINED + argument);
+        }
+
+        // Identifiers followed by parentheses are macro calls.
+        if (isAbstracted(identifier) || skipWhitespace() < line.length() && line.charAt(position) == '(') {
+            return null;
+        }
+        return new Literal(identifier);
+    }
+
+    /**
+     * Parses an identifier starting with a letter or underscore.
+     * Identifiers starting with digits are numbers in the default formula parser.
+     */
+    private String parseIdentifier() {
+        skipWhitespace();
+        final int begin = position;
+        if (position >= line.length() || !isIdentifierStart(line.charAt(position))) {
+            return null;
+        }
+        do {
+            ++position;
+        } while (position < line.length() && (isIdentifierStart(line.charAt(position)) || isDigit(line.charAt(position))));
+        return line.substring(begin, position);
+    }
+
+    /**
+     * Returns whether {@link BooleanAbstraction#abstractAll} changes {@code identifier}.
+     */
+    private static boolean isAbstracted(final String identifier) {
+        return identifier.contains("defined") || identifier.contains("__has_");
+    }
+
+    /**
+     * Skips the logical operator consisting of {@code c} twice.
+     */
+    private boolean skipOperator(final char c) {
+        skipWhitespace();
+        if (position + 1 < line.length() && line.charAt(position) == c && line.charAt(position + 1) == c) {
+            position += 2;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean skip(final char c) {
+        skipWhitespace();
+        if (position < line.length() && line.charAt(position) == c) {
+            ++position;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Skips the whitespace ignored by the lexer of the {@link CPPDiffLineFormulaExtractor} and
+     * returns the new position.
+     */
+    private int skipWhitespace() {
+        while (position < line.length() && (line.charAt(position) == ' ' || line.charAt(position) == '\t')) {
+            ++position;
+        }
+        return position;
+    }
+
+    /**
+     * Skips the characters matched by {@code \s} in a {@link java.util.regex.Pattern}, starting
+     * at {@code i}, and returns the index of the first other character.
+     */
+    private static int skipPatternWhitespace(final String line, int i) {
+        while (i < line.length() && (line.charAt(i) == ' ' || (line.charAt(i) >= '\t' && line.charAt(i) <= '\r'))) {
+            ++i;
+        }
+        return i;
+    }
+
+    private static boolean isIdentifierStart(final char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+}
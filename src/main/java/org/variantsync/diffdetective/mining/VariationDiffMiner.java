@@ -76,6 +76,19 @@ public class VariationDiffMiner {
         );
     }
 
+    public static FilterAnalysis Filter() {
+        return new FilterAnalysis(
+                VariationDiffFilter.notEmpty(),
+                VariationDiffFilter.moreThanOneArtifactNode(),
+                /// We want to exclude patches that do not edit variability.
+                /// In particular, we noticed that most edits just insert or delete artifacts (or replace it).
+                /// This is reasonable and was also observed in previous studies: Edits to artifacts are more frequent than edits to variability.
+                /// Yet, such edits cannot reveal compositions of more complex edits to variability.
+                /// We thus filter them.
+                VariationDiffFilter.hasAtLeastOneEditToVariability()
+        );
+    }
+
     public static AnalysisStrategy MiningStrategy() {
         return new AnalyzeAllThenExport();
 //                new CompositeVariationDiffMiningStrategy(
@@ -88,17 +101,13 @@ public class VariationDiffMiner {
         (repo, repoOutputDir) -> new Analysis(
             "VariationDiffMiner",
             List.of(
-                new PreprocessingAnalysis(Postprocessing(repo)),
-                new FilterAnalysis(
-                        VariationDiffFilter.notEmpty(),
-                        VariationDiffFilter.moreThanOneArtifactNode(),
-                        /// We want to exclude patches that do not edit variability.
-                        /// In particular, we noticed that most edits just insert or delete artifacts (or replace it).
-                        /// This is reasonable and was also observed in previous studies: Edits to artifacts are more frequent than edits to variability.
-                        /// Yet, such edits cannot reveal compositions of more complex edits to variability.
-                        /// We thus filter them.
-                        VariationDiffFilter.hasAtLeastOneEditToVariability()
+                /// Skips patches which are rejected by hasAtLeastOneEditToVariability anyway.
+                new VariabilityPrescanAnalysis(
+                        VariabilityPrescanAnalysis.notEmpty(),
+                        VariabilityPrescanAnalysis.moreThanOneArtifactNode()
                 ),
+                new PreprocessingAnalysis(Postprocessing(repo)),
+                Filter(),
                 new LineGraphExportAnalysis(MiningStrategy(), MiningExportOptions(repo)),
                 new EditClassOccurenceAnalysis(MiningStrategy()),
                 new StatisticsAnalysis()
@@ -158,7 +167,10 @@ public class VariationDiffMiner {
         }
 
         Analysis.forEachRepository(repos, outputDir, (repo, repoOutputDir) -> {
-            Analysis.forEachCommit(() -> AnalysisFactory.apply(repo, repoOutputDir));
+            Analysis.forEachCommit(
+                    () -> AnalysisFactory.apply(repo, repoOutputDir),
+                    new ExecutionOptions.Builder().setVariabilityPrescan(true).build()
+            );
             repoPostProcessing.accept(repoOutputDir);
         });
         Logger.info("Done");
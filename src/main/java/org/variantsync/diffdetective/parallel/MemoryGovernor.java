@@ -0,0 +1,159 @@
+package org.variantsync.diffdetective.parallel;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.tinylog.Logger;
+import org.variantsync.diffdetective.util.Clock;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Throttles the start of tasks while the heap usage is above a high-water mark.
+ *
+ * <p>Tasks which are {@link #govern governed} wait before they start until the used heap drops
+ * below the high-water mark. To avoid a deadlock, a task never waits if no other governed task is
+ * running. Hence, as long as the heap is above the high-water mark, the number of concurrently
+ * running tasks decreases until the memory held by the running tasks is released. Waiting tasks
+ * are woken up after each garbage collection, which is observed using the notifications of the
+ * {@link GarbageCollectorMXBean}s, and in regular intervals.
+ *
+ * <p>This class is thread safe.
+ */
+public class MemoryGovernor implements AutoCloseable {
+    /**
+     * Maximal time in milliseconds between two checks of the heap usage while a task waits.
+     * Necessary because not all garbage collectors emit notifications.
+     */
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    private final double highWaterMark;
+    private final List<NotificationEmitter> garbageCollectors = new ArrayList<>();
+    private final NotificationListener onGarbageCollection = this::onGarbageCollection;
+
+    private int runningTasks = 0;
+    private int throttledTasks = 0;
+    private long throttledMilliseconds = 0;
+
+    /**
+     * Creates a governor which throttles tasks while the used heap exceeds the given fraction of
+     * the maximal heap size.
+     *
+     * @param highWaterMark a fraction of the maximal heap size in the range {@code (0, 1]}
+     */
+    public MemoryGovernor(final double highWaterMark) {
+        if (!(highWaterMark > 0 && highWaterMark <= 1)) {
+            throw new IllegalArgumentException("The high-water mark must be in (0, 1] but was " + highWaterMark);
+        }
+        this.highWaterMark = highWaterMark;
+
+        for (final GarbageCollectorMXBean garbageCollector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (garbageCollector instanceof NotificationEmitter emitter) {
+                emitter.addNotificationListener(onGarbageCollection, null, null);
+                garbageCollectors.add(emitter);
+            }
+        }
+    }
+
+    /**
+     * Returns the fraction of the maximal heap size which is currently used.
+     * If the maximal heap size is undefined, the committed heap size is used instead.
+     */
+    public static double getHeapUsage() {
+        final MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        final long max = heap.getMax() > 0 ? heap.getMax() : heap.getCommitted();
+        return (double) heap.getUsed() / max;
+    }
+
+    /**
+     * Returns whether the heap usage is currently above the high-water mark.
+     */
+    public boolean isAboveHighWaterMark() {
+        return getHeapUsage() > highWaterMark;
+    }
+
+    /**
+     * Returns a task which performs {@code task} as soon as enough memory is available.
+     */
+    public <T> Callable<T> govern(final Callable<T> task) {
+        return () -> {
+            acquire();
+            try {
+                return task.call();
+            } finally {
+                release();
+            }
+        };
+    }
+
+    /**
+     * Blocks until the heap usage is below the high-water mark or no other task is running.
+     */
+    private synchronized void acquire() throws InterruptedException {
+        if (runningTasks > 0 && isAboveHighWaterMark()) {
+            final Clock clock = new Clock();
+            Logger.debug("Delaying a task because {}% of the heap are used", Math.round(100 * getHeapUsage()));
+
+            do {
+                wait(POLL_INTERVAL_MILLIS);
+            } while (runningTasks > 0 && isAboveHighWaterMark());
+
+            ++throttledTasks;
+            throttledMilliseconds += clock.getPassedMilliseconds();
+        }
+
+        ++runningTasks;
+    }
+
+    private synchronized void release() {
+        --runningTasks;
+        notifyAll();
+    }
+
+    private void onGarbageCollection(final Notification notification, final Object handback) {
+        if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of tasks which had to wait for memory.
+     */
+    public synchronized int getThrottledTasks() {
+        return throttledTasks;
+    }
+
+    /**
+     * Returns the total time in seconds tasks had to wait for memory.
+     */
+    public synchronized double getThrottledSeconds() {
+        return Clock.toSeconds(throttledMilliseconds);
+    }
+
+    /** Stops observing the garbage collectors. */
+    @Override
+    public void close() {
+        for (final NotificationEmitter garbageCollector : garbageCollectors) {
+            try {
+                garbageCollector.removeNotificationListener(onGarbageCollection);
+            } catch (ListenerNotFoundException e) {
+                Logger.debug(e, "The memory governor was already removed from a garbage collector");
+            }
+        }
+        garbageCollectors.clear();
+
+        if (throttledTasks > 0) {
+            Logger.info("Delayed {} tasks for {} in total because more than {}% of the heap were used",
+                    throttledTasks, Clock.printPassedSeconds(getThrottledSeconds()), Math.round(100 * highWaterMark));
+        }
+    }
+}
@@ -2,6 +2,7 @@ package org.variantsync.diffdetective.parallel;
 
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.NoSuchElementException;
 import java.util.concurrent.*;
 
 /**
@@ -9,14 +10,50 @@ import java.util.concurrent.*;
  * The results of the given tasks can be received in the correct order using {@link next}. That
  * means the {@link next} method is deterministic if all tasks are deterministic.
  *
- * <p>Upon creation of a ScheduledTasksIterator, all given tasks are scheduled for execution. However, the results of these
+ * <p>Upon creation of a ScheduledTasksIterator, tasks are scheduled for execution. However, the results of these
  * tasks become available in the same order as the tasks have been provided. This means, that the iterator will block
  * until the result of the next task is available, even if all other remaining tasks are complete.
+ *
+ * <p>By default, all given tasks are scheduled immediately. If a maximum number of scheduled tasks is given, only
+ * that many tasks are in flight at any time and the next task is retrieved from the given iterator only when a result
+ * is consumed. This bounds the memory used by tasks (and their captured state) independently of the number of tasks.
+ *
+ * <p>If the order of the results is irrelevant (e.g., because they are merged by a commutative operation), results can
+ * be retrieved in the order in which the tasks complete by using {@link ResultOrder#COMPLETION}. In that case a single
+ * slow task doesn't prevent the retrieval of the results of all tasks scheduled after it.
  */
 public class ScheduledTasksIterator<T> implements Iterator<T>, AutoCloseable {
+    /**
+     * Value for {@code maxScheduledTasks} to schedule all tasks immediately.
+     * @see #ScheduledTasksIterator(Iterator, int, int)
+     */
+    public static final int UNBOUNDED = 0;
+
+    /**
+     * The order in which results are returned by {@link next}.
+     */
+    public enum ResultOrder {
+        /**
+         * Results are returned in the same order as the tasks were provided.
+         * This order is deterministic.
+         */
+        SUBMISSION,
+        /**
+         * Results are returned as soon as their task is completed.
+         * This order is non-deterministic.
+         */
+        COMPLETION
+    }
+
     private final Iterator<? extends Callable<T>> remainingTasks;
+    /** Scheduled tasks in submission order. Only used for {@link ResultOrder#SUBMISSION}. */
     private final LinkedList<Future<T>> futures;
+    /** Completed tasks in completion order. Only used for {@link ResultOrder#COMPLETION}. */
+    private final CompletionService<T> completedTasks;
     private final ExecutorService threadPool;
+    private final int maxScheduledTasks;
+    private final ResultOrder resultOrder;
+    private int scheduledTasks;
 
     /**
      * Starts scheduling {@code tasks} in {@code nThreads} other threads.
@@ -27,12 +64,53 @@ public class ScheduledTasksIterator<T> implements Iterator<T>, AutoCloseable {
      * @param nThreads the number of threads which work on {@code tasks} in parallel
      */
     public ScheduledTasksIterator(final Iterator<? extends Callable<T>> tasks, final int nThreads) {
+        this(tasks, nThreads, UNBOUNDED);
+    }
+
+    /**
+     * Starts scheduling {@code tasks} in {@code nThreads} other threads but keeps at most
+     * {@code maxScheduledTasks} tasks scheduled or running at the same time.
+     * The remaining tasks are pulled from {@code tasks} lazily whenever a result is retrieved
+     * using {@link next}. To keep all threads busy, {@code maxScheduledTasks} should be larger
+     * than {@code nThreads}.
+     *
+     * @param tasks the tasks which will be executed in other threads
+     * @param nThreads the number of threads which work on {@code tasks} in parallel
+     * @param maxScheduledTasks the maximum number of tasks which are scheduled at the same time or
+     * {@link UNBOUNDED} to schedule all tasks immediately
+     */
+    public ScheduledTasksIterator(final Iterator<? extends Callable<T>> tasks, final int nThreads, final int maxScheduledTasks) {
+        this(tasks, nThreads, maxScheduledTasks, ResultOrder.SUBMISSION);
+    }
+
+    /**
+     * Same as {@link #ScheduledTasksIterator(Iterator, int, int)} but the results are returned by
+     * {@link next} in the given order.
+     *
+     * @param tasks the tasks which will be executed in other threads
+     * @param nThreads the number of threads which work on {@code tasks} in parallel
+     * @param maxScheduledTasks the maximum number of tasks which are scheduled at the same time or
+     * {@link UNBOUNDED} to schedule all tasks immediately
+     * @param resultOrder the order in which the results are returned by {@link next}
+     */
+    public ScheduledTasksIterator(
+            final Iterator<? extends Callable<T>> tasks,
+            final int nThreads,
+            final int maxScheduledTasks,
+            final ResultOrder resultOrder
+    ) {
+        if (maxScheduledTasks < 0) {
+            throw new IllegalArgumentException("The maximum number of scheduled tasks must not be negative but was " + maxScheduledTasks);
+        }
+
         this.remainingTasks = tasks;
         this.futures = new LinkedList<>();
         this.threadPool = Executors.newFixedThreadPool(nThreads);
-        while (this.remainingTasks.hasNext()) {
-            futures.add(threadPool.submit(remainingTasks.next()));
-        }
+        this.completedTasks = new ExecutorCompletionService<>(threadPool);
+        this.maxScheduledTasks = maxScheduledTasks;
+        this.resultOrder = resultOrder;
+        this.scheduledTasks = 0;
+        scheduleTasks();
     }
 
     /**
@@ -45,24 +123,52 @@ public class ScheduledTasksIterator<T> implements Iterator<T>, AutoCloseable {
         this(tasks.iterator(), nThreads);
     }
 
+    /**
+     * Schedules remaining tasks until either no tasks are remaining or {@link maxScheduledTasks}
+     * tasks are scheduled.
+     */
+    private void scheduleTasks() {
+        while ((maxScheduledTasks == UNBOUNDED || scheduledTasks < maxScheduledTasks) && remainingTasks.hasNext()) {
+            final Callable<T> task = remainingTasks.next();
+            switch (resultOrder) {
+                case SUBMISSION -> futures.add(threadPool.submit(task));
+                case COMPLETION -> completedTasks.submit(task);
+            }
+            ++scheduledTasks;
+        }
+    }
+
     @Override
     public boolean hasNext() {
-        return !futures.isEmpty();
+        return scheduledTasks > 0;
     }
 
     /**
      * Waits for the next task and retrieves its result.
      * The order of the results corresponds to the order of tasks given in the
-     * {@link ScheduledTasksIterator constructor}. Each call to {@code next} schedules a new task
-     * if any task is remaining.
+     * {@link ScheduledTasksIterator constructor} unless {@link ResultOrder#COMPLETION} was
+     * requested. Each call to {@code next} schedules a new task if any task is remaining.
      *
      * @return one result of a tasks given in {@link ScheduledTasksIterator}
      * @throws RuntimeException if a thread is interrupted or a task couldn't be executed
      */
     @Override
     public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
         try {
-            return futures.removeFirst().get();
+            final Future<T> nextResult = switch (resultOrder) {
+                case SUBMISSION -> futures.removeFirst();
+                case COMPLETION -> completedTasks.take();
+            };
+            --scheduledTasks;
+
+            // Refill before waiting for the result so that the other threads don't run out of work.
+            scheduleTasks();
+
+            return nextResult.get();
         } catch (final InterruptedException | ExecutionException e) {
             throw new RuntimeException(e);
         }
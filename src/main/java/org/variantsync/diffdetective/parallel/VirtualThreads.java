@@ -0,0 +1,49 @@
+package org.variantsync.diffdetective.parallel;
+
+import org.tinylog.Logger;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to virtual threads, which are available in Java 21 and later.
+ * As DiffDetective is compiled for an older Java version, virtual threads are accessed reflectively
+ * and their availability is checked at runtime.
+ */
+public final class VirtualThreads {
+    /** The first Java version in which virtual threads are a stable feature. */
+    public static final int MINIMUM_JAVA_VERSION = 21;
+
+    private VirtualThreads() {}
+
+    /**
+     * Returns whether the running JVM supports virtual threads.
+     */
+    public static boolean isAvailable() {
+        return Runtime.version().feature() >= MINIMUM_JAVA_VERSION;
+    }
+
+    /**
+     * Creates an executor that runs each task in a new virtual thread.
+     * Such an executor is suitable for tasks which mostly block on IO.
+     *
+     * @return the executor or nothing if the running JVM doesn't support virtual threads
+     * @see #isAvailable
+     */
+    public static Optional<ExecutorService> newVirtualThreadPerTaskExecutor() {
+        if (!isAvailable()) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of((ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null));
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            Logger.warn(e, "Could not create virtual threads on Java {}", Runtime.version());
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.variantsync.diffdetective.util;
+
+import org.variantsync.diffdetective.error.DeadlineExceededException;
+
+import java.time.Duration;
+
+/**
+ * A point in time until which the current thread should finish its current computation.
+ *
+ * <p>Deadlines are cooperative: Long running computations (e.g., parsing or SAT solving) call
+ * {@link #check} regularly, which throws a {@link DeadlineExceededException} once the
+ * {@link #current current deadline} of the thread has passed. Deadlines are nested. A new deadline
+ * is {@link #start started} for a limited scope and restores the previous deadline when it is
+ * {@link #close closed}. A nested deadline never ends later than its parent.
+ *
+ * <p>Each deadline must be closed by the thread that started it, preferably using a
+ * try-with-resources statement.
+ */
+public final class Deadline implements AutoCloseable {
+    /** A deadline which is never exceeded. */
+    public static final Deadline NONE = new Deadline(null, false, 0);
+
+    private static final ThreadLocal<Deadline> CURRENT = ThreadLocal.withInitial(() -> NONE);
+
+    /** The deadline of this thread that is restored by {@link #close}. */
+    private final Deadline previous;
+    private final boolean isLimited;
+    /** The end of this deadline in the time base of {@link System#nanoTime}. */
+    private final long endNanos;
+
+    private Deadline(final Deadline previous, final boolean isLimited, final long endNanos) {
+        this.previous = previous;
+        this.isLimited = isLimited;
+        this.endNanos = endNanos;
+    }
+
+    /**
+     * Returns the deadline of the current thread. Returns {@link #NONE} if no deadline was started.
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Starts a deadline for the current thread that ends after {@code timeout} but not later than
+     * the {@link #current current deadline}.
+     *
+     * @param timeout the time budget of the new deadline. {@code null}, zero or negative durations
+     * impose no additional limit.
+     * @return the new deadline which has to be {@link #close closed}
+     */
+    public static Deadline start(final Duration timeout) {
+        return start(current(), timeout);
+    }
+
+    /**
+     * Starts a deadline for the current thread that ends after {@code timeout} but not later than
+     * {@code parent}. Use this method to transfer the deadline of a computation to a thread which
+     * works on behalf of this computation.
+     *
+     * @param parent a deadline which may have been started by another thread
+     * @param timeout the time budget of the new deadline. {@code null}, zero or negative durations
+     * impose no additional limit.
+     * @return the new deadline which has to be {@link #close closed}
+     */
+    public static Deadline start(final Deadline parent, final Duration timeout) {
+        boolean isLimited = parent.isLimited;
+        long endNanos = parent.endNanos;
+        if (timeout != null && !timeout.isNegative() && !timeout.isZero()) {
+            final long timeoutEndNanos = System.nanoTime() + timeout.toNanos();
+            if (!isLimited || timeoutEndNanos - endNanos < 0) {
+                isLimited = true;
+                endNanos = timeoutEndNanos;
+            }
+        }
+
+        final Deadline deadline = new Deadline(current(), isLimited, endNanos);
+        CURRENT.set(deadline);
+        return deadline;
+    }
+
+    /**
+     * Returns whether this deadline has passed.
+     */
+    public boolean isExceeded() {
+        return isLimited && System.nanoTime() - endNanos >= 0;
+    }
+
+    /**
+     * Throws a {@link DeadlineExceededException} if the {@link #current current deadline} has
+     * passed. This method is cheap and should be called regularly by long running computations.
+     *
+     * @throws DeadlineExceededException if the current deadline has passed
+     */
+    public static void check() {
+        if (current().isExceeded()) {
+            throw new DeadlineExceededException("The deadline of the current computation has passed");
+        }
+    }
+
+    /**
+     * Restores the deadline which was {@link #current current} when this deadline was started.
+     */
+    @Override
+    public void close() {
+        if (previous != null) {
+            CURRENT.set(previous);
+        }
+    }
+}
@@ -754,7 +754,7 @@ public class DiffNode<L extends Label> implements HasNodeType {
             getFromLine(),
             getToLine(),
             getFormula(),
-            Cast.unchecked(label.clone())
+            Cast.unchecked(getLabel().clone())
         );
     }
 
@@ -68,9 +68,11 @@ class LogicalLine {
         // Handle multi-line inline macros
         int commentStart = line.lastIndexOf("/*");
         int commentEnd = line.lastIndexOf("*/");
-        Matcher lineCommentMatcher = LINE_COMMENT.matcher(line);
-        int lineCommentStart = lineCommentMatcher.find() ? lineCommentMatcher.start() : -1;
         if (commentStart != -1 || commentEnd != -1) {
+            // Most lines contain no comment markers, so only match line comments when required.
+            Matcher lineCommentMatcher = LINE_COMMENT.matcher(line);
+            int lineCommentStart = lineCommentMatcher.find() ? lineCommentMatcher.start() : -1;
+
             // Update 'inComment' if a C-style comment is opened and/or closed
             if (lineCommentStart != -1 && lineCommentStart < commentStart) {
                 // Handle cases in which comments are embedded in other comments
@@ -122,6 +124,11 @@ class LogicalLine {
      */
     @Override
     public String toString() {
+        if (lines.size() == 1 && !isContinued) {
+            // Avoid copying the most common case of a logical line consisting of one physical line.
+            return lines.get(0).content();
+        }
+
         var logicalLine = new StringBuilder();
         for (DiffLinesLabel.Line line : lines) {
             String physicalLine = line.content();
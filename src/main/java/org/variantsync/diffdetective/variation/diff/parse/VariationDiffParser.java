@@ -15,6 +15,7 @@ import org.variantsync.diffdetective.diff.result.DiffParseException;
 import org.variantsync.diffdetective.diff.text.DiffLineNumber;
 import org.variantsync.diffdetective.error.UnparseableFormulaException;
 import org.variantsync.diffdetective.util.Assert;
+import org.variantsync.diffdetective.util.Deadline;
 import org.variantsync.diffdetective.variation.DiffLinesLabel;
 import org.variantsync.diffdetective.variation.NodeType;
 import org.variantsync.diffdetective.variation.diff.DiffNode;
@@ -25,6 +26,7 @@ import org.variantsync.diffdetective.variation.diff.Time;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.Iterator;
 import java.util.Stack;
 import java.util.regex.Pattern;
 
@@ -151,6 +153,28 @@ public class VariationDiffParser {
         });
     }
 
+    /**
+     * The same as {@link VariationDiffParser#createVariationDiff(BufferedReader, VariationDiffParseOptions)}
+     * but with the diff given as a sequence of lines whose diff type is already known. This avoids
+     * creating and splitting a textual diff if the diff was computed by other means.
+     *
+     * @param fullDiff the lines of the full diff of a patch
+     * @param options {@link VariationDiffParseOptions} for the parsing process.
+     * @throws DiffParseException if an error in the diff or macro syntax is detected
+     */
+    public static VariationDiff<DiffLinesLabel> createVariationDiff(
+            final Iterator<DiffLine> fullDiff,
+            final VariationDiffParseOptions options
+    ) throws DiffParseException {
+        try {
+            return new VariationDiffParser(
+                options
+            ).parse(() -> fullDiff.hasNext() ? fullDiff.next() : null);
+        } catch (IOException e) {
+            throw new AssertionError("No actual IO should be performed because only an iterator is used");
+        }
+    }
+
     /**
      * Parses a variation tree from a source file.
      * This method is similar to {@link #createVariationDiff(BufferedReader, VariationDiffParseOptions)}
@@ -206,6 +230,8 @@ public class VariationDiffParser {
      * @throws IOException iff {@code lines.get()} throws {@code IOException}
      * @throws DiffParseException if an error in the line diff or the underlying preprocessor syntax
      * is detected
+     * @throws org.variantsync.diffdetective.error.DeadlineExceededException if the
+     * {@link Deadline#current current deadline} passes during parsing
      */
     private VariationDiff<DiffLinesLabel> parse(
         FailableSupplier<DiffLine, IOException> lines
@@ -221,6 +247,9 @@ public class VariationDiffParser {
         DiffLineNumber lineNumber = new DiffLineNumber(0, 0, 0);
         DiffLine currentDiffLine;
         while ((currentDiffLine = lines.get()) != null) {
+            // Pathological diffs (e.g., generated files) may take very long to parse.
+            Deadline.check();
+
             final String currentLine = currentDiffLine.content();
 
             final DiffType diffType = currentDiffLine.diffType();
@@ -314,10 +343,14 @@ public class VariationDiffParser {
 
         // Is this line a conditional macro?
         // Note: The following line doesn't handle comments and line continuations correctly.
-        var matcher = macroPattern.matcher(line.toString());
-        var conditionalMacroName = matcher.find()
-            ? matcher.group(1)
-            : null;
+        final String logicalLine = line.toString();
+        String conditionalMacroName = null;
+        if (mayBeMacro(logicalLine)) {
+            var matcher = macroPattern.matcher(logicalLine);
+            if (matcher.find()) {
+                conditionalMacroName = matcher.group(1);
+            }
+        }
 
         if ("endif".equals(conditionalMacroName)) {
             lastArtifact = null;
@@ -353,7 +386,7 @@ public class VariationDiffParser {
                     toLine,
                     nodeType == NodeType.ARTIFACT || nodeType == NodeType.ELSE
                         ? null
-                        : options.annotationParser().parseDiffLine(line.toString()),
+                        : options.annotationParser().parseDiffLine(logicalLine),
                     new DiffLinesLabel(line.getLines())
                 );
 
@@ -365,6 +398,28 @@ public class VariationDiffParser {
         }
     }
 
+    /**
+     * Returns whether {@code line} starts like a match of {@link #macroPattern}.
+     * Most lines are artifacts, which are rejected by this check without matching the pattern.
+     */
+    private static boolean mayBeMacro(final String line) {
+        int i = 0;
+        if (i < line.length() && (line.charAt(i) == '+' || line.charAt(i) == '-')) {
+            ++i;
+        }
+        while (i < line.length() && isPatternWhitespace(line.charAt(i))) {
+            ++i;
+        }
+        return i < line.length() && line.charAt(i) == '#';
+    }
+
+    /**
+     * Returns whether {@code c} is matched by {@code \s} in a {@link Pattern}.
+     */
+    private static boolean isPatternWhitespace(final char c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+
     /**
      * Pop {@code stack} until an IF node is popped.
      * If there were ELSEs or ELIFs between an IF and an ENDIF, they were placed on the stack and
@@ -0,0 +1,340 @@
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.variantsync.diffdetective.analysis.Analysis;
+import org.variantsync.diffdetective.analysis.AnalysisResult;
+import org.variantsync.diffdetective.analysis.BatchManifest;
+import org.variantsync.diffdetective.analysis.ExecutionOptions;
+import org.variantsync.diffdetective.analysis.ExecutionOptions.BatchSizing;
+import org.variantsync.diffdetective.analysis.ExecutionOptions.LoadingExecutor;
+import org.variantsync.diffdetective.analysis.LineGraphExportAnalysis;
+import org.variantsync.diffdetective.analysis.PreprocessingAnalysis;
+import org.variantsync.diffdetective.analysis.Shard;
+import org.variantsync.diffdetective.analysis.StatisticsAnalysis;
+import org.variantsync.diffdetective.analysis.TimingResult;
+import org.variantsync.diffdetective.analysis.VariabilityPrescanAnalysis;
+import org.variantsync.diffdetective.datasets.PatchDiffParseOptions;
+import org.variantsync.diffdetective.datasets.Repository;
+import org.variantsync.diffdetective.diff.git.DiffFilter;
+import org.variantsync.diffdetective.diff.result.DiffError;
+import org.variantsync.diffdetective.metadata.ExplainedFilterSummary;
+import org.variantsync.diffdetective.mining.VariationDiffMiner;
+import org.variantsync.diffdetective.parallel.ScheduledTasksIterator.ResultOrder;
+import org.variantsync.diffdetective.variation.diff.transform.CutNonEditedSubtrees;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the way {@link Analysis#forEachCommit} distributes commits onto threads doesn't
+ * influence the results of an analysis.
+ */
+public class AnalysisTest {
+    private final static Path REPOS_DIR = Constants.RESOURCE_DIR.resolve("repos");
+
+    /** Small batches to ensure that the test repository is split into multiple batches. */
+    private static ExecutionOptions.Builder smallBatches() {
+        return new ExecutionOptions.Builder()
+                .setCommitsToProcessPerThread(2)
+                .setNThreads(2);
+    }
+
+    public static Stream<ExecutionOptions> executionOptions() {
+        return Stream.of(
+                smallBatches().setTasksInFlightPerThread(1).build(),
+                smallBatches().setResultOrder(ResultOrder.COMPLETION).build(),
+                smallBatches().setBatchSizing(BatchSizing.ADAPTIVE).build(),
+                smallBatches().setLoadingThreads(2).setParsingThreads(2).build(),
+                smallBatches().setParsingThreads(1).setCommitsInFlightPerBatch(1).build(),
+                smallBatches().setLoadingExecutor(LoadingExecutor.VIRTUAL_THREADS).setParsingThreads(2).build(),
+                smallBatches().setMinPatchesForParallelParsing(1).build(),
+                smallBatches().setParsingThreads(2).setMinPatchesForParallelParsing(2).build(),
+                smallBatches().setBatchSizing(BatchSizing.ADAPTIVE).setHeapHighWaterMark(Double.MIN_VALUE).setShrinkBatchesUnderMemoryPressure(true).build()
+        );
+    }
+
+    private static Repository repo() {
+        return Repository
+                .fromZip(REPOS_DIR.resolve("test-spl.zip"), "test-spl")
+                .setDiffFilter(DiffFilter.ALLOW_ALL)
+                .setParseOptions(PatchDiffParseOptions.Default);
+    }
+
+    private static AnalysisResult analyze(final Repository repo, final Path outputDir, final ExecutionOptions options) {
+        return Analysis.forEachCommit(
+                () -> new Analysis(
+                        "AnalysisTest",
+                        new ArrayList<>(List.of(new StatisticsAnalysis())),
+                        repo,
+                        outputDir
+                ),
+                options
+        );
+    }
+
+    private static void assertSameResults(final AnalysisResult expected, final AnalysisResult actual) {
+        assertEquals(expected.repoName, actual.repoName);
+        assertEquals(new HashMap<>(expected.diffErrors), new HashMap<>(actual.diffErrors));
+        assertEquals(
+                expected.get(Analysis.TotalNumberOfCommitsResult.KEY).value,
+                actual.get(Analysis.TotalNumberOfCommitsResult.KEY).value
+        );
+
+        final StatisticsAnalysis.Result expectedStatistics = expected.get(StatisticsAnalysis.RESULT);
+        final StatisticsAnalysis.Result actualStatistics = actual.get(StatisticsAnalysis.RESULT);
+        assertEquals(expectedStatistics.processedCommits, actualStatistics.processedCommits);
+        assertEquals(expectedStatistics.emptyCommits, actualStatistics.emptyCommits);
+        assertEquals(expectedStatistics.failedCommits, actualStatistics.failedCommits);
+        assertEquals(expectedStatistics.totalPatches, actualStatistics.totalPatches);
+        assertEquals(expectedStatistics.processedPatches, actualStatistics.processedPatches);
+    }
+
+    @ParameterizedTest
+    @MethodSource("executionOptions")
+    public void testExecutionOptionsDontChangeResults(final ExecutionOptions options, @TempDir Path outputDir) {
+        final Repository repo = repo();
+        final AnalysisResult expected = analyze(repo, outputDir.resolve("expected"), smallBatches().build());
+        final AnalysisResult actual = analyze(repo, outputDir.resolve("actual"), options);
+        assertSameResults(expected, actual);
+    }
+
+    /**
+     * Runs the filters and the export of the {@link VariationDiffMiner}. Its full postprocessing is
+     * left out because
+     * {@link org.variantsync.diffdetective.variation.diff.transform.CollapseNestedNonEditedAnnotations}
+     * fails on the test repository.
+     */
+    private static AnalysisResult analyzeMinerFilter(
+            final Repository repo,
+            final Path outputDir,
+            final ExecutionOptions options,
+            final AtomicInteger patchesWithoutVariabilityEdits) {
+        return Analysis.forEachCommit(
+                () -> new Analysis(
+                        "AnalysisTest",
+                        new ArrayList<>(List.of(
+                                new Analysis.Hooks() {
+                                    @Override
+                                    public boolean beginPatch(Analysis analysis) {
+                                        if (!analysis.getCurrentPatch().mayEditVariability()) {
+                                            patchesWithoutVariabilityEdits.incrementAndGet();
+                                        }
+                                        return true;
+                                    }
+                                },
+                                new VariabilityPrescanAnalysis(
+                                        VariabilityPrescanAnalysis.notEmpty(),
+                                        VariabilityPrescanAnalysis.moreThanOneArtifactNode()
+                                ),
+                                new PreprocessingAnalysis(new CutNonEditedSubtrees<>()),
+                                VariationDiffMiner.Filter(),
+                                new LineGraphExportAnalysis(VariationDiffMiner.MiningStrategy(), VariationDiffMiner.MiningExportOptions(repo)),
+                                new StatisticsAnalysis()
+                        )),
+                        repo,
+                        outputDir
+                ),
+                options
+        );
+    }
+
+    /**
+     * Returns the line graphs exported to the {@link Analysis#getOutputFile output files} of all
+     * batches in {@code outputDir} ordered by their file name.
+     */
+    private static List<String> exportedLineGraphs(final Path outputDir) throws IOException {
+        try (Stream<Path> files = Files.list(outputDir)) {
+            final List<String> lineGraphs = new ArrayList<>();
+            for (final Path file : files.filter(file -> !file.getFileName().toString().contains(".")).sorted().toList()) {
+                lineGraphs.add(Files.readString(file));
+            }
+            return lineGraphs;
+        }
+    }
+
+    @Test
+    public void testVariabilityPrescanDoesntChangeMinerResults(@TempDir Path outputDir) throws IOException {
+        final Repository repo = repo();
+        final AtomicInteger skippedPatches = new AtomicInteger();
+        final AnalysisResult expected = analyzeMinerFilter(repo, outputDir.resolve("expected"), smallBatches().build(), skippedPatches);
+        assertEquals(0, skippedPatches.get());
+
+        final AnalysisResult actual = analyzeMinerFilter(
+                repo,
+                outputDir.resolve("actual"),
+                smallBatches().setVariabilityPrescan(true).setLazyPatchParsing(true).build(),
+                skippedPatches
+        );
+
+        assertTrue(skippedPatches.get() > 0);
+        assertSameResults(expected, actual);
+        assertTrue(expected.get(ExplainedFilterSummary.KEY).snapshot().values().stream().anyMatch(count -> count > 0));
+        assertEquals(
+                expected.get(ExplainedFilterSummary.KEY).snapshot(),
+                actual.get(ExplainedFilterSummary.KEY).snapshot()
+        );
+
+        final List<String> lineGraphs = exportedLineGraphs(outputDir.resolve("expected"));
+        assertTrue(lineGraphs.stream().anyMatch(lineGraph -> !lineGraph.isBlank()));
+        assertEquals(lineGraphs, exportedLineGraphs(outputDir.resolve("actual")));
+    }
+
+    @Test
+    public void testTimingsAreRecordedAndExported(@TempDir Path outputDir) throws IOException {
+        final AnalysisResult result = analyze(repo(), outputDir, smallBatches().setRecordTimings(true).build());
+        final TimingResult timings = result.get(TimingResult.KEY);
+        assertTrue(timings.getSeconds(Analysis.PARSING_TIME) > 0);
+        assertTrue(timings.getSeconds("StatisticsAnalysis in " + Analysis.Phase.PATCH) > 0);
+
+        final AnalysisResult exported = new AnalysisResult();
+        exported.append(TimingResult.KEY, new TimingResult());
+        exported.setFrom(outputDir.resolve(Analysis.TOTAL_RESULTS_FILE_NAME));
+        assertEquals(timings.getSeconds().keySet(), exported.get(TimingResult.KEY).getSeconds().keySet());
+    }
+
+    @Test
+    public void testTimingsAreOptIn(@TempDir Path outputDir) {
+        assertNull(analyze(repo(), outputDir, smallBatches().build()).get(TimingResult.KEY));
+    }
+
+    @Test
+    public void testResumeSkipsFinishedBatches(@TempDir Path outputDir) throws IOException {
+        final Repository repo = repo();
+        final AnalysisResult expected = analyze(repo, outputDir.resolve("expected"), smallBatches().build());
+
+        final Path resumedDir = outputDir.resolve("resumed");
+        final ExecutionOptions resume = smallBatches().setResume(true).build();
+        analyze(repo, resumedDir, resume);
+
+        // Simulate an interruption after the first two batches were finished.
+        final Path manifest = resumedDir.resolve(BatchManifest.FILE_NAME);
+        final List<String> allBatches = Files.readAllLines(manifest);
+        Files.write(manifest, allBatches.subList(0, 3));
+
+        assertSameResults(expected, analyze(repo, resumedDir, resume));
+
+        // Each batch is processed exactly once.
+        final List<String> resumedBatches = Files.readAllLines(manifest);
+        assertEquals(allBatches.size(), resumedBatches.size());
+        assertEquals(new HashSet<>(allBatches), new HashSet<>(resumedBatches));
+    }
+
+    @ParameterizedTest
+    @MethodSource("executionOptions")
+    public void testInterleavedRepositoriesDontChangeResults(final ExecutionOptions options, @TempDir Path outputDir) {
+        final AnalysisResult expected = analyze(repo(), outputDir.resolve("expected"), smallBatches().build());
+
+        final List<Supplier<Analysis>> analyses = new ArrayList<>();
+        for (int i = 0; i < 3; ++i) {
+            final Repository repo = repo();
+            final Path repoOutputDir = outputDir.resolve("interleaved" + i);
+            analyses.add(() -> new Analysis(
+                    "AnalysisTest",
+                    new ArrayList<>(List.of(new StatisticsAnalysis())),
+                    repo,
+                    repoOutputDir
+            ));
+        }
+
+        final List<AnalysisResult> results = Analysis.forEachCommit(analyses, options);
+        assertEquals(analyses.size(), results.size());
+        for (int i = 0; i < results.size(); ++i) {
+            assertSameResults(expected, results.get(i));
+            assertTrue(Files.exists(outputDir.resolve("interleaved" + i).resolve(Analysis.TOTAL_RESULTS_FILE_NAME)));
+        }
+    }
+
+    @Test
+    public void testMergedShardsEqualFullAnalysis(@TempDir Path outputDir) throws IOException {
+        final Repository repo = repo();
+        final AnalysisResult expected = analyze(repo, outputDir.resolve("expected"), smallBatches().build());
+
+        final Path shardedDir = outputDir.resolve("sharded");
+        final int shardCount = 3;
+        for (int i = 0; i < shardCount; ++i) {
+            final Shard shard = new Shard(i, shardCount);
+            analyze(repo, shard.getOutputDirectory(shardedDir), smallBatches().setShard(shard).build());
+        }
+
+        final ExecutionOptions merge = smallBatches().setShard(new Shard(0, shardCount)).setMergeShards(true).build();
+        assertSameResults(expected, analyze(repo, shardedDir, merge));
+
+        final AnalysisResult exported = new AnalysisResult();
+        exported.append(StatisticsAnalysis.RESULT, new StatisticsAnalysis.Result());
+        exported.setFrom(shardedDir.resolve(Analysis.TOTAL_RESULTS_FILE_NAME));
+        assertSameResults(expected, exported);
+    }
+
+    @Test
+    public void testTimedOutCommitsAreRecorded(@TempDir Path outputDir) throws IOException {
+        final ExecutionOptions options = smallBatches().setCommitTimeout(Duration.ofNanos(1)).build();
+        final AnalysisResult result = analyze(repo(), outputDir, options);
+
+        final int timeouts = result.diffErrors.getOrDefault(DiffError.TIMEOUT, 0);
+        assertTrue(timeouts > 0);
+        assertEquals(timeouts, Files.readAllLines(outputDir.resolve(Analysis.SLOW_COMMITS_FILE_NAME)).size());
+    }
+
+    @Test
+    public void testShardParsing() {
+        assertEquals(new Shard(2, 4), Shard.parse("2/4"));
+        assertThrows(IllegalArgumentException.class, () -> Shard.parse("4/4"));
+        assertThrows(IllegalArgumentException.class, () -> Shard.parse("1"));
+    }
+
+    @Test
+    public void testIncrementalAnalysisMergesNewCommits(@TempDir Path outputDir) throws Exception {
+        final AnalysisResult expected = analyze(repo(), outputDir.resolve("expected"), smallBatches().build());
+
+        // Work on a clone such that HEAD can be moved without affecting other tests.
+        final Path clone = outputDir.resolve("clone");
+        try (Git git = Git.cloneRepository()
+                .setURI(REPOS_DIR.resolve("test-spl").toUri().toString())
+                .setDirectory(clone.toFile())
+                .setBare(true)
+                .call()) {
+            final ObjectId head = git.getRepository().resolve(org.eclipse.jgit.lib.Constants.HEAD);
+            final ObjectId olderHead = git.getRepository().resolve(org.eclipse.jgit.lib.Constants.HEAD + "~3");
+            final Repository repo = Repository
+                    .fromDirectory(clone, "test-spl")
+                    .setDiffFilter(DiffFilter.ALLOW_ALL)
+                    .setParseOptions(PatchDiffParseOptions.Default);
+            final Path incrementalDir = outputDir.resolve("incremental");
+            final ExecutionOptions incremental = smallBatches().setIncremental(true).build();
+
+            moveHead(git, olderHead);
+            analyze(repo, incrementalDir, incremental);
+
+            moveHead(git, head);
+            assertSameResults(expected, analyze(repo, incrementalDir, incremental));
+            assertEquals(head.getName(), Files.readString(incrementalDir.resolve(Analysis.ANALYZED_HEAD_FILE_NAME)));
+
+            // Without new commits, the previous results are kept.
+            assertSameResults(expected, analyze(repo, incrementalDir, incremental));
+        }
+    }
+
+    private static void moveHead(final Git git, final ObjectId commit) throws IOException {
+        final RefUpdate update = git.getRepository().updateRef(org.eclipse.jgit.lib.Constants.HEAD, true);
+        update.setNewObjectId(commit);
+        update.forceUpdate();
+    }
+}
@@ -1,19 +1,27 @@
 import org.variantsync.diffdetective.error.UnparseableFormulaException;
+import org.prop4j.Literal;
+import org.prop4j.Node;
+import org.variantsync.diffdetective.feature.CPPAnnotationParser;
 import org.variantsync.diffdetective.feature.CPPDiffLineFormulaExtractor;
+import org.variantsync.diffdetective.feature.FormulaCache;
+import org.variantsync.diffdetective.feature.PropositionalFormulaParser;
 import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.util.List;
 
 public class CPPParserTest {
-    private static record TestCase(String formula, String expected) {}
-    private static record ThrowingTestCase(String formula) {}
+    static record TestCase(String formula, String expected) {}
+    static record ThrowingTestCase(String formula) {}
 
-    private static List<TestCase> testCases() {
+    static List<TestCase> testCases() {
         return List.of(
             new TestCase("#if A", "A"),
             new TestCase("#ifdef A", "A"),
@@ -110,7 +118,7 @@ public class CPPParserTest {
         );
     }
 
-    private static List<ThrowingTestCase> throwingTestCases() {
+    static List<ThrowingTestCase> throwingTestCases() {
         return List.of(
             // Invalid macro
             new ThrowingTestCase(""),
@@ -126,7 +134,7 @@ public class CPPParserTest {
         );
     }
 
-    private static List<TestCase> wontfixTestCases() {
+    static List<TestCase> wontfixTestCases() {
         return List.of(
             new TestCase("#if A == '1'", "A__EQ____TICK__1__TICK__"),
             new TestCase("#if A && (B - (C || D))", "A&&(B__MINUS__LB__C__LOR__D__RB__)")
@@ -160,4 +168,72 @@ public class CPPParserTest {
         );
     }
 
+    @ParameterizedTest
+    @MethodSource("testCases")
+    public void cachedTestCase(TestCase testCase) throws UnparseableFormulaException {
+        final var uncached = new CPPAnnotationParser(PropositionalFormulaParser.Default, new CPPDiffLineFormulaExtractor(), 0);
+        final var cached = new CPPAnnotationParser(PropositionalFormulaParser.Default, new CPPDiffLineFormulaExtractor(), 16);
+        final Node expected = uncached.parseDiffLine(testCase.formula());
+
+        // All lines differ only in their prefix, so all but the first one are cache hits.
+        final Node first = cached.parseDiffLine(testCase.formula());
+        for (final String line : List.of(testCase.formula(), "+" + testCase.formula(), "- \t" + testCase.formula())) {
+            final Node formula = cached.parseDiffLine(line);
+            assertEquals(expected, formula);
+            assertNotSame(first, formula);
+        }
+        assertEquals(expected, first);
+        assertEquals(3, cached.getFormulaCache().getHits());
+        assertEquals(1, cached.getFormulaCache().getMisses());
+    }
+
+    @ParameterizedTest
+    @MethodSource("throwingTestCases")
+    public void cachedThrowingTestCase(ThrowingTestCase testCase) {
+        final var cached = new CPPAnnotationParser(PropositionalFormulaParser.Default, new CPPDiffLineFormulaExtractor(), 16);
+        for (int i = 0; i < 2; ++i) {
+            assertThrows(UnparseableFormulaException.class, () ->
+                cached.parseDiffLine(testCase.formula())
+            );
+        }
+        assertEquals(0, cached.getFormulaCache().getHits());
+    }
+
+    @ParameterizedTest
+    @MethodSource("testCases")
+    public void uncachedTestCase(TestCase testCase) throws UnparseableFormulaException {
+        final var uncached = new CPPAnnotationParser(PropositionalFormulaParser.Default, new CPPDiffLineFormulaExtractor());
+        final var disabledCache = new CPPAnnotationParser(PropositionalFormulaParser.Default, new CPPDiffLineFormulaExtractor(), 0);
+        assertNull(uncached.getFormulaCache());
+        assertNull(disabledCache.getFormulaCache());
+        assertNull(new CPPAnnotationParser().getFormulaCache());
+
+        for (final String line : List.of(testCase.formula(), "+" + testCase.formula())) {
+            assertEquals(uncached.parseDiffLine(line), disabledCache.parseDiffLine(line));
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("throwingTestCases")
+    public void uncachedThrowingTestCase(ThrowingTestCase testCase) {
+        for (final var parser : List.of(
+                new CPPAnnotationParser(PropositionalFormulaParser.Default, new CPPDiffLineFormulaExtractor()),
+                new CPPAnnotationParser(PropositionalFormulaParser.Default, new CPPDiffLineFormulaExtractor(), 0))) {
+            assertThrows(UnparseableFormulaException.class, () ->
+                parser.parseDiffLine(testCase.formula())
+            );
+        }
+    }
+
+    @Test
+    public void formulaCacheIsClearedWhenFull() {
+        final var cache = new FormulaCache(2);
+        cache.put("#if A", new Literal("A"));
+        cache.put("#if B", new Literal("B"));
+        cache.put("#if C", new Literal("C"));
+
+        assertNull(cache.lookup("#if A"));
+        assertNull(cache.lookup("#if B"));
+        assertEquals(new Literal("C"), cache.lookup("#if C"));
+    }
 }
@@ -0,0 +1,62 @@
+import org.junit.jupiter.api.Test;
+import org.variantsync.diffdetective.error.DeadlineExceededException;
+import org.variantsync.diffdetective.util.Deadline;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeadlineTest {
+    private static final Duration LONG = Duration.ofHours(1);
+    private static final Duration EXPIRED = Duration.ofNanos(1);
+
+    @Test
+    public void testNoDeadline() {
+        assertSame(Deadline.NONE, Deadline.current());
+        assertFalse(Deadline.NONE.isExceeded());
+        assertDoesNotThrow(Deadline::check);
+    }
+
+    @Test
+    public void testNestedDeadlinesRestoreTheirParent() {
+        try (Deadline outer = Deadline.start(LONG)) {
+            assertSame(outer, Deadline.current());
+
+            try (Deadline inner = Deadline.start(EXPIRED)) {
+                assertTrue(inner.isExceeded());
+                assertThrows(DeadlineExceededException.class, Deadline::check);
+            }
+
+            assertSame(outer, Deadline.current());
+            assertDoesNotThrow(Deadline::check);
+        }
+
+        assertSame(Deadline.NONE, Deadline.current());
+    }
+
+    @Test
+    public void testNestedDeadlineDoesNotOutliveItsParent() {
+        try (Deadline outer = Deadline.start(EXPIRED); Deadline inner = Deadline.start(LONG)) {
+            assertTrue(inner.isExceeded());
+        }
+
+        try (Deadline outer = Deadline.start(EXPIRED); Deadline unlimited = Deadline.start(Duration.ZERO)) {
+            assertTrue(unlimited.isExceeded());
+        }
+    }
+
+    @Test
+    public void testDeadlineCanBeTransferredToOtherThreads() throws InterruptedException {
+        try (Deadline expired = Deadline.start(EXPIRED)) {
+            final boolean[] exceeded = new boolean[1];
+            final Thread worker = new Thread(() -> {
+                try (Deadline transferred = Deadline.start(expired, LONG)) {
+                    exceeded[0] = transferred.isExceeded();
+                }
+            });
+            worker.start();
+            worker.join();
+            assertTrue(exceeded[0]);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.prop4j.And;
+import org.prop4j.Literal;
+import org.variantsync.diffdetective.analysis.Analysis;
+import org.variantsync.diffdetective.analysis.ExecutionOptions;
+import org.variantsync.diffdetective.analysis.StatisticsAnalysis;
+import org.variantsync.diffdetective.analysis.logic.SAT;
+import org.variantsync.diffdetective.analysis.monitoring.CommitAnalyzedEvent;
+import org.variantsync.diffdetective.analysis.monitoring.HookExecutedEvent;
+import org.variantsync.diffdetective.analysis.monitoring.PatchParsedEvent;
+import org.variantsync.diffdetective.analysis.monitoring.SatQueryEvent;
+import org.variantsync.diffdetective.datasets.PatchDiffParseOptions;
+import org.variantsync.diffdetective.datasets.Repository;
+import org.variantsync.diffdetective.diff.git.DiffFilter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FlightRecorderEventsTest {
+    private static final Path REPOS_DIR = Constants.RESOURCE_DIR.resolve("repos");
+
+    @Test
+    public void testEventsAreEmitted(@TempDir Path outputDir) throws IOException {
+        final Repository repo = Repository
+                .fromZip(REPOS_DIR.resolve("test-spl.zip"), "test-spl")
+                .setDiffFilter(DiffFilter.ALLOW_ALL)
+                .setParseOptions(PatchDiffParseOptions.Default);
+
+        final Path recordingFile = outputDir.resolve("analysis.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(CommitAnalyzedEvent.NAME);
+            recording.enable(PatchParsedEvent.NAME);
+            recording.enable(SatQueryEvent.NAME);
+            recording.enable(HookExecutedEvent.NAME);
+            recording.start();
+
+            Analysis.forEachCommit(
+                    () -> new Analysis(
+                            "FlightRecorderEventsTest",
+                            new ArrayList<>(List.of(new StatisticsAnalysis())),
+                            repo,
+                            outputDir.resolve("results")
+                    ),
+                    new ExecutionOptions.Builder().setNThreads(1).build()
+            );
+            assertTrue(SAT.isSatisfiable(new And(
+                    new Literal("A"), new Literal("B"), new Literal("C"), new Literal("D"),
+                    new Literal("E"), new Literal("F"), new Literal("G"), new Literal("H"),
+                    new Literal("I"), new Literal("J"), new Literal("K"), new Literal("L"),
+                    new Literal("M"), new Literal("N"), new Literal("O"), new Literal("P")
+            )));
+
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+
+        final List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+        assertTrue(events.stream().anyMatch(e ->
+                e.getEventType().getName().equals(CommitAnalyzedEvent.NAME)
+                        && e.getString("repository").equals("test-spl")));
+        assertTrue(events.stream().anyMatch(e ->
+                e.getEventType().getName().equals(PatchParsedEvent.NAME)
+                        && e.getInt("lines") > 0 && e.getInt("nodes") > 0));
+        assertTrue(events.stream().anyMatch(e ->
+                e.getEventType().getName().equals(SatQueryEvent.NAME)
+                        && e.getInt("literals") == 16 && e.getString("strategy").equals("Sat4J")));
+        assertTrue(events.stream().anyMatch(e ->
+                e.getEventType().getName().equals(HookExecutedEvent.NAME)
+                        && e.getClass("hook").getName().equals(StatisticsAnalysis.class.getName())));
+    }
+}
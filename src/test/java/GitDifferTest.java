@@ -1,15 +1,33 @@
 import org.apache.commons.io.IOUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.revwalk.RevCommit;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.variantsync.diffdetective.analysis.CommitDiffPipeline;
+import org.variantsync.diffdetective.analysis.ExecutionOptions;
+import org.variantsync.diffdetective.analysis.ExecutionOptions.LoadingExecutor;
 import org.variantsync.diffdetective.datasets.PatchDiffParseOptions;
+import org.variantsync.diffdetective.datasets.PatchDiffParseOptions.RenameDetection;
 import org.variantsync.diffdetective.datasets.Repository;
 import org.variantsync.diffdetective.diff.git.CommitDiff;
 import org.variantsync.diffdetective.diff.git.DiffFilter;
+import org.variantsync.diffdetective.diff.git.GitDiffer;
+import org.variantsync.diffdetective.diff.git.LoadedCommitDiff;
 import org.variantsync.diffdetective.diff.git.PatchDiff;
+import org.variantsync.diffdetective.diff.git.VariabilityPrescan;
+import org.variantsync.diffdetective.diff.git.VariationDiffCache;
+import org.variantsync.diffdetective.diff.result.CommitDiffResult;
+import org.variantsync.diffdetective.diff.result.DiffError;
 import org.variantsync.diffdetective.diff.result.DiffParseException;
 import org.variantsync.diffdetective.util.IO;
 import org.variantsync.diffdetective.variation.DiffLinesLabel;
+import org.variantsync.diffdetective.variation.diff.Time;
+import org.variantsync.diffdetective.variation.diff.filter.VariationDiffFilter;
 import org.variantsync.diffdetective.variation.diff.VariationDiff;
 import org.variantsync.diffdetective.variation.diff.parse.VariationDiffParseOptions;
 import org.variantsync.diffdetective.variation.diff.parse.VariationDiffParser;
@@ -17,11 +35,24 @@ import org.variantsync.diffdetective.variation.diff.serialize.Format;
 import org.variantsync.diffdetective.variation.diff.serialize.LineGraphExporter;
 import org.variantsync.diffdetective.variation.diff.serialize.edgeformat.ChildOrderEdgeFormat;
 import org.variantsync.diffdetective.variation.diff.serialize.nodeformat.FullNodeFormat;
+import org.variantsync.diffdetective.variation.diff.transform.CutNonEditedSubtrees;
+import org.variantsync.diffdetective.variation.diff.transform.VariationDiffTransformer;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.fail;
@@ -70,6 +101,441 @@ public class GitDifferTest {
         }
     }
 
+    @ParameterizedTest
+    @MethodSource("testCommits")
+    public void testParallelPatchParsingKeepsOrder(String commitHash) throws IOException {
+        final Repository repo = repo();
+        final GitDiffer differ = new GitDiffer(repo);
+        final LoadedCommitDiff loaded = differ.loadCommitDiff(differ.getCommit(commitHash)).getSuccess();
+
+        final CommitDiffResult expected = GitDiffer.parseCommitDiff(loaded, repo.getParseOptions());
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        final CommitDiffResult actual;
+        try {
+            actual = GitDiffer.parseCommitDiff(loaded, repo.getParseOptions(), pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        Assertions.assertEquals(expected.errors(), actual.errors());
+        final List<PatchDiff> expectedPatches = expected.diff().orElseThrow().getPatchDiffs();
+        final List<PatchDiff> actualPatches = actual.diff().orElseThrow().getPatchDiffs();
+        Assertions.assertEquals(expectedPatches.size(), actualPatches.size());
+        for (int i = 0; i < expectedPatches.size(); ++i) {
+            Assertions.assertEquals(expectedPatches.get(i).getFileName(Time.BEFORE), actualPatches.get(i).getFileName(Time.BEFORE));
+            Assertions.assertEquals(expectedPatches.get(i).getFileName(Time.AFTER), actualPatches.get(i).getFileName(Time.AFTER));
+            Assertions.assertEquals(expectedPatches.get(i).getDiff(), actualPatches.get(i).getDiff());
+        }
+    }
+
+    @Test
+    public void testLineDiffsMatchGitDiffs() throws IOException {
+        final Repository repo = repo();
+        final GitDiffer differ = new GitDiffer(repo);
+        int lineDiffs = 0;
+        for (final RevCommit commit : differ.yieldRevCommits()) {
+            if (commit.getParentCount() > 0) {
+                final RevCommit parent = differ.getCommit(commit.getParent(0).getName());
+                lineDiffs += assertLineDiffsMatchGitDiffs(differ.getJGitRepo(), parent, commit);
+            }
+        }
+        Assertions.assertTrue(lineDiffs > 0);
+    }
+
+    @Test
+    public void testSessionsCanBeClosedAndReopened() throws IOException {
+        final Repository repo = repo();
+        final GitDiffer differ = new GitDiffer(repo);
+        final RevCommit commit = differ.getCommit(commitIDs[0]);
+        final LoadedCommitDiff expected = GitDiffer.loadCommitDiffFromFirstParent(differ.getJGitRepo(), repo.getDiffFilter(), commit).getSuccess();
+
+        for (int i = 0; i < 2; ++i) {
+            final LoadedCommitDiff loaded = differ.loadCommitDiff(commit).getSuccess();
+            Assertions.assertEquals(expected.parentCommit(), loaded.parentCommit());
+            Assertions.assertEquals(
+                    expected.patches().stream().map(LoadedCommitDiff.Patch::beforeFullFile).toList(),
+                    loaded.patches().stream().map(LoadedCommitDiff.Patch::beforeFullFile).toList()
+            );
+            differ.close();
+        }
+    }
+
+    @Test
+    public void testSessionsAreBoundedByCommitsInFlight() throws IOException {
+        final int commitsInFlight = 2;
+        final ExecutionOptions options = new ExecutionOptions.Builder()
+                .setLoadingExecutor(LoadingExecutor.VIRTUAL_THREADS)
+                .setParsingThreads(2)
+                .setCommitsInFlightPerBatch(commitsInFlight)
+                .build();
+        final GitDiffer differ = new GitDiffer(repo());
+
+        // Load the history several times so each commit is loaded by a new thread.
+        final List<RevCommit> commits = new ArrayList<>();
+        for (int i = 0; i < 20; ++i) {
+            differ.yieldRevCommits().forEach(commits::add);
+        }
+
+        try (CommitDiffPipeline pipeline = new CommitDiffPipeline(options)) {
+            final Iterator<Supplier<CommitDiffResult>> results = pipeline.schedule(differ, commits);
+            int loadedCommits = 0;
+            while (results.hasNext()) {
+                results.next().get();
+                ++loadedCommits;
+                Assertions.assertTrue(differ.getOpenSessions() <= commitsInFlight);
+            }
+            Assertions.assertEquals(commits.size(), loadedCommits);
+        }
+
+        Assertions.assertTrue(commits.size() > 10 * commitsInFlight);
+        Assertions.assertTrue(differ.getOpenSessions() <= commitsInFlight);
+        differ.close();
+        Assertions.assertEquals(0, differ.getOpenSessions());
+    }
+
+    @Test
+    public void testVariationDiffCacheReturnsParsedVariationDiffs(@TempDir Path cacheDir) throws IOException {
+        final Repository repo = repo().setParseOptions(PatchDiffParseOptions.Default);
+        final List<String> expected = parseHistory(new GitDiffer(repo));
+
+        final VariationDiffCache cache = new VariationDiffCache(1000, cacheDir);
+        for (int i = 0; i < 2; ++i) {
+            final GitDiffer differ = new GitDiffer(repo);
+            differ.setVariationDiffCache(cache);
+            Assertions.assertEquals(expected, parseHistory(differ));
+        }
+        Assertions.assertTrue(cache.getMemoryHits() >= cache.getMisses());
+        Assertions.assertEquals(0, cache.getDiskHits());
+
+        // Most diffs are evicted from memory and have to be restored from disk.
+        final VariationDiffCache diskCache = new VariationDiffCache(1, cacheDir);
+        final GitDiffer differ = new GitDiffer(repo);
+        differ.setVariationDiffCache(diskCache);
+        Assertions.assertEquals(expected, parseHistory(differ));
+        Assertions.assertEquals(0, diskCache.getMisses());
+        Assertions.assertTrue(diskCache.getDiskHits() > 0);
+    }
+
+    /**
+     * Parses all commits of the repository of {@code differ} and returns their variation diffs
+     * as line graphs.
+     */
+    private static List<String> parseHistory(GitDiffer differ) {
+        final List<String> variationDiffs = new ArrayList<>();
+        for (final RevCommit commit : differ.yieldRevCommits()) {
+            final CommitDiffResult result = differ.parseCommitDiff(differ.loadCommitDiff(commit));
+            for (final PatchDiff patch : result.diff().orElseThrow().getPatchDiffs()) {
+                variationDiffs.add(toLineGraph(patch.getVariationDiff()));
+            }
+        }
+        differ.close();
+        return variationDiffs;
+    }
+
+    @Test
+    public void testLazyPatchParsingParsesOnAccess() throws IOException {
+        final Repository repo = repo();
+        final GitDiffer eagerDiffer = new GitDiffer(repo);
+        final GitDiffer lazyDiffer = new GitDiffer(repo);
+        lazyDiffer.setLazyPatchParsing(true);
+
+        for (final RevCommit commit : eagerDiffer.yieldRevCommits()) {
+            final CommitDiffResult eager = eagerDiffer.parseCommitDiff(eagerDiffer.loadCommitDiff(commit));
+            final CommitDiffResult lazy = lazyDiffer.parseCommitDiff(lazyDiffer.loadCommitDiff(commit));
+
+            final List<PatchDiff> lazyPatches = lazy.diff().orElseThrow().getPatchDiffs();
+            Assertions.assertTrue(lazyPatches.stream().noneMatch(PatchDiff::isParsed));
+
+            final List<String> expected = new ArrayList<>();
+            eager.diff().orElseThrow().getPatchDiffs().forEach(patch -> expected.add(toLineGraph(patch.getVariationDiff())));
+            final List<String> actual = new ArrayList<>();
+            final List<DiffError> errors = new ArrayList<>(lazy.errors());
+            for (final PatchDiff patch : lazyPatches) {
+                if (patch.isValid()) {
+                    actual.add(toLineGraph(patch.getVariationDiff()));
+                    Assertions.assertSame(patch, patch.getVariationDiff().getSource());
+                } else {
+                    errors.add(patch.getParseError().orElseThrow());
+                }
+                Assertions.assertTrue(patch.isParsed());
+            }
+
+            Assertions.assertEquals(expected, actual);
+            Assertions.assertEquals(eager.errors(), errors);
+        }
+
+        eagerDiffer.close();
+        lazyDiffer.close();
+    }
+
+    @Test
+    public void testTreeFilterKeepsAcceptedPatches() throws IOException {
+        final Repository repo = repo();
+        final DiffFilter diffFilter = new DiffFilter.Builder()
+                .allowedChangeTypes(DiffEntry.ChangeType.MODIFY)
+                .allowedFileExtensions("c")
+                .build();
+        Assertions.assertTrue(diffFilter.canFilterTreesBeforeRenameDetection());
+
+        final GitDiffer differ = new GitDiffer(repo);
+        for (final RevCommit commit : differ.yieldRevCommits()) {
+            final List<String> expected = GitDiffer.loadCommitDiffFromFirstParent(differ.getJGitRepo(), DiffFilter.ALLOW_ALL, commit)
+                    .getSuccess().patches().stream()
+                    .filter(patch -> diffFilter.filter(patch.diffEntry()))
+                    .map(LoadedCommitDiff.Patch::gitDiff)
+                    .toList();
+            final List<String> actual = GitDiffer.loadCommitDiffFromFirstParent(differ.getJGitRepo(), diffFilter, commit)
+                    .getSuccess().patches().stream()
+                    .map(LoadedCommitDiff.Patch::gitDiff)
+                    .toList();
+            Assertions.assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void testCommitsWithoutMatchingFilesAreSkipped() throws IOException {
+        final DiffFilter diffFilter = new DiffFilter.Builder()
+                .allowedFileExtensions("c")
+                .allowCommitsWithoutMatchingFiles(false)
+                .build();
+        final GitDiffer allCommits = new GitDiffer(repo());
+        final GitDiffer matchingCommits = new GitDiffer(repo().setDiffFilter(diffFilter));
+
+        final List<RevCommit> included = new ArrayList<>();
+        matchingCommits.yieldRevCommits().forEach(included::add);
+        int skipped = 0;
+        for (final RevCommit commit : allCommits.yieldRevCommits()) {
+            final int patches = GitDiffer.loadCommitDiffFromFirstParent(allCommits.getJGitRepo(), diffFilter, commit)
+                    .getSuccess().patches().size();
+            if (included.contains(commit)) {
+                Assertions.assertTrue(patches > 0);
+            } else {
+                Assertions.assertEquals(0, patches);
+                ++skipped;
+            }
+        }
+        Assertions.assertTrue(skipped > 0);
+    }
+
+    public static Stream<Arguments> renameDetections() {
+        return Stream.of(
+                Arguments.of(RenameDetection.Default, 2, RenameDetection.Outcome.SIMILARITY),
+                Arguments.of(RenameDetection.Exact, 1, RenameDetection.Outcome.EXACT),
+                Arguments.of(RenameDetection.Off, 0, RenameDetection.Outcome.DISABLED),
+                // test-spl has only a single added and deleted file per commit
+                Arguments.of(RenameDetection.similarity(50, 0), 2, RenameDetection.Outcome.SIMILARITY)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("renameDetections")
+    public void testRenameDetection(RenameDetection renameDetection, int expectedRenames, RenameDetection.Outcome expectedOutcome) throws IOException {
+        final Repository repo = repo();
+        repo.setParseOptions(repo.getParseOptions().withRenameDetection(renameDetection));
+        final GitDiffer differ = new GitDiffer(repo);
+
+        int renames = 0;
+        int commits = 0;
+        for (final RevCommit commit : differ.yieldRevCommits()) {
+            final LoadedCommitDiff loaded = differ.loadCommitDiff(commit).getSuccess();
+            renames += (int) loaded.patches().stream()
+                    .filter(patch -> patch.diffEntry().getChangeType() == DiffEntry.ChangeType.RENAME)
+                    .count();
+            ++commits;
+        }
+
+        Assertions.assertEquals(expectedRenames, renames);
+        Assertions.assertTrue(differ.getRenameDetectionCount(expectedOutcome) > 0);
+        Assertions.assertEquals(commits, Arrays.stream(RenameDetection.Outcome.values()).mapToLong(differ::getRenameDetectionCount).sum());
+    }
+
+    @Test
+    public void testRenameLimitFallsBackToExactRenames(@TempDir Path dir) throws Exception {
+        try (Git git = Git.init().setDirectory(dir.toFile()).call()) {
+            final String content = IntStream.range(0, 20).mapToObj(i -> "line " + i + "\n").collect(Collectors.joining());
+            Files.writeString(dir.resolve("a.c"), content);
+            Files.writeString(dir.resolve("b.c"), content + "b\n");
+            git.add().addFilepattern(".").call();
+            final RevCommit parent = git.commit().setMessage("add").setSign(false).call();
+
+            Files.move(dir.resolve("a.c"), dir.resolve("c.c"));
+            Files.writeString(dir.resolve("c.c"), "changed\n", StandardOpenOption.APPEND);
+            Files.move(dir.resolve("b.c"), dir.resolve("d.c"));
+            Files.writeString(dir.resolve("d.c"), "changed\n", StandardOpenOption.APPEND);
+            git.add().addFilepattern(".").call();
+            git.add().setUpdate(true).addFilepattern(".").call();
+            final RevCommit child = git.commit().setMessage("rename").setSign(false).call();
+
+            final LoadedCommitDiff belowLimit = GitDiffer.loadCommitDiff(git, DiffFilter.ALLOW_ALL, parent, child,
+                    PatchDiffParseOptions.Default.withRenameDetection(RenameDetection.similarity(50, 2))).getSuccess();
+            Assertions.assertEquals(RenameDetection.Outcome.SIMILARITY, belowLimit.renameDetection());
+            Assertions.assertEquals(2, belowLimit.patches().size());
+
+            final LoadedCommitDiff aboveLimit = GitDiffer.loadCommitDiff(git, DiffFilter.ALLOW_ALL, parent, child,
+                    PatchDiffParseOptions.Default.withRenameDetection(RenameDetection.similarity(50, 1))).getSuccess();
+            Assertions.assertEquals(RenameDetection.Outcome.EXACT_ABOVE_RENAME_LIMIT, aboveLimit.renameDetection());
+            Assertions.assertEquals(4, aboveLimit.patches().size());
+        }
+    }
+
+    public static Stream<Arguments> lineDiffEdgeCases() {
+        final String longFile = IntStream.range(0, 30).mapToObj(i -> "line " + i + "\n").collect(Collectors.joining());
+        return Stream.of(
+                Arguments.of(null, "a\n#if A\nb\n#endif\n"),
+                Arguments.of("a\n#if A\nb\n#endif\n", null),
+                Arguments.of(null, ""),
+                Arguments.of("", null),
+                Arguments.of("", "a\n"),
+                Arguments.of("a\n#if A\nb\n#endif\n", "a\n#if A\nb\n#endif\n#if B\nc\n#endif\n"),
+                Arguments.of("a\nb", "a\nb\n"),
+                Arguments.of("a\nb\n", "a\nc"),
+                Arguments.of("a\r\n#if A\r\nb\r\n#endif\r\n", "a\r\n#if A\r\nc\r\n#endif\r\n"),
+                Arguments.of("\uFEFFa\n#if A\nb\n#endif\n", "\uFEFFa\n#if A\nc\n#endif\n"),
+                Arguments.of("a\rb\n", "a\rc\n"),
+                Arguments.of(longFile, longFile.replace("line 2\n", "#if A\n").replace("line 25\n", "#endif\n"))
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("lineDiffEdgeCases")
+    public void testLineDiffsMatchGitDiffsOnEdgeCases(String before, String after, @TempDir Path dir) throws Exception {
+        try (Git git = Git.init().setDirectory(dir.toFile()).call()) {
+            final RevCommit parent = commitFile(git, dir, before);
+            final RevCommit child = commitFile(git, dir, after);
+            assertLineDiffsMatchGitDiffs(git, parent, child);
+        }
+    }
+
+    private static Stream<Arguments> variabilityPrescanCases() {
+        return Stream.of(
+                Arguments.of("a\n#if A\nb\n#endif\n", "a\n#if A\nc\n#endif\n", false),
+                Arguments.of("a\n", "a\n  b\n", false),
+                Arguments.of("a\n", "a\n#if A\nb\n#endif\n", true),
+                Arguments.of("a\n#if A\nb\n#endif\n", "a\nb\n", true),
+                Arguments.of("a\n# if A\nb\n#  endif\n", "a\n#if A\nb\n#endif\n", true),
+                Arguments.of("#define X 1\n", "#define X 2\n", true),
+                Arguments.of("#if A \\\n && B\nx\n#endif\n", "#if A \\\n && C\nx\n#endif\n", true),
+                Arguments.of("#if A \\\n\n && B\nx\n#endif\n", "#if A \\\n\n && C\nx\n#endif\n", true),
+                Arguments.of("a \\\nb\n#if A\nc\n#endif\n", "d \\\nb\n#if A\nc\n#endif\n", true),
+                Arguments.of("\uFEFFa\n", "\uFEFF#if A\na\n#endif\n", true),
+                Arguments.of("#if A /* a\n b\n */\nx\n#endif\n", "#if A /* a\n c\n */\nx\n#endif\n", true),
+                Arguments.of("a /* a */\nb\n", "a /* a */\nc\n", false),
+                Arguments.of("a\nb\n", "a /* a\nb */\n", true),
+                Arguments.of(null, "a\nb\n", false),
+                Arguments.of("a\r\n#if A\r\nb\r\n#endif\r\n", "a\r\n#if A\r\nc\r\n#endif\r\n", false)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("variabilityPrescanCases")
+    public void testVariabilityPrescan(String before, String after, boolean mayEditVariability, @TempDir Path dir) throws Exception {
+        try (Git git = Git.init().setDirectory(dir.toFile()).call()) {
+            final RevCommit parent = commitFile(git, dir, before);
+            final RevCommit child = commitFile(git, dir, after);
+            final LoadedCommitDiff.Patch patch = GitDiffer.loadCommitDiff(git, DiffFilter.ALLOW_ALL, parent, child, PatchDiffParseOptions.Default)
+                    .getSuccess().patches().get(0);
+            Assertions.assertEquals(mayEditVariability, new VariabilityPrescan().mayEditVariability(patch.lineDiff()));
+
+            final VariationDiff<DiffLinesLabel> variationDiff = VariationDiffParser.createVariationDiff(
+                    patch.lineDiff().fullDiff(patch.diffEntry().getChangeType()),
+                    VariationDiffParseOptions.Default
+            );
+            final boolean editsVariability = variationDiff.anyMatch(node -> node.isAnnotation() && !node.isNon());
+            Assertions.assertTrue(mayEditVariability || !editsVariability);
+        }
+    }
+
+    /**
+     * Patches for which the prescan finds no edits to variability must have no edited annotations
+     * and thus be rejected by {@link VariationDiffFilter#hasAtLeastOneEditToVariability()}.
+     */
+    @Test
+    public void testVariabilityPrescanAgreesWithFilter() {
+        final Repository repo = repo().setParseOptions(PatchDiffParseOptions.Default);
+        final VariabilityPrescan prescan = new VariabilityPrescan();
+        final GitDiffer differ = new GitDiffer(repo);
+        differ.setVariabilityPrescan(prescan);
+
+        int patches = 0;
+        for (final RevCommit commit : differ.yieldRevCommits()) {
+            final CommitDiffResult result = differ.parseCommitDiff(differ.loadCommitDiff(commit));
+            for (final PatchDiff patch : result.diff().orElseThrow().getPatchDiffs()) {
+                ++patches;
+                if (!patch.mayEditVariability()) {
+                    final VariationDiff<DiffLinesLabel> variationDiff = patch.getVariationDiff();
+                    Assertions.assertFalse(variationDiff.anyMatch(node -> node.isAnnotation() && !node.isNon()));
+                    VariationDiffTransformer.apply(List.of(new CutNonEditedSubtrees<>()), variationDiff);
+                    Assertions.assertFalse(VariationDiffFilter.hasAtLeastOneEditToVariability().test(variationDiff));
+                }
+            }
+        }
+        differ.close();
+
+        Assertions.assertEquals(patches, prescan.getScannedPatches());
+        Assertions.assertTrue(prescan.getPatchesWithoutVariabilityEdits() > 0);
+        Assertions.assertTrue(prescan.getPatchesWithoutVariabilityEdits() < patches);
+    }
+
+    private static RevCommit commitFile(Git git, Path dir, String content) throws Exception {
+        final Path file = dir.resolve("file.c");
+        if (content == null) {
+            Files.deleteIfExists(file);
+        } else {
+            Files.writeString(file, content);
+        }
+        git.add().addFilepattern(".").call();
+        git.add().setUpdate(true).addFilepattern(".").call();
+        return git.commit().setMessage("change").setSign(false).setAllowEmpty(true).call();
+    }
+
+    /**
+     * Parses the patches between {@code parent} and {@code child} from their line diffs and
+     * their textual git diffs and asserts that both yield the same variation diffs.
+     *
+     * @return the number of patches loaded as line diffs
+     */
+    private static int assertLineDiffsMatchGitDiffs(Git git, RevCommit parent, RevCommit child) {
+        final PatchDiffParseOptions parseOptions = PatchDiffParseOptions.Default;
+        final LoadedCommitDiff gitDiffs = GitDiffer.loadCommitDiff(git, DiffFilter.ALLOW_ALL, parent, child).getSuccess();
+        final LoadedCommitDiff lineDiffs = GitDiffer.loadCommitDiff(git, DiffFilter.ALLOW_ALL, parent, child, parseOptions).getSuccess();
+        Assertions.assertTrue(gitDiffs.patches().stream().allMatch(patch -> patch.lineDiff() == null));
+        for (final LoadedCommitDiff.Patch patch : lineDiffs.patches()) {
+            if (patch.lineDiff() != null) {
+                final DiffEntry.ChangeType changeType = patch.diffEntry().getChangeType();
+                final Iterator<VariationDiffParser.DiffLine> lines = patch.lineDiff().fullDiff(changeType);
+                int lineCount = 0;
+                for (; lines.hasNext(); lines.next()) {
+                    ++lineCount;
+                }
+                Assertions.assertEquals(patch.lineDiff().getFullDiffLineCount(changeType), lineCount);
+            }
+        }
+
+        final CommitDiffResult expected = GitDiffer.parseCommitDiff(gitDiffs, parseOptions);
+        final CommitDiffResult actual = GitDiffer.parseCommitDiff(lineDiffs, parseOptions);
+        Assertions.assertEquals(expected.errors(), actual.errors());
+
+        final List<PatchDiff> expectedPatches = expected.diff().orElseThrow().getPatchDiffs();
+        final List<PatchDiff> actualPatches = actual.diff().orElseThrow().getPatchDiffs();
+        Assertions.assertEquals(expectedPatches.size(), actualPatches.size());
+        for (int i = 0; i < expectedPatches.size(); ++i) {
+            Assertions.assertEquals(
+                    toLineGraph(expectedPatches.get(i).getVariationDiff()),
+                    toLineGraph(actualPatches.get(i).getVariationDiff()),
+                    "Variation diffs of " + expectedPatches.get(i).getFileName(Time.AFTER) + " in commit " + child.getName() + " differ"
+            );
+        }
+
+        return (int) lineDiffs.patches().stream().filter(patch -> patch.lineDiff() != null).count();
+    }
+
+    private static String toLineGraph(VariationDiff<DiffLinesLabel> variationDiff) {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new LineGraphExporter<>(new Format<>(new FullNodeFormat(), new ChildOrderEdgeFormat<>()))
+                .exportVariationDiff(variationDiff, output);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
     private static Repository repo() {
         final Path repoPath = REPOS_DIR.resolve("test-spl.zip");
         return Repository
@@ -0,0 +1,96 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.variantsync.diffdetective.analysis.Analysis;
+import org.variantsync.diffdetective.analysis.ExecutionOptions;
+import org.variantsync.diffdetective.analysis.StatisticsAnalysis;
+import org.variantsync.diffdetective.analysis.monitoring.LiveMetrics;
+import org.variantsync.diffdetective.datasets.PatchDiffParseOptions;
+import org.variantsync.diffdetective.datasets.Repository;
+import org.variantsync.diffdetective.diff.git.DiffFilter;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LiveMetricsTest {
+    private static final Path REPOS_DIR = Constants.RESOURCE_DIR.resolve("repos");
+
+    private static void analyze(final Path outputDir, final Path metricsFile) {
+        final Repository repo = Repository
+                .fromZip(REPOS_DIR.resolve("test-spl.zip"), "test-spl")
+                .setDiffFilter(DiffFilter.ALLOW_ALL)
+                .setParseOptions(PatchDiffParseOptions.Default);
+
+        Analysis.forEachCommit(
+                () -> new Analysis(
+                        "LiveMetricsTest",
+                        new ArrayList<>(List.of(new StatisticsAnalysis())),
+                        repo,
+                        outputDir
+                ),
+                new ExecutionOptions.Builder()
+                        .setCommitsToProcessPerThread(2)
+                        .setNThreads(2)
+                        .setMetricsFile(metricsFile)
+                        .build()
+        );
+    }
+
+    @Test
+    public void testPrometheusFile(@TempDir Path outputDir) throws IOException {
+        final Path metricsFile = outputDir.resolve("metrics.prom");
+        analyze(outputDir.resolve("results"), metricsFile);
+
+        final String metrics = Files.readString(metricsFile);
+        assertTrue(metrics.contains("# TYPE diffdetective_commits_per_second gauge"));
+        assertTrue(metrics.contains("diffdetective_queue_depth{repository=\"test-spl\"} 0"));
+        assertTrue(metrics.contains("diffdetective_eta_seconds{repository=\"test-spl\"} 0"));
+        assertFalse(metrics.contains("diffdetective_commits{repository=\"test-spl\"} 0\n"));
+    }
+
+    @Test
+    public void testJSONFile(@TempDir Path outputDir) throws IOException {
+        final Path metricsFile = outputDir.resolve("metrics.json");
+        analyze(outputDir.resolve("results"), metricsFile);
+
+        final String metrics = Files.readString(metricsFile);
+        assertTrue(metrics.startsWith("{\"test-spl\": {\"commits\": "));
+        assertTrue(metrics.contains("\"queue_depth\": 0"));
+    }
+
+    @Test
+    public void testHttpEndpoint() throws Exception {
+        final int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        try (LiveMetrics metrics = new LiveMetrics(null, port)) {
+            metrics.update(new LiveMetrics.Snapshot("a \"quoted\" repo", 10, 20, 1.5, 3, 0.25, 2, 0.5, Double.NaN));
+
+            final HttpClient client = HttpClient.newHttpClient();
+            final String prometheus = client.send(
+                    HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + metrics.getPort() + LiveMetrics.PROMETHEUS_PATH)).build(),
+                    HttpResponse.BodyHandlers.ofString()
+            ).body();
+            assertTrue(prometheus.contains("diffdetective_commits_per_second{repository=\"a \\\"quoted\\\" repo\"} 1.5000"));
+            assertTrue(prometheus.contains("diffdetective_eta_seconds{repository=\"a \\\"quoted\\\" repo\"} NaN"));
+
+            final String json = client.send(
+                    HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + metrics.getPort() + LiveMetrics.JSON_PATH)).build(),
+                    HttpResponse.BodyHandlers.ofString()
+            ).body();
+            assertTrue(json.contains("\"patches\": 20"));
+            assertTrue(json.contains("\"eta_seconds\": null"));
+        }
+    }
+}
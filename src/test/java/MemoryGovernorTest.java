@@ -0,0 +1,68 @@
+import org.junit.jupiter.api.Test;
+import org.variantsync.diffdetective.parallel.MemoryGovernor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MemoryGovernorTest {
+    @Test
+    public void testInvalidHighWaterMark() {
+        assertThrows(IllegalArgumentException.class, () -> new MemoryGovernor(0));
+        assertThrows(IllegalArgumentException.class, () -> new MemoryGovernor(1.5));
+    }
+
+    /**
+     * Runs two governed tasks concurrently and returns whether the second one started while the
+     * first one was still running.
+     */
+    private static boolean runsConcurrently(final MemoryGovernor governor) throws Exception {
+        final CountDownLatch firstStarted = new CountDownLatch(1);
+        final CountDownLatch secondStarted = new CountDownLatch(1);
+        final CountDownLatch finishFirst = new CountDownLatch(1);
+
+        final ExecutorService threads = Executors.newFixedThreadPool(2);
+        try {
+            final Future<?> first = threads.submit(governor.govern(() -> {
+                firstStarted.countDown();
+                return finishFirst.await(10, TimeUnit.SECONDS);
+            }));
+            assertTrue(firstStarted.await(10, TimeUnit.SECONDS));
+
+            final Future<?> second = threads.submit(governor.govern(() -> {
+                secondStarted.countDown();
+                return true;
+            }));
+            final boolean concurrent = secondStarted.await(500, TimeUnit.MILLISECONDS);
+
+            finishFirst.countDown();
+            first.get();
+            second.get();
+            return concurrent;
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    @Test
+    public void testTasksRunConcurrentlyBelowTheHighWaterMark() throws Exception {
+        try (MemoryGovernor governor = new MemoryGovernor(1)) {
+            assertFalse(governor.isAboveHighWaterMark());
+            assertTrue(runsConcurrently(governor));
+            assertEquals(0, governor.getThrottledTasks());
+        }
+    }
+
+    @Test
+    public void testTasksWaitAboveTheHighWaterMark() throws Exception {
+        try (MemoryGovernor governor = new MemoryGovernor(Double.MIN_VALUE)) {
+            assertTrue(governor.isAboveHighWaterMark());
+            assertFalse(runsConcurrently(governor));
+            assertEquals(1, governor.getThrottledTasks());
+        }
+    }
+}
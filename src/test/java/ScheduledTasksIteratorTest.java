@@ -0,0 +1,97 @@
+import org.junit.jupiter.api.Test;
+import org.variantsync.diffdetective.parallel.ScheduledTasksIterator;
+import org.variantsync.diffdetective.parallel.ScheduledTasksIterator.ResultOrder;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScheduledTasksIteratorTest {
+    private static final int NUMBER_OF_TASKS = 100;
+
+    /**
+     * Returns an iterator over {@code NUMBER_OF_TASKS} tasks returning their index and counts how
+     * many tasks were requested in {@code requestedTasks}.
+     */
+    private static Iterator<Callable<Integer>> countingTasks(final AtomicInteger requestedTasks) {
+        final Iterator<Integer> indices = IntStream.range(0, NUMBER_OF_TASKS).iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return indices.hasNext();
+            }
+
+            @Override
+            public Callable<Integer> next() {
+                requestedTasks.incrementAndGet();
+                final int index = indices.next();
+                return () -> index;
+            }
+        };
+    }
+
+    @Test
+    public void testUnboundedSchedulesAllTasks() {
+        final var requestedTasks = new AtomicInteger(0);
+        try (var results = new ScheduledTasksIterator<>(countingTasks(requestedTasks), 4)) {
+            assertEquals(NUMBER_OF_TASKS, requestedTasks.get());
+
+            final List<Integer> actual = new ArrayList<>();
+            results.forEachRemaining(actual::add);
+            assertEquals(IntStream.range(0, NUMBER_OF_TASKS).boxed().toList(), actual);
+        }
+    }
+
+    @Test
+    public void testBoundedSchedulesLazily() {
+        final int maxScheduledTasks = 8;
+        final var requestedTasks = new AtomicInteger(0);
+        try (var results = new ScheduledTasksIterator<>(countingTasks(requestedTasks), 4, maxScheduledTasks)) {
+            assertEquals(maxScheduledTasks, requestedTasks.get());
+
+            final List<Integer> actual = new ArrayList<>();
+            while (results.hasNext()) {
+                actual.add(results.next());
+                assertTrue(requestedTasks.get() - actual.size() <= maxScheduledTasks);
+            }
+
+            assertEquals(NUMBER_OF_TASKS, requestedTasks.get());
+            assertEquals(IntStream.range(0, NUMBER_OF_TASKS).boxed().toList(), actual);
+        }
+    }
+
+    @Test
+    public void testCompletionOrderDoesNotWaitForSlowTasks() {
+        final var slowTaskMayFinish = new CountDownLatch(1);
+        final List<Callable<Integer>> tasks = new ArrayList<>();
+        tasks.add(() -> {
+            slowTaskMayFinish.await();
+            return 0;
+        });
+        for (int i = 1; i < NUMBER_OF_TASKS; ++i) {
+            final int index = i;
+            tasks.add(() -> index);
+        }
+
+        try (var results = new ScheduledTasksIterator<>(tasks.iterator(), 4, 8, ResultOrder.COMPLETION)) {
+            final Set<Integer> actual = new HashSet<>();
+            // All tasks except the blocked one are able to finish.
+            for (int i = 1; i < NUMBER_OF_TASKS; ++i) {
+                actual.add(results.next());
+            }
+            assertFalse(actual.contains(0));
+
+            slowTaskMayFinish.countDown();
+            assertEquals(0, results.next());
+            assertFalse(results.hasNext());
+        }
+    }
+}
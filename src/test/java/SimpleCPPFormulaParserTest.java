@@ -0,0 +1,129 @@
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.prop4j.Node;
+import org.variantsync.diffdetective.error.UnparseableFormulaException;
+import org.variantsync.diffdetective.feature.CPPAnnotationParser;
+import org.variantsync.diffdetective.feature.CPPDiffLineFormulaExtractor;
+import org.variantsync.diffdetective.feature.SimpleCPPFormulaParser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class SimpleCPPFormulaParserTest {
+    private static final Pattern ANNOTATION = Pattern.compile("^[+-]?\\s*#\\s*(if|ifdef|ifndef|elif)");
+    private static final List<String> IDENTIFIERS = List.of(
+            "A", "B_2", "_c", "CONFIG_FOO", "true", "FALSE", "not", "and", "or", "xor", "implies",
+            "defined", "__has_include", "my_defined", "ENABLED", "x86", "1", "0x10"
+    );
+
+    /**
+     * Annotations in all test resources, the cases of the extractor tests and randomly generated
+     * conditions.
+     */
+    private static Stream<String> lines() throws IOException {
+        final List<String> lines = new ArrayList<>();
+
+        try (Stream<Path> files = Files.walk(Constants.RESOURCE_DIR)) {
+            for (final Path file : files.filter(Files::isRegularFile).toList()) {
+                new String(Files.readAllBytes(file), StandardCharsets.UTF_8)
+                        .lines()
+                        .filter(line -> ANNOTATION.matcher(line).find())
+                        .forEach(lines::add);
+            }
+        }
+
+        CPPParserTest.testCases().forEach(testCase -> lines.add(testCase.formula()));
+        CPPParserTest.wontfixTestCases().forEach(testCase -> lines.add(testCase.formula()));
+        CPPParserTest.throwingTestCases().forEach(testCase -> lines.add(testCase.formula()));
+
+        final Random random = new Random(42);
+        final String[] prefixes = {"#if ", "#ifdef ", "#ifndef ", "#elif ", "+#if ", "- # if\t", "#if", "#ifdefined "};
+        for (int i = 0; i < 500; ++i) {
+            lines.add(prefixes[random.nextInt(prefixes.length)] + randomCondition(random, 3));
+        }
+
+        return lines.stream();
+    }
+
+    private static String randomCondition(final Random random, final int depth) {
+        final String space = random.nextInt(4) == 0 ? " " : "";
+        final int choice = random.nextInt(depth <= 0 ? 4 : 9);
+        return switch (choice) {
+            case 0, 1 -> IDENTIFIERS.get(random.nextInt(IDENTIFIERS.size()));
+            case 2 -> "defined" + space + "(" + space + IDENTIFIERS.get(random.nextInt(IDENTIFIERS.size())) + space + ")";
+            case 3 -> "defined " + IDENTIFIERS.get(random.nextInt(IDENTIFIERS.size()));
+            case 4 -> "!" + space + randomCondition(random, depth - 1);
+            case 5 -> "(" + space + randomCondition(random, depth - 1) + space + ")";
+            case 6 -> randomCondition(random, depth - 1) + space + "&&" + space + randomCondition(random, depth - 1);
+            case 7 -> randomCondition(random, depth - 1) + space + "||" + space + randomCondition(random, depth - 1);
+            // Conditions outside of the supported subset
+            default -> switch (random.nextInt(5)) {
+                case 0 -> randomCondition(random, depth - 1) + " == 1";
+                case 1 -> "MACRO(" + randomCondition(random, depth - 1) + ")";
+                case 2 -> randomCondition(random, depth - 1) + " & B";
+                case 3 -> randomCondition(random, depth - 1) + " // comment";
+                default -> randomCondition(random, depth - 1) + " " + randomCondition(random, depth - 1);
+            };
+        };
+    }
+
+    @ParameterizedTest
+    @MethodSource("lines")
+    public void sameFormulaAsFullParser(final String line) {
+        final Node formula = SimpleCPPFormulaParser.parseDiffLine(line);
+        if (formula == null) {
+            return;
+        }
+
+        final String condition;
+        try {
+            condition = new CPPDiffLineFormulaExtractor().extractFormula(line);
+        } catch (UnparseableFormulaException e) {
+            throw new AssertionError("The full parser rejects the line \"" + line + "\" accepted by the simple parser", e);
+        }
+        assertEquals(CPPAnnotationParser.Default.parseCondition(condition), formula, line);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "#ifdef A",
+            "#ifndef A",
+            "#if defined(A)",
+            "#if defined A && !defined(B) || C",
+            "#elif (A || B) && !C",
+            "+ #if X",
+            "#if(A)",
+            "#if true"
+    })
+    public void commonConditionsAreSupported(final String line) {
+        assertNotNull(SimpleCPPFormulaParser.parseDiffLine(line));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "#if A == 1",
+            "#if MACRO(A)",
+            "#if A // comment",
+            "#if defined(__has_include)",
+            "#if 1",
+            "#ifdef",
+            "#ifdef A B",
+            "#if (A",
+            "#if(A) && B"
+    })
+    public void uncommonConditionsAreRejected(final String line) {
+        assertNull(SimpleCPPFormulaParser.parseDiffLine(line));
+    }
+}